@@ -0,0 +1,33 @@
+package mindustrytool.workflow;
+
+import mindustrytool.workflow.nodes.WorkflowNode;
+
+/**
+ * Stand-in for SendChat that renders its message and keeps it instead of
+ * calling into the game.
+ */
+public class SinkWorkflow extends WorkflowNode {
+    private final WorkflowField<String, Void> messageField = new WorkflowField<String, Void>("message")
+            .consume(new FieldConsumer<>(String.class)
+                    .defaultValue("Hello"));
+
+    public String last;
+
+    public SinkWorkflow() {
+        super("Sink", WorkflowGroup.DISPLAY, 1);
+    }
+
+    public SinkWorkflow message(String message) {
+        messageField.getConsumer().setValue(message);
+        return this;
+    }
+
+    public String render(WorkflowEmitEvent event) {
+        return messageField.getConsumer().asString(event);
+    }
+
+    @Override
+    public void execute(WorkflowEmitEvent event) {
+        last = render(event);
+    }
+}
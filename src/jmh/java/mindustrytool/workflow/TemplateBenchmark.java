@@ -0,0 +1,81 @@
+package mindustrytool.workflow;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mindustrytool.workflow.expressions.Template;
+
+/**
+ * Message templates rendered through {@code FieldConsumer.asString} on a
+ * workflow event, against rendering the compiled template straight from the
+ * event's variables, and with the cost of creating the event included.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TemplateBenchmark {
+    public static class Player {
+        public String name = "anuke";
+        public float x = 12;
+    }
+
+    @Param({ "Hello", "Welcome {{player.name}}", "{{player.name}} is at {{player.x}}, wave {{wave}}" })
+    public String message;
+
+    private Workflow workflow;
+
+    private SinkWorkflow sink;
+
+    private WorkflowEmitEvent event;
+
+    private Template template;
+
+    private final Player player = new Player();
+
+    @Setup
+    public void setUp() {
+        workflow = new Workflow(new WeakReference<>(null), Runnable::run);
+
+        sink = new SinkWorkflow().message(message);
+        sink.setId("sink");
+
+        event = create();
+        template = workflow.getExpressionParser().compileTemplate(message);
+    }
+
+    private WorkflowEmitEvent create() {
+        return WorkflowEmitEvent.create(sink, workflow)
+                .putValue("player", player)
+                .putValue("wave", 7d);
+    }
+
+    @Benchmark
+    public String asString() {
+        return sink.render(event);
+    }
+
+    @Benchmark
+    public String template() {
+        return template.render(event.getVariables());
+    }
+
+    @Benchmark
+    public String createAndRender() {
+        return sink.render(create());
+    }
+}
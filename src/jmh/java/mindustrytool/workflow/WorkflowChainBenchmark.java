@@ -0,0 +1,115 @@
+package mindustrytool.workflow;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mindustrytool.type.WorkflowContext;
+
+/**
+ * Full runs of {@code EventListener -> if -> Set x depth -> Sink} started by
+ * firing an event, on a workflow that runs everything on the calling thread.
+ * Sink stands in for SendChat and the event class for a game event. With a
+ * listener filter that rejects the event no run is started at all.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorkflowChainBenchmark {
+    public static class UnitMoved {
+        public String name = "flare";
+        public float x = 12;
+        public float y = 30;
+    }
+
+    @Param({ "1", "10", "100" })
+    public int depth;
+
+    @Param({ "", "{{event.x}} > 100" })
+    public String filter;
+
+    private Workflow workflow;
+
+    private SinkWorkflow sink;
+
+    private final UnitMoved event = new UnitMoved();
+
+    private final WorkflowContext context = new WorkflowContext();
+
+    @Setup
+    public void setUp() {
+        workflow = new Workflow(new WeakReference<>(null), Runnable::run);
+        workflow.registerNodes();
+        workflow.getNodeTypes().put("Sink", new SinkWorkflow());
+
+        var listener = node("listener", "EventListener", "Next", "if", "class", UnitMoved.class.getName(),
+                "before", "true");
+        listener.getFields().get("class").setVariableName("event");
+
+        if (!filter.isEmpty()) {
+            var field = new WorkflowNodeStateField();
+            field.setConsumer(filter);
+            listener.getFields().put("filter", field);
+        }
+        node("if", "if", "True", "set0", "condition", "{{event.x}} > 3");
+
+        for (int i = 0; i < depth; i++) {
+            node("set" + i, "Set", "Next", i + 1 < depth ? "set" + (i + 1) : "sink",
+                    "name", "total", "value", "{{event.x}} + {{event.y}} + " + i);
+        }
+
+        node("sink", "Sink", null, null, "message", "{{event.name}} moved, total {{total}}");
+
+        workflow.load(context);
+        sink = (SinkWorkflow) workflow.getNodes().get("sink");
+    }
+
+    @TearDown
+    public void tearDown() {
+        workflow.clear();
+    }
+
+    private WorkflowNodeState node(String id, String name, String output, String next, String... fields) {
+        var state = new WorkflowNodeState();
+
+        if (output != null) {
+            state.getOutputs().put(output, next);
+        }
+
+        for (int i = 0; i < fields.length; i += 2) {
+            var field = new WorkflowNodeStateField();
+            field.setConsumer(fields[i + 1]);
+            state.getFields().put(fields[i], field);
+        }
+
+        var data = new NodeData();
+        data.setId(id);
+        data.setName(name);
+        data.setState(state);
+        context.getNodes().add(data);
+
+        return state;
+    }
+
+    @Benchmark
+    public String fire() {
+        workflow.fire(event, true);
+
+        return sink.last;
+    }
+}
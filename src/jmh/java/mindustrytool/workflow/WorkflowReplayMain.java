@@ -0,0 +1,30 @@
+package mindustrytool.workflow;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import mindustrytool.type.WorkflowContext;
+import mindustrytool.utils.JsonUtils;
+
+/**
+ * Command line entry of the {@code replay} task, prints the
+ * {@link WorkflowReplay} result as JSON.
+ */
+public class WorkflowReplayMain {
+    /** Usage: {@code WorkflowReplayMain <workflow.json> <recording.wfr> [speed]} */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: WorkflowReplayMain <workflow.json> <recording.wfr> [speed]");
+            System.exit(1);
+        }
+
+        var workflowContext = JsonUtils.readJsonAsClass(
+                new String(Files.readAllBytes(Paths.get(args[0])), StandardCharsets.UTF_8), WorkflowContext.class);
+        var recording = WorkflowRecording.read(Paths.get(args[1]));
+        double speed = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+
+        System.out.println(JsonUtils.toJsonString(new WorkflowReplay(workflowContext, recording, speed).run()));
+        System.exit(0);
+    }
+}
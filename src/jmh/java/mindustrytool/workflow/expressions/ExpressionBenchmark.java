@@ -0,0 +1,82 @@
+package mindustrytool.workflow.expressions;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parse and evaluation cost of numeric, boolean and field path expressions,
+ * compiled against interpreted. The variables hold a plain object standing in
+ * for a game unit.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpressionBenchmark {
+    public static class Position {
+        public float x = 12;
+        public float y = 30;
+    }
+
+    @Param({ "{{a}} * 2 + {{b}}", "{{a}} > 3", "{{target.x}} + {{target.y}}" })
+    public String source;
+
+    private ExpressionParser parser;
+
+    private Expression expression;
+
+    private Expression interpreted;
+
+    private final Map<String, Object> variables = new HashMap<>();
+
+    @Setup
+    public void setUp() {
+        variables.put("a", 16d);
+        variables.put("b", 2d);
+        variables.put("target", new Position());
+
+        parser = new ExpressionParser();
+        parser.setCompileThreshold(1);
+        expression = parser.compile(source);
+
+        var interpreter = new ExpressionParser();
+        interpreter.setCompileThreshold(0);
+        interpreted = interpreter.compile(source);
+    }
+
+    @Benchmark
+    public Expression compile() {
+        return parser.compile(source);
+    }
+
+    @Benchmark
+    public Object evaluate() {
+        return expression.evaluate(variables);
+    }
+
+    @Benchmark
+    public Object evaluateInterpreted() {
+        return interpreted.evaluate(variables);
+    }
+
+    /** Through the parser's compiled expression cache, the way string callers use it. */
+    @Benchmark
+    public Object evaluateCached() {
+        return parser.evaluate(source, variables);
+    }
+}
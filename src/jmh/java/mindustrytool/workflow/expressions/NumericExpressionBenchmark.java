@@ -0,0 +1,55 @@
+package mindustrytool.workflow.expressions;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Boxed generic evaluation against the unboxed {@code double[]} path for the
+ * same compiled expression.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NumericExpressionBenchmark {
+
+    @Param({ "1 + 2 * 3", "{{a}} * {{b}} + sqrt ( {{a}} ) - 4 / {{b}}" })
+    public String source;
+
+    private Expression expression;
+
+    private final Map<String, Object> variables = new HashMap<>();
+
+    @Setup
+    public void setUp() {
+        variables.put("a", 16d);
+        variables.put("b", 2d);
+
+        expression = new ExpressionParser().compile(source);
+    }
+
+    @Benchmark
+    public Object boxed() {
+        return expression.evaluate(Object.class, variables);
+    }
+
+    @Benchmark
+    public double unboxed() {
+        return expression.evaluateAsDouble(variables);
+    }
+}
@@ -129,7 +129,13 @@ public class ServerController extends Plugin implements MindustryToolPlugin {
     @Override
     public void onEvent(Object event) {
         try {
-            workflow.fire(event, true);
+            workflow.getRecorder().record(event);
+
+            boolean observed = workflow.hasListeners(event.getClass());
+
+            if (observed) {
+                workflow.fire(event, true);
+            }
 
             if (event instanceof PlayerJoin playerJoin) {
                 eventHandler.onPlayerJoin(playerJoin);
@@ -150,7 +156,9 @@ public class ServerController extends Plugin implements MindustryToolPlugin {
                 eventHandler.onGameOver(gameOverEvent);
             }
 
-            workflow.fire(event, false);
+            if (observed) {
+                workflow.fire(event, false);
+            }
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -52,8 +52,15 @@ import mindustrytool.type.StartServerDto;
 import mindustrytool.type.StatsDto;
 import mindustrytool.type.TeamDto;
 import mindustrytool.utils.Utils;
+import mindustrytool.workflow.WorkflowBudget;
+import mindustrytool.workflow.WorkflowBudgetAction;
+import mindustrytool.workflow.WorkflowDropPolicy;
+import mindustrytool.workflow.WorkflowExecutionMode;
+import mindustrytool.workflow.WorkflowExecutor;
+import mindustrytool.workflow.WorkflowRecorder;
+import mindustrytool.workflow.WorkflowTraceMode;
 import mindustrytool.workflow.errors.WorkflowError;
-import mindustrytool.workflow.nodes.WorkflowNode;
+import mindustrytool.workflow.errors.WorkflowValidationError;
 import io.javalin.Javalin;
 import io.javalin.http.ContentType;
 import io.javalin.json.JavalinJackson;
@@ -376,30 +383,39 @@ public class HttpServer {
         });
 
         app.get("workflow/nodes", ctx -> {
-            ctx.json(context.get().workflow.getNodeTypes());
+            var catalog = context.get().workflow.getNodeCatalog();
+
+            ctx.header("ETag", catalog.getETag());
+            ctx.header("Cache-Control", "no-cache");
+
+            if (catalog.matches(ctx.header("If-None-Match"))) {
+                ctx.status(304);
+                return;
+            }
+
+            ctx.contentType(ContentType.APPLICATION_JSON).result(catalog.getJson());
         });
 
         app.get("workflow/nodes/{id}/autocomplete", ctx -> {
             String id = ctx.pathParam("id");
             String input = ctx.queryParam("input");
-            WorkflowNode node = context.get().workflow.getNodes().get(id);
+            var completions = context.get().workflow.autocomplete(id, input == null ? "" : input);
 
-            if (node == null) {
+            if (completions == null) {
                 ctx.status(404);
                 ctx.result();
                 return;
             }
 
-            ctx.json(node.autocomplete(input.trim()));
+            ctx.json(completions);
         });
 
         app.get("workflow/version", ctx -> {
-            JsonNode data = context.get().workflow.readWorkflowData();
-            if (data == null || data.get("createdAt") == null) {
-                ctx.json(0L);
-            } else {
-                ctx.json(data.get("createdAt").asLong());
-            }
+            ctx.json(context.get().workflow.getWorkflowVersion());
+        });
+
+        app.get("workflow/versions", ctx -> {
+            ctx.json(context.get().workflow.getWorkflowVersions());
         });
 
         app.get("workflow", ctx -> {
@@ -411,11 +427,22 @@ public class HttpServer {
             context.get().workflow.writeWorkflowData(payload);
         });
 
+        app.post("workflow/validate", ctx -> {
+            WorkflowContext payload = ctx.bodyAsClass(WorkflowContext.class);
+            ctx.json(toErrorList(context.get().workflow.validate(payload)));
+        });
+
         app.post("workflow/load", ctx -> {
             WorkflowContext payload = ctx.bodyAsClass(WorkflowContext.class);
             try {
                 context.get().workflow.load(payload);
                 ctx.json(context.get().workflow.getWorkflowContext());
+            } catch (WorkflowValidationError e) {
+                Log.err("Failed to load workflow: " + e.getMessage());
+                HashMap<String, Object> result = new HashMap<>();
+                result.put("message", "Failed to load workflow: " + e.getMessage());
+                result.put("errors", toErrorList(e.getErrors()));
+                ctx.status(400).json(result);
             } catch (WorkflowError e) {
                 Log.err("Failed to load workflow", e);
                 HashMap<String, String> result = new HashMap<>();
@@ -424,6 +451,128 @@ public class HttpServer {
             }
         });
 
+        app.get("workflow/profile", ctx -> {
+            ctx.json(context.get().workflow.getProfiler().snapshot());
+        });
+
+        app.post("workflow/profile/reset", ctx -> {
+            context.get().workflow.getProfiler().reset();
+            ctx.json(context.get().workflow.getProfiler().snapshot());
+        });
+
+        app.get("workflow/trace", ctx -> {
+            HashMap<String, Object> result = new HashMap<>();
+            result.put("mode", context.get().workflow.getTracer().getMode());
+            result.put("dropped", context.get().workflow.getTracer().getDropped());
+            ctx.json(result);
+        });
+
+        app.post("workflow/trace", ctx -> {
+            JsonNode payload = ctx.bodyAsClass(JsonNode.class);
+            WorkflowTraceMode mode = parseTraceMode(payload.path("mode").asText(null));
+
+            if (mode == null) {
+                HashMap<String, String> result = new HashMap<>();
+                result.put("message", "Invalid trace mode, expected one of: "
+                        + Arrays.toString(WorkflowTraceMode.values()));
+                ctx.status(400).json(result);
+                return;
+            }
+
+            context.get().workflow.getTracer().setMode(mode);
+            ctx.json(mode);
+        });
+
+        app.get("workflow/execution", ctx -> {
+            ctx.json(getExecution());
+        });
+
+        app.post("workflow/execution", ctx -> {
+            JsonNode payload = ctx.bodyAsClass(JsonNode.class);
+            WorkflowExecutor executor = context.get().workflow.getExecutor();
+
+            WorkflowExecutionMode mode = parseEnum(WorkflowExecutionMode.class, payload.path("mode").asText(null));
+            WorkflowDropPolicy dropPolicy = parseEnum(WorkflowDropPolicy.class, payload.path("dropPolicy").asText(null));
+            int queueSize = payload.path("queueSize").asInt(executor.getQueueSize());
+
+            if ((payload.has("mode") && mode == null) || (payload.has("dropPolicy") && dropPolicy == null)
+                    || queueSize < 1) {
+                HashMap<String, String> result = new HashMap<>();
+                result.put("message", "Invalid execution settings, expected mode one of: "
+                        + Arrays.toString(WorkflowExecutionMode.values()) + ", dropPolicy one of: "
+                        + Arrays.toString(WorkflowDropPolicy.values()) + ", positive queueSize");
+                ctx.status(400).json(result);
+                return;
+            }
+
+            if (mode != null) {
+                executor.setMode(mode);
+            }
+
+            if (dropPolicy != null) {
+                executor.setDropPolicy(dropPolicy);
+            }
+
+            executor.setQueueSize(queueSize);
+
+            ctx.json(getExecution());
+        });
+
+        app.get("workflow/store", ctx -> {
+            ctx.json(context.get().workflow.getStore().snapshot());
+        });
+
+        app.get("workflow/recording", ctx -> {
+            ctx.json(getRecording());
+        });
+
+        app.post("workflow/recording", ctx -> {
+            JsonNode payload = ctx.bodyAsClass(JsonNode.class);
+
+            try {
+                context.get().workflow.startRecording(payload.path("maxEvents").asInt(0));
+                ctx.json(getRecording());
+            } catch (WorkflowError e) {
+                HashMap<String, String> result = new HashMap<>();
+                result.put("message", e.getMessage());
+                ctx.status(400).json(result);
+            }
+        });
+
+        app.post("workflow/recording/stop", ctx -> {
+            context.get().workflow.getRecorder().stop();
+            ctx.json(getRecording());
+        });
+
+        app.get("workflow/budget", ctx -> {
+            ctx.json(getBudget());
+        });
+
+        app.post("workflow/budget", ctx -> {
+            JsonNode payload = ctx.bodyAsClass(JsonNode.class);
+            WorkflowBudget budget = context.get().workflow.getBudget();
+            WorkflowBudgetAction action = parseEnum(WorkflowBudgetAction.class, payload.path("action").asText(null));
+
+            if (payload.has("action") && action == null) {
+                HashMap<String, String> result = new HashMap<>();
+                result.put("message", "Invalid budget action, expected one of: "
+                        + Arrays.toString(WorkflowBudgetAction.values()));
+                ctx.status(400).json(result);
+                return;
+            }
+
+            budget.setRunNanos(payload.path("runNanos").asLong(budget.getRunNanos()));
+            budget.setRunSteps(payload.path("runSteps").asInt(budget.getRunSteps()));
+            budget.setTickNanos(payload.path("tickNanos").asLong(budget.getTickNanos()));
+            budget.setTickSteps(payload.path("tickSteps").asInt(budget.getTickSteps()));
+
+            if (action != null) {
+                budget.setAction(action);
+            }
+
+            ctx.json(getBudget());
+        });
+
         app.get("json", ctx -> {
             HashMap<String,Object> res = Utils.appPostWithTimeout(() -> {
 
@@ -590,6 +739,77 @@ public class HttpServer {
         Utils.host(mapName, gameMode);
     }
 
+    private static List<Map<String, String>> toErrorList(List<WorkflowError> errors) {
+        List<Map<String, String>> result = new ArrayList<>();
+
+        for (WorkflowError error : errors) {
+            Map<String, String> item = new HashMap<>();
+            item.put("nodeId", error.getNodeId());
+            item.put("field", error.getField());
+            item.put("message", error.getMessage());
+            result.add(item);
+        }
+
+        return result;
+    }
+
+    private HashMap<String, Object> getExecution() {
+        WorkflowExecutor executor = context.get().workflow.getExecutor();
+        HashMap<String, Object> result = new HashMap<>();
+
+        result.put("mode", executor.getMode());
+        result.put("dropPolicy", executor.getDropPolicy());
+        result.put("queueSize", executor.getQueueSize());
+        result.put("queued", executor.getQueued());
+        result.put("dropped", executor.getDropped());
+        result.put("pendingEffects", executor.getPendingEffects());
+        result.put("applied", executor.getApplied());
+
+        return result;
+    }
+
+    private HashMap<String, Object> getRecording() {
+        WorkflowRecorder recorder = context.get().workflow.getRecorder();
+        HashMap<String, Object> result = new HashMap<>();
+
+        result.put("recording", recorder.isRecording());
+        result.put("path", recorder.getPath() == null ? null : recorder.getPath().toString());
+        result.put("events", recorder.getRecorded());
+
+        return result;
+    }
+
+    private HashMap<String, Object> getBudget() {
+        WorkflowBudget budget = context.get().workflow.getBudget();
+        HashMap<String, Object> result = new HashMap<>();
+
+        result.put("runNanos", budget.getRunNanos());
+        result.put("runSteps", budget.getRunSteps());
+        result.put("tickNanos", budget.getTickNanos());
+        result.put("tickSteps", budget.getTickSteps());
+        result.put("action", budget.getAction());
+        result.put("suspended", budget.getSuspended());
+        result.put("aborted", budget.getAborted());
+
+        return result;
+    }
+
+    private static <T extends Enum<T>> T parseEnum(Class<T> type, String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static WorkflowTraceMode parseTraceMode(String value) {
+        return parseEnum(WorkflowTraceMode.class, value);
+    }
+
     private StatsDto getStats() {
         mindustry.maps.Map map = Vars.state.map;
         String mapName = map != null ? map.name() : "";
@@ -0,0 +1,31 @@
+package mindustrytool.type;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+@Data
+@Accessors(chain = true)
+public class WorkflowProfileDto {
+    private long since;
+    private List<Entry> nodes = new ArrayList<>();
+    private List<Entry> emitters = new ArrayList<>();
+
+    @Data
+    @Accessors(chain = true)
+    public static class Entry {
+        private String id;
+        private String name;
+        private long invocations;
+        private long errors;
+        private long steps;
+        private long totalNanos;
+        private long meanNanos;
+        private long p50Nanos;
+        private long p90Nanos;
+        private long p99Nanos;
+        private long maxNanos;
+    }
+}
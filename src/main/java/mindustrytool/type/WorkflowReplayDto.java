@@ -0,0 +1,24 @@
+package mindustrytool.type;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+@Data
+@Accessors(chain = true)
+public class WorkflowReplayDto {
+    private long events;
+    private double speed;
+    private long durationNanos;
+    private long busyNanos;
+    private double eventsPerSecond;
+    private long meanNanos;
+    private long p50Nanos;
+    private long p90Nanos;
+    private long p99Nanos;
+    private long maxNanos;
+    private long allocatedBytes;
+    private long bytesPerEvent;
+    private long steps;
+    private long errors;
+    private long effects;
+}
@@ -24,6 +24,14 @@ public class JsonUtils {
         }
     }
 
+    public static byte[] toJsonBytes(Object data) {
+        try {
+            return objectMapper.writeValueAsBytes(data);
+        } catch (IOException e) {
+            throw new RuntimeException("Can not parse to json: " + e.getMessage(), e);
+        }
+    }
+
     public static <T> T readJsonAsClass(String data, Class<T> clazz) {
         try {
             return objectMapper.readValue(data, clazz);
@@ -0,0 +1,281 @@
+package mindustrytool.workflow;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import mindustry.game.EventType;
+import mindustrytool.workflow.expressions.ExpressionParser;
+import mindustrytool.workflow.nodes.WorkflowNode;
+
+/**
+ * Completions for variable paths typed into node fields. Root names come
+ * from the variables produced upstream of the node, the built-in {@code @}
+ * variables and the parser's classes, later segments from the fields of the
+ * type the path resolved to so far. Every name list is a trie built once:
+ * classes and built-ins with the index, field lists per class on first use
+ * (warmed for the event types), and variables per node until the next load.
+ */
+public class AutocompleteIndex {
+    public static final int DEFAULT_LIMIT = 20;
+
+    // Lower ranks sort first, variables add their distance from the node
+    private static final int RANK_VARIABLE = 0;
+    private static final int RANK_BUILTIN = 1000;
+    private static final int RANK_CLASS = 2000;
+
+    private static final ClassValue<AutocompleteTrie> INSTANCE_FIELDS = new ClassValue<AutocompleteTrie>() {
+        @Override
+        protected AutocompleteTrie computeValue(Class<?> type) {
+            return fields(type, false);
+        }
+    };
+
+    private static final ClassValue<AutocompleteTrie> STATIC_FIELDS = new ClassValue<AutocompleteTrie>() {
+        @Override
+        protected AutocompleteTrie computeValue(Class<?> type) {
+            return fields(type, true);
+        }
+    };
+
+    private final AutocompleteTrie globals = new AutocompleteTrie();
+    private final Map<String, Class<?>> classes;
+
+    private volatile Map<String, WorkflowNode> nodes = new HashMap<>();
+    private final Map<String, AutocompleteTrie> variables = new ConcurrentHashMap<>();
+
+    public AutocompleteIndex(ExpressionParser parser) {
+        this.classes = new HashMap<>(parser.CLASSES);
+
+        for (var name : WorkflowScope.builtinNames()) {
+            globals.add(name, RANK_BUILTIN, WorkflowScope.builtinType(name));
+        }
+
+        for (var entry : classes.entrySet()) {
+            globals.add(entry.getKey(), RANK_CLASS, entry.getValue());
+        }
+
+        for (var type : EventType.class.getDeclaredClasses()) {
+            INSTANCE_FIELDS.get(type);
+        }
+    }
+
+    /** Switches to a newly loaded graph, the variable tries are rebuilt on demand. */
+    public void reset(Map<String, WorkflowNode> nodes) {
+        this.nodes = nodes;
+        variables.clear();
+    }
+
+    /**
+     * Completions of the path at the end of input, each returned as the whole
+     * input with that path completed, best first. The path starts after the
+     * last unclosed {{ or, without one, after the last space.
+     */
+    public List<String> complete(String nodeId, String input, int limit) {
+        int open = input.lastIndexOf("{{");
+        int start = open >= 0 && input.indexOf("}}", open) < 0
+                ? open + 2
+                : input.lastIndexOf(' ') + 1;
+
+        var head = input.substring(0, start);
+        var path = input.substring(start).trim();
+        int dot = path.lastIndexOf('.');
+
+        List<AutocompleteTrie.Entry> matches;
+
+        if (dot < 0) {
+            matches = globals.find(path);
+            matches.addAll(variables.computeIfAbsent(nodeId, this::variablesOf).find(path));
+        } else {
+            var fields = fieldsOf(nodeId, path.substring(0, dot));
+
+            if (fields == null) {
+                return new ArrayList<>();
+            }
+
+            matches = fields.find(path.substring(dot + 1));
+        }
+
+        matches.sort(Comparator.<AutocompleteTrie.Entry>comparingInt(entry -> entry.rank)
+                .thenComparingInt(entry -> entry.text.length())
+                .thenComparing(entry -> entry.text));
+
+        var prefix = dot < 0 ? head : head + path.substring(0, dot + 1);
+        var result = new ArrayList<String>();
+        var seen = new HashSet<String>();
+
+        for (var match : matches) {
+            if (result.size() >= limit) {
+                break;
+            }
+
+            if (seen.add(match.text)) {
+                result.add(prefix + match.text);
+            }
+        }
+
+        return result;
+    }
+
+    /** Trie of the fields reachable after path, null when its type is unknown. */
+    private AutocompleteTrie fieldsOf(String nodeId, String path) {
+        var segments = path.split("\\.");
+        var root = segments[0];
+
+        Class<?> type;
+        int next = 1;
+
+        var variable = variables.computeIfAbsent(nodeId, this::variablesOf).find(root).stream()
+                .filter(entry -> entry.text.equals(root))
+                .findFirst();
+
+        if (variable.isPresent()) {
+            type = variable.get().type;
+        } else if (classes.containsKey(root)) {
+            if (segments.length == 1) {
+                return STATIC_FIELDS.get(classes.get(root));
+            }
+
+            type = fieldType(classes.get(root), segments[1], true);
+            next = 2;
+        } else {
+            type = WorkflowScope.builtinType(root);
+        }
+
+        for (int i = next; i < segments.length && type != null; i++) {
+            type = fieldType(type, segments[i], false);
+        }
+
+        if (type == null || type == Object.class || type.isPrimitive()) {
+            return null;
+        }
+
+        return INSTANCE_FIELDS.get(type);
+    }
+
+    private static Class<?> fieldType(Class<?> type, String name, boolean statics) {
+        var trie = statics ? STATIC_FIELDS.get(type) : INSTANCE_FIELDS.get(type);
+
+        for (var entry : trie.find(name)) {
+            if (entry.text.equals(name)) {
+                return entry.type;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Variables produced by the node and every node that can reach it,
+     * ranked by how many steps away they are produced.
+     */
+    private AutocompleteTrie variablesOf(String nodeId) {
+        var graph = nodes;
+        Map<String, List<WorkflowNode>> incoming = new HashMap<>();
+
+        for (var node : graph.values()) {
+            for (var output : node.getOutputs()) {
+                if (output.getNextId() != null) {
+                    incoming.computeIfAbsent(output.getNextId(), key -> new ArrayList<>()).add(node);
+                }
+            }
+        }
+
+        var trie = new AutocompleteTrie();
+        var start = graph.get(nodeId);
+
+        if (start == null) {
+            return trie;
+        }
+
+        Map<String, Integer> distance = new HashMap<>();
+        var queue = new ArrayDeque<WorkflowNode>();
+
+        distance.put(start.getId(), 0);
+        queue.add(start);
+
+        while (!queue.isEmpty()) {
+            var node = queue.poll();
+            int steps = distance.get(node.getId());
+
+            for (var field : node.getFields()) {
+                var producer = field.getProducer();
+
+                if (producer != null && producer.getVariableName() != null) {
+                    trie.add(producer.getVariableName(), RANK_VARIABLE + steps, producedType(field));
+                }
+            }
+
+            for (var previous : incoming.getOrDefault(node.getId(), new ArrayList<>())) {
+                if (distance.putIfAbsent(previous.getId(), steps + 1) == null) {
+                    queue.add(previous);
+                }
+            }
+        }
+
+        return trie;
+    }
+
+    // An event listener produces an instance of the class picked in its own field
+    private static Class<?> producedType(WorkflowNode.WorkflowField<?, ?> field) {
+        var produced = field.getProducer().getProduceType();
+        var consumer = field.getConsumer();
+
+        if (produced == Class.class && consumer != null && consumer.getValue() != null) {
+            for (var option : consumer.getOptions()) {
+                if (consumer.getValue().equals(option.getValue()) && option.getProduceType() != null) {
+                    return option.getProduceType();
+                }
+            }
+
+            if (consumer.getType() != Class.class) {
+                return produced;
+            }
+
+            try {
+                return Class.forName(consumer.getValue());
+            } catch (ClassNotFoundException | LinkageError e) {
+                return null;
+            }
+        }
+
+        return produced;
+    }
+
+    private static AutocompleteTrie fields(Class<?> type, boolean statics) {
+        var trie = new AutocompleteTrie();
+        var seen = new HashSet<String>();
+
+        for (var current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            Field[] declared;
+
+            try {
+                declared = current.getDeclaredFields();
+            } catch (LinkageError | SecurityException e) {
+                continue;
+            }
+
+            for (var field : declared) {
+                if (field.isSynthetic() || Modifier.isStatic(field.getModifiers()) != statics) {
+                    continue;
+                }
+
+                // Public fields rank before the ones only reachable through reflection
+                int rank = Modifier.isPublic(field.getModifiers()) ? 0 : 1;
+
+                if (seen.add(field.getName())) {
+                    trie.add(field.getName(), rank, field.getType());
+                }
+            }
+        }
+
+        return trie;
+    }
+}
@@ -0,0 +1,171 @@
+package mindustrytool.workflow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Case insensitive radix trie of completions. Chains of single child nodes
+ * are merged into one edge, so a lookup compares the prefix a label at a
+ * time and ends at the node whose subtree holds every match.
+ */
+final class AutocompleteTrie {
+    static final class Entry {
+        final String text;
+        final int rank;
+        final Class<?> type;
+
+        Entry(String text, int rank, Class<?> type) {
+            this.text = text;
+            this.rank = rank;
+            this.type = type;
+        }
+    }
+
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private final Node root = new Node("");
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    void add(String text, int rank, Class<?> type) {
+        var key = text.toLowerCase(Locale.ROOT);
+        var node = root;
+        int offset = 0;
+
+        while (offset < key.length()) {
+            int index = node.indexOf(key.charAt(offset));
+
+            if (index < 0) {
+                node = node.insert(new Node(key.substring(offset)));
+                offset = key.length();
+                break;
+            }
+
+            var child = node.children[index];
+            int common = commonLength(child.label, key, offset);
+
+            if (common < child.label.length()) {
+                child = node.split(index, common);
+            }
+
+            node = child;
+            offset += common;
+        }
+
+        node.entries.add(new Entry(text, rank, type));
+        size++;
+    }
+
+    /** Every entry whose text starts with prefix, ignoring case. */
+    List<Entry> find(String prefix) {
+        var key = prefix.toLowerCase(Locale.ROOT);
+        var node = root;
+        int offset = 0;
+
+        while (offset < key.length()) {
+            int index = node.indexOf(key.charAt(offset));
+
+            if (index < 0) {
+                return new ArrayList<>();
+            }
+
+            var child = node.children[index];
+            int common = commonLength(child.label, key, offset);
+
+            // The prefix either runs out inside this label or has to match all of it
+            if (offset + common < key.length() && common < child.label.length()) {
+                return new ArrayList<>();
+            }
+
+            node = child;
+            offset += common;
+        }
+
+        var result = new ArrayList<Entry>();
+        node.collect(result);
+
+        return result;
+    }
+
+    private static int commonLength(String label, String key, int offset) {
+        int length = Math.min(label.length(), key.length() - offset);
+        int i = 0;
+
+        while (i < length && label.charAt(i) == key.charAt(offset + i)) {
+            i++;
+        }
+
+        return i;
+    }
+
+    private static final class Node {
+        private String label;
+        private Node[] children = NO_CHILDREN;
+        private final List<Entry> entries = new ArrayList<>(1);
+
+        private Node(String label) {
+            this.label = label;
+        }
+
+        // Children are sorted by their first char
+        private int indexOf(char first) {
+            int low = 0;
+            int high = children.length - 1;
+
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                char current = children[middle].label.charAt(0);
+
+                if (current < first) {
+                    low = middle + 1;
+                } else if (current > first) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+
+            return -1;
+        }
+
+        private Node insert(Node child) {
+            int position = 0;
+
+            while (position < children.length && children[position].label.charAt(0) < child.label.charAt(0)) {
+                position++;
+            }
+
+            var next = Arrays.copyOf(children, children.length + 1);
+            System.arraycopy(children, position, next, position + 1, children.length - position);
+            next[position] = child;
+            children = next;
+
+            return child;
+        }
+
+        /** Cuts the edge to children[index] after length chars and returns the new middle node. */
+        private Node split(int index, int length) {
+            var child = children[index];
+            var middle = new Node(child.label.substring(0, length));
+
+            child.label = child.label.substring(length);
+            middle.children = new Node[] { child };
+            children[index] = middle;
+
+            return middle;
+        }
+
+        private void collect(List<Entry> result) {
+            result.addAll(entries);
+
+            for (var child : children) {
+                child.collect(result);
+            }
+        }
+    }
+}
@@ -8,6 +8,22 @@ import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 
 public class ClassSerializer extends StdSerializer<Class> {
 
+    // Field name and type name pairs, event classes show up in many options
+    private static final ClassValue<String[]> FIELDS = new ClassValue<String[]>() {
+        @Override
+        protected String[] computeValue(Class<?> type) {
+            var fields = type.getDeclaredFields();
+            var pairs = new String[fields.length * 2];
+
+            for (int i = 0; i < fields.length; i++) {
+                pairs[i * 2] = fields[i].getName();
+                pairs[i * 2 + 1] = fields[i].getType().getName();
+            }
+
+            return pairs;
+        }
+    };
+
     public ClassSerializer() {
         this(Class.class);
     }
@@ -20,8 +36,10 @@ public class ClassSerializer extends StdSerializer<Class> {
     public void serialize(Class value, JsonGenerator gen, SerializerProvider provider) throws IOException {
         gen.writeStartObject();
 
-        for (var field : value.getDeclaredFields()) {
-            gen.writeStringField(field.getName(), field.getType().getName());
+        var pairs = FIELDS.get(value);
+
+        for (int i = 0; i < pairs.length; i += 2) {
+            gen.writeStringField(pairs[i], pairs[i + 1]);
         }
 
         gen.writeEndObject();
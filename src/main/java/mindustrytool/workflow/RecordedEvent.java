@@ -0,0 +1,83 @@
+package mindustrytool.workflow;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import mindustrytool.workflow.errors.WorkflowError;
+import mindustrytool.workflow.expressions.PathSource;
+
+/**
+ * Event restored from a recording. It only holds the fields that were
+ * recorded, nested the way the paths were read, and is fired in place of an
+ * instance of the original class.
+ */
+public class RecordedEvent implements PathSource {
+    private final Class<?> eventClass;
+    private final long nanos;
+    private final Value root = new Value();
+
+    RecordedEvent(Class<?> eventClass, long nanos) {
+        this.eventClass = eventClass;
+        this.nanos = nanos;
+    }
+
+    public Class<?> getEventClass() {
+        return eventClass;
+    }
+
+    /** Time since the recording started. */
+    public long getNanos() {
+        return nanos;
+    }
+
+    void put(String[] segments, int length, Object value) {
+        var current = root;
+
+        for (int i = 0; i < length - 1; i++) {
+            current = current.child(segments[i]);
+        }
+
+        current.fields.put(segments[length - 1], value);
+    }
+
+    @Override
+    public Object field(String name) {
+        return root.field(name);
+    }
+
+    @Override
+    public String toString() {
+        return eventClass.getSimpleName() + root.fields;
+    }
+
+    private static final class Value implements PathSource {
+        private final Map<String, Object> fields = new HashMap<>();
+
+        private Value child(String name) {
+            var value = fields.get(name);
+
+            if (value instanceof Value child) {
+                return child;
+            }
+
+            var child = new Value();
+            fields.put(name, child);
+
+            return child;
+        }
+
+        @Override
+        public Object field(String name) {
+            if (!fields.containsKey(name)) {
+                throw new WorkflowError("Field was not recorded: " + name);
+            }
+
+            return fields.get(name);
+        }
+
+        @Override
+        public String toString() {
+            return fields.toString();
+        }
+    }
+}
@@ -1,18 +1,28 @@
 package mindustrytool.workflow;
 
+import java.io.IOException;
 import java.lang.ref.WeakReference;
-import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import com.fasterxml.jackson.databind.JsonNode;
 
-import arc.files.Fi;
+import arc.Core;
 import arc.func.Cons2;
 import arc.struct.Seq;
 import arc.util.Log;
@@ -23,21 +33,49 @@ import mindustrytool.ServerController;
 import mindustrytool.type.WorkflowContext;
 import mindustrytool.utils.JsonUtils;
 import mindustrytool.workflow.errors.WorkflowError;
+import mindustrytool.workflow.errors.WorkflowValidationError;
 import mindustrytool.workflow.expressions.ExpressionParser;
+import mindustrytool.workflow.nodes.AggregateWorkflow;
 import mindustrytool.workflow.nodes.BinaryOperationWorkflow;
+import mindustrytool.workflow.nodes.CoalesceWorkflow;
+import mindustrytool.workflow.nodes.DebounceWorkflow;
 import mindustrytool.workflow.nodes.DisplayLabelWorkflow;
 import mindustrytool.workflow.nodes.EventListenerWorkflow;
+import mindustrytool.workflow.nodes.ForkWorkflow;
+import mindustrytool.workflow.nodes.GetGlobalWorkflow;
 import mindustrytool.workflow.nodes.IfWorkflow;
 import mindustrytool.workflow.nodes.IntervalWorkflow;
+import mindustrytool.workflow.nodes.JoinWorkflow;
 import mindustrytool.workflow.nodes.RandomWorkflow;
 import mindustrytool.workflow.nodes.SendChatWorkflow;
+import mindustrytool.workflow.nodes.SetGlobalWorkflow;
 import mindustrytool.workflow.nodes.SetWorkflow;
+import mindustrytool.workflow.nodes.ThrottleWorkflow;
 import mindustrytool.workflow.nodes.UnaryOperationWorkflow;
 import mindustrytool.workflow.nodes.WaitWorkflow;
 import mindustrytool.workflow.nodes.WorkflowNode;
 
 public class Workflow {
+    private static final AtomicInteger NEXT_EVENT_ID = new AtomicInteger();
+    private static final ClassValue<Integer> EVENT_IDS = new ClassValue<Integer>() {
+        @Override
+        protected Integer computeValue(Class<?> type) {
+            return NEXT_EVENT_ID.getAndIncrement();
+        }
+    };
+
+    @SuppressWarnings("rawtypes")
+    private static final Cons2[] NO_LISTENERS = new Cons2[0];
+
     private final HashMap<Object, Seq<Cons2<?, Boolean>>> events = new HashMap<>();
+    // When each listener was first registered, supertype listeners are called in this order
+    private final IdentityHashMap<Cons2<?, Boolean>, Long> registeredAt = new IdentityHashMap<>();
+    private long registrations;
+
+    // Indexed by EVENT_IDS, a null slot means not resolved yet
+    @SuppressWarnings("rawtypes")
+    private volatile Cons2[][] dispatchTable = new Cons2[0][];
+    private Class<?>[] dispatchClasses = new Class<?>[0];
 
     @Getter
     private final ExpressionParser expressionParser = new ExpressionParser();
@@ -45,83 +83,213 @@ public class Workflow {
     @Getter
     private final HashMap<String, WorkflowNode> nodeTypes = new HashMap<>();
     @Getter
-    private final HashMap<String, WorkflowNode> nodes = new HashMap<>();
-    private final List<ScheduledFuture<?>> scheduledTasks = new ArrayList<>();
+    private volatile Map<String, WorkflowNode> nodes = new HashMap<>();
+    private Map<String, NodeData> nodeData = new HashMap<>();
+    private final WorkflowTimer timer;
+
+    @Getter
+    private final WorkflowExecutor executor;
 
-    private final Fi WORKFLOW_DIR = Vars.dataDirectory.child("workflow");
-    private final Fi WORKFLOW_FILE = WORKFLOW_DIR.child("workflow.json");
-    private final Fi WORKFLOW_DATA_FILE = WORKFLOW_DIR.child("workflow_data.json");
+    @Getter
+    private final WorkflowBudget budget;
+
+    // On disk for the server, in memory for a headless workflow
+    private final Path directory;
+    @Getter
+    private final WorkflowStore store;
+    private final WorkflowPersistence persistence;
+    private ScheduledFuture<?> storeTask;
+
+    // Editor document, kept in memory so reads and the version never touch the file
+    private volatile JsonNode workflowData;
+    private volatile long workflowVersion;
 
     @Getter
     public WorkflowContext workflowContext;
 
-    private final Queue<SseClient> workflowEventConsumers = new ConcurrentLinkedQueue<>();
+    @Getter
+    private final WorkflowTracer tracer = new WorkflowTracer();
+
+    @Getter
+    private final WorkflowProfiler profiler = new WorkflowProfiler();
+
+    @Getter
+    private final WorkflowRecorder recorder = new WorkflowRecorder();
+
+    private final AutocompleteIndex autocompleteIndex;
+
+    // Built once the node types are registered, dropped when they change
+    private volatile WorkflowNodeCatalog nodeCatalog;
 
     private final WeakReference<ServerController> context;
 
     public Workflow(WeakReference<ServerController> context) {
+        this(context, task -> Core.app.post(task), serverDirectory(),
+                new WorkflowStore(serverDirectory().resolve("store.bin")),
+                new WorkflowPersistence(serverDirectory().resolve("versions"), 10));
+    }
+
+    /**
+     * Workflow that hands game thread work to mainThread instead of
+     * {@code Core.app}, which lets it run headless without calling init.
+     * Global variables and saved files only live in memory.
+     */
+    public Workflow(WeakReference<ServerController> context, Consumer<Runnable> mainThread) {
+        this(context, mainThread, Paths.get("workflow"), new WorkflowStore(), new WorkflowPersistence(10));
+
+        store.open();
+    }
+
+    /** Workflow saving its files under directory through persistence, the store is opened by init. */
+    public Workflow(WeakReference<ServerController> context, Consumer<Runnable> mainThread, Path directory,
+            WorkflowStore store, WorkflowPersistence persistence) {
         this.context = context;
+        this.directory = directory;
+        this.store = store;
+        this.persistence = persistence;
+        this.timer = new WorkflowTimer(mainThread);
+        this.executor = new WorkflowExecutor(mainThread);
+        this.budget = new WorkflowBudget(mainThread);
+        this.autocompleteIndex = new AutocompleteIndex(expressionParser);
     }
 
     public Queue<SseClient> getWorkflowEventConsumers() {
-        return workflowEventConsumers;
+        return tracer.getConsumers();
     }
 
+    // Trace traffic is gated by sampling when it is created, this only skips work without clients
     public void sendWorkflowEvent(WorkflowEvent event) {
-        try {
-            workflowEventConsumers.forEach(consumer -> consumer.sendEvent(event));
-        } catch (Exception e) {
-            Log.err("Error sending workflow event", e);
+        if (tracer.hasConsumers()) {
+            tracer.record(event);
         }
     }
 
+    /** Registers the built in node types, init does this before loading the workflow. */
+    public void registerNodes() {
+        register(new EventListenerWorkflow());
+        register(new SendChatWorkflow());
+        register(new IntervalWorkflow());
+        register(new WaitWorkflow());
+        register(new RandomWorkflow());
+        register(new IfWorkflow());
+        register(new DisplayLabelWorkflow());
+        register(new SetWorkflow());
+        register(new DebounceWorkflow());
+        register(new ThrottleWorkflow());
+        register(new CoalesceWorkflow());
+        register(new AggregateWorkflow());
+        register(new ForkWorkflow());
+        register(new JoinWorkflow());
+        register(new GetGlobalWorkflow());
+        register(new SetGlobalWorkflow());
+
+        expressionParser.BINARY_OPERATORS
+                .forEach((_ignore, operator) -> register(new BinaryOperationWorkflow(operator)));
+
+        expressionParser.UNARY_OPERATORS
+                .forEach((_ignore, operator) -> register(new UnaryOperationWorkflow(operator)));
+    }
+
     public void init() {
         try {
-            register(new EventListenerWorkflow());
-            register(new SendChatWorkflow());
-            register(new IntervalWorkflow());
-            register(new WaitWorkflow());
-            register(new RandomWorkflow());
-            register(new IfWorkflow());
-            register(new DisplayLabelWorkflow());
-            register(new SetWorkflow());
+            registerNodes();
+            getNodeCatalog();
 
-            expressionParser.BINARY_OPERATORS
-                    .forEach((_ignore, operator) -> register(new BinaryOperationWorkflow(operator)));
+            Files.createDirectories(directory);
 
-            expressionParser.UNARY_OPERATORS
-                    .forEach((_ignore, operator) -> register(new UnaryOperationWorkflow(operator)));
-
-            WORKFLOW_DIR.mkdirs();
-            WORKFLOW_FILE.file().createNewFile();
-            WORKFLOW_DATA_FILE.file().createNewFile();
+            persistence.start(context.get().BACKGROUND_SCHEDULER);
+            loadWorkflowData();
 
             context.get().BACKGROUND_SCHEDULER.scheduleWithFixedDelay(
                     () -> {
                         try {
-                            workflowEventConsumers.forEach(client -> client.sendComment("heartbeat"));
+                            tracer.getConsumers().forEach(client -> client.sendComment("heartbeat"));
                         } catch (Exception e) {
                             e.printStackTrace();
                         }
                     }, 0, 2,
                     TimeUnit.SECONDS);
 
+            tracer.start(context.get().BACKGROUND_SCHEDULER);
+
+            openStore();
             loadWorkflowFromFile();
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    // A broken store only disables the global variables, workflows still load
+    private void openStore() {
+        try {
+            store.open();
+        } catch (Exception e) {
+            Log.err("Failed to open the workflow store, global variables are unavailable: @", e.getMessage());
+            return;
+        }
+
+        storeTask = context.get().BACKGROUND_SCHEDULER.scheduleWithFixedDelay(
+                () -> {
+                    try {
+                        store.compactIfNeeded();
+                        store.flush();
+                    } catch (Exception e) {
+                        Log.err("Failed to maintain the workflow store: @", e.getMessage());
+                    }
+                }, 1, 1,
+                TimeUnit.MINUTES);
+    }
+
     public JsonNode readWorkflowData() {
-        return JsonUtils.readJson(WORKFLOW_DATA_FILE.readString());
+        return workflowData;
+    }
+
+    /** createdAt of the saved editor document, 0 when there is none. */
+    public long getWorkflowVersion() {
+        return workflowVersion;
+    }
+
+    public List<Long> getWorkflowVersions() {
+        return persistence.getVersions(workflowDataFile());
     }
 
     public void writeWorkflowData(JsonNode data) {
-        WORKFLOW_DATA_FILE.writeString(JsonUtils.toJsonString(data));
+        long version = versionOf(data);
+
+        workflowData = data;
+        workflowVersion = version;
+
+        persistence.saveVersioned(workflowDataFile(), JsonUtils.toJsonString(data), version);
+    }
+
+    private void loadWorkflowData() {
+        workflowData = null;
+
+        try {
+            workflowData = JsonUtils.readJson(readFile(workflowDataFile()));
+        } catch (Exception e) {
+            Log.err("Failed to read @, trying the snapshots: @", workflowDataFile().getFileName(), e.getMessage());
+
+            // Newest snapshot that still reads, a broken one must not stop init
+            for (var version : getWorkflowVersions()) {
+                try {
+                    workflowData = JsonUtils.readJson(persistence.readVersion(workflowDataFile(), version));
+                    break;
+                } catch (Exception snapshotError) {
+                    Log.err("Failed to read the snapshot @: @", version, snapshotError.getMessage());
+                }
+            }
+        }
+
+        workflowVersion = versionOf(workflowData);
+    }
+
+    private static long versionOf(JsonNode data) {
+        return data == null || data.get("createdAt") == null ? 0L : data.get("createdAt").asLong();
     }
 
-    private void loadWorkflowFromFile() {
-        String content = WORKFLOW_FILE.readString();
+    private void loadWorkflowFromFile() throws IOException {
+        String content = readFile(workflowFile());
         if (!content.trim().isEmpty()) {
             workflowContext = JsonUtils.readJsonAsClass(content, WorkflowContext.class);
             load(workflowContext);
@@ -129,129 +297,331 @@ public class Workflow {
     }
 
     private void writeWorkflowToFile() {
-        WORKFLOW_FILE.writeString(JsonUtils.toJsonString(workflowContext));
+        persistence.save(workflowFile(), JsonUtils.toJsonString(workflowContext));
     }
 
-    private void register(WorkflowNode node) {
+    private String readFile(Path path) throws IOException {
+        var content = persistence.read(path);
+
+        return content == null ? "" : content;
+    }
+
+    /** Records the events the loaded workflow listens to into a new file under workflow/recordings. */
+    public Path startRecording(int maxEvents) {
+        if (workflowContext == null) {
+            throw new WorkflowError("No workflow loaded to record events for");
+        }
+
+        var path = directory.resolve("recordings").resolve(System.currentTimeMillis() + ".wfr");
+        recorder.start(path, workflowContext, maxEvents);
+
+        return path;
+    }
+
+    private static Path serverDirectory() {
+        return Vars.dataDirectory.child("workflow").file().toPath();
+    }
+
+    private Path workflowFile() {
+        return directory.resolve("workflow.json");
+    }
+
+    private Path workflowDataFile() {
+        return directory.resolve("workflow_data.json");
+    }
+
+    private synchronized void register(WorkflowNode node) {
         if (nodeTypes.containsKey(node.getName())) {
             throw new IllegalStateException("Node already registered: " + node.getName());
         }
 
         nodeTypes.put(node.getName(), node);
+        nodeCatalog = null;
+    }
+
+    /** The registered node types serialized for the editor. */
+    public WorkflowNodeCatalog getNodeCatalog() {
+        var catalog = nodeCatalog;
+
+        return catalog == null ? buildNodeCatalog() : catalog;
     }
 
-    public void clear() {
+    // Same lock as register and clear, nodeTypes is a plain HashMap
+    private synchronized WorkflowNodeCatalog buildNodeCatalog() {
+        if (nodeCatalog == null) {
+            nodeCatalog = WorkflowNodeCatalog.of(nodeTypes);
+        }
+
+        return nodeCatalog;
+    }
+
+    public synchronized void clear() {
+        nodes.values().forEach(node -> node.unload(this));
+
         events.clear();
-        nodeTypes.clear();
-        nodes.clear();
+        invalidateDispatchTable();
 
-        scheduledTasks.forEach(task -> {
-            if (!task.isCancelled()) {
-                task.cancel(true);
-            }
-        });
+        nodeTypes.clear();
+        nodeCatalog = null;
+        nodes = new HashMap<>();
+        nodeData = new HashMap<>();
+        autocompleteIndex.reset(nodes);
+
+        timer.clear();
+        executor.shutdown();
+        tracer.stop();
+        recorder.stop();
+
+        if (storeTask != null) {
+            storeTask.cancel(false);
+            storeTask = null;
+        }
 
-        scheduledTasks.clear();
+        store.close();
+        persistence.flush();
 
         Log.info("Workflow unloaded");
     }
 
-    public void load(WorkflowContext workflowContext) {
+    /**
+     * Applies a workflow by diffing it against the running graph. Nodes whose
+     * type and field state did not change are kept, together with their
+     * timers and listeners, and only get their outputs rewired. Every new node
+     * is built before anything running is touched, so a failing load leaves
+     * the current graph in place.
+     */
+    public synchronized void load(WorkflowContext workflowContext) {
         Log.info("Load workflow workflowContext" + workflowContext);
 
-        nodes.values().forEach(node -> node.unload(this));
-        nodes.clear();
-        events.clear();
+        var validator = new WorkflowValidator(nodeTypes, expressionParser);
+        var errors = validator.validate(workflowContext);
+
+        if (!errors.isEmpty()) {
+            throw new WorkflowValidationError(errors);
+        }
+
+        var inferredTypes = validator.getInferredTypes();
+        var current = nodes;
+        var next = new HashMap<String, WorkflowNode>();
+        var nextData = new HashMap<String, NodeData>();
+        var created = new ArrayList<WorkflowNode>();
+        var reused = new ArrayList<WorkflowNode>();
 
-        scheduledTasks.forEach(task -> {
-            if (!task.isCancelled()) {
-                task.cancel(true);
+        for (var data : workflowContext.getNodes()) {
+            var previous = current.get(data.getId());
+            var previousData = nodeData.get(data.getId());
+
+            WorkflowNode node;
+
+            if (previous != null && isSameNode(previousData, data)) {
+                node = previous;
+                validateOutputs(node, data);
+                reused.add(node);
+            } else {
+                node = createNode(data, inferredTypes.getOrDefault(data.getId(), Collections.emptyMap()));
+                created.add(node);
             }
-        });
-        scheduledTasks.clear();
+
+            next.put(data.getId(), node);
+            nextData.put(data.getId(), data);
+        }
+
+        // Runs that are mid-flight resolve their next node through this map,
+        // it holds both versions until the reused nodes point at the new ones
+        var transition = new HashMap<String, WorkflowNode>(current);
+        transition.putAll(next);
+        nodes = transition;
+
+        initNodes(created, current);
 
         this.workflowContext = workflowContext;
         writeWorkflowToFile();
 
-        for (var data : workflowContext.getNodes()) {
-            var node = nodeTypes.get(data.getName());
+        for (var node : reused) {
+            applyOutputs(node, nextData.get(node.getId()));
+        }
+
+        nodes = next;
+        nodeData = nextData;
 
-            if (node == null) {
-                throw new WorkflowError("Node type not found: " + data.getName());
+        for (var node : current.values()) {
+            if (next.get(node.getId()) != node) {
+                node.unload(this);
             }
+        }
+
+        profiler.retain(next.keySet());
+        tracer.reset();
+        autocompleteIndex.reset(next);
+
+        rebuildDispatchTable();
 
-            var constructors = node.getClass().getConstructors();
+        Log.info("Context loaded, created: " + created.size() + ", kept: " + reused.size());
+    }
+
+    /**
+     * Initializes the created nodes. When one fails, the ones already started
+     * are unloaded again and the running graph is restored before rethrowing.
+     */
+    private void initNodes(List<WorkflowNode> created, Map<String, WorkflowNode> current) {
+        var started = new ArrayList<WorkflowNode>();
 
-            if (constructors == null || constructors.length == 0) {
-                throw new WorkflowError("No constructor for node: " + node.getClass().getSimpleName());
+        try {
+            for (var node : created) {
+                // A node that throws halfway may have registered something already
+                started.add(node);
+                node.init(this);
+            }
+        } catch (RuntimeException e) {
+            for (int i = started.size() - 1; i >= 0; i--) {
+                try {
+                    started.get(i).unload(this);
+                } catch (Exception unloadError) {
+                    Log.err("Failed to unload node @ after a failed load: @", started.get(i).getId(),
+                            unloadError.getMessage());
+                }
             }
 
-            try {
-                var newNode = (WorkflowNode) constructors[0].newInstance();
-
-                newNode.setId(data.getId());
-
-                data.getState().getOutputs().entrySet().forEach(entry -> {
-                    var name = entry.getKey();
-                    var nextId = entry.getValue();
-                    var newOutput = newNode.getOutputs()
-                            .stream()
-                            .filter(nn -> nn.getName().equals(name))
-                            .findFirst()
-                            .orElseThrow(() -> new WorkflowError(
-                                    "Node output not found: " + name + " on node: " + node.getName()));
-
-                    newOutput.setNextId(nextId);
-                });
-
-                data.getState().getFields().entrySet().forEach(entry -> {
-                    var name = entry.getKey();
-                    var value = entry.getValue();
-                    var newOutput = newNode.getFields()
-                            .stream()
-                            .filter(nn -> nn.getName().equals(name))
-                            .findFirst()
-                            .orElseThrow(() -> new WorkflowError(
-                                    "Node fields not found: " + name + " on node: "
-                                            + node.getName()));
-
-                    if (newOutput.getConsumer().isRequired() && value.getConsumer() == null) {
-                        throw new WorkflowError("Node fields value is required: " + name
-                                + " on node: " + node.getName());
-                    }
+            nodes = current;
 
-                    newOutput.getConsumer().setValue(value.getConsumer());
+            throw e;
+        }
+    }
 
-                    if (value.getVariableName() != null) {
-                        newOutput.getProducer().setVariableName(value.getVariableName());
-                    }
-                });
+    private static boolean isSameNode(NodeData previous, NodeData data) {
+        return previous != null
+                && Objects.equals(previous.getName(), data.getName())
+                && previous.getState() != null
+                && data.getState() != null
+                && Objects.equals(previous.getState().getFields(), data.getState().getFields());
+    }
 
-                nodes.put(newNode.getId(), newNode);
+    /** Variable path completions for a field of the node, null when the node does not exist. */
+    public List<String> autocomplete(String nodeId, String input) {
+        var node = nodes.get(nodeId);
 
-                Log.debug("Node loaded: " + newNode.getName() + ":" + newNode.getId() + " "
-                        + data.getState().getOutputs());
+        if (node == null) {
+            return null;
+        }
+
+        var result = autocompleteIndex.complete(nodeId, input, AutocompleteIndex.DEFAULT_LIMIT);
 
-            } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
-                throw new WorkflowError("Can not create new node: " + node.getClass().getSimpleName(), e);
+        for (var completion : node.autocomplete(input.trim())) {
+            if (!result.contains(completion)) {
+                result.add(completion);
             }
         }
 
-        for (var node : nodes.values()) {
-            node.init(this);
+        return result;
+    }
+
+    /** Checks a workflow without loading it. */
+    public List<WorkflowError> validate(WorkflowContext workflowContext) {
+        return new WorkflowValidator(nodeTypes, expressionParser).validate(workflowContext);
+    }
+
+    private WorkflowNode createNode(NodeData data, Map<String, Class<?>> inferredTypes) {
+        var type = nodeTypes.get(data.getName());
+
+        if (type == null) {
+            throw new WorkflowError("Node type not found: " + data.getName());
         }
 
-        Log.info("Context loaded");
+        var newNode = type.newInstance();
+
+        newNode.setId(data.getId());
+
+        validateOutputs(newNode, data);
+        applyOutputs(newNode, data);
+
+        data.getState().getFields().entrySet().forEach(entry -> {
+            var name = entry.getKey();
+            var value = entry.getValue();
+            var newOutput = newNode.getFields()
+                    .stream()
+                    .filter(nn -> nn.getName().equals(name))
+                    .findFirst()
+                    .orElseThrow(() -> new WorkflowError(
+                            "Node fields not found: " + name + " on node: "
+                                    + type.getName()));
+
+            if (newOutput.getConsumer() != null) {
+                if (newOutput.getConsumer().isRequired() && value.getConsumer() == null) {
+                    throw new WorkflowError("Node fields value is required: " + name
+                            + " on node: " + type.getName());
+                }
+
+                newOutput.getConsumer().setValue(value.getConsumer());
+
+                try {
+                    newOutput.getConsumer().compile(expressionParser);
+                } catch (WorkflowError e) {
+                    throw new WorkflowError("Invalid expression on field: " + name + " on node: "
+                            + type.getName() + ", " + e.getMessage(), e);
+                }
+
+                var inferred = inferredTypes.get(name);
+
+                if (inferred != null
+                        && newOutput.getConsumer().getCompiledExpression() != null
+                        && newOutput.getConsumer().getType().isAssignableFrom(inferred)) {
+                    newOutput.getConsumer().setVerified(true);
+                }
+            }
+
+            if (value.getVariableName() != null && newOutput.getProducer() != null) {
+                newOutput.getProducer().setVariableName(value.getVariableName());
+            }
+        });
+
+        Log.debug("Node loaded: " + newNode.getName() + ":" + newNode.getId() + " "
+                + data.getState().getOutputs());
+
+        return newNode;
+    }
+
+    private static void validateOutputs(WorkflowNode node, NodeData data) {
+        for (var name : data.getState().getOutputs().keySet()) {
+            if (node.getOutputs().stream().noneMatch(output -> output.getName().equals(name))) {
+                throw new WorkflowError("Node output not found: " + name + " on node: " + node.getName());
+            }
+        }
+    }
+
+    private static void applyOutputs(WorkflowNode node, NodeData data) {
+        var outputs = data.getState().getOutputs();
+
+        for (var output : node.getOutputs()) {
+            output.setNextId(outputs.get(output.getName()));
+        }
     }
 
-    public <T> Cons2<T, Boolean> on(Class<T> type, Cons2<T, Boolean> listener) {
+    public synchronized <T> Cons2<T, Boolean> on(Class<T> type, Cons2<T, Boolean> listener) {
         events.computeIfAbsent(type, (_ignore) -> new Seq<>(Cons2.class)).add(listener);
+        registeredAt.putIfAbsent(listener, registrations++);
+        invalidateDispatchTable();
 
         return listener;
     }
 
-    public <T> boolean remove(Class<T> type, Cons2<T, Boolean> listener) {
-        return events.computeIfAbsent(type, (_ignore) -> new Seq<>(Cons2.class)).remove(listener);
+    public synchronized <T> boolean remove(Class<T> type, Cons2<T, Boolean> listener) {
+        boolean removed = events.computeIfAbsent(type, (_ignore) -> new Seq<>(Cons2.class)).remove(listener);
+
+        if (removed && events.values().stream().noneMatch(listeners -> listeners.contains(listener, true))) {
+            registeredAt.remove(listener);
+        }
+
+        invalidateDispatchTable();
+
+        return removed;
+    }
+
+    /**
+     * Whether any listener, including ones registered on a superclass or
+     * interface, would receive an event of this concrete class.
+     */
+    public boolean hasListeners(Class<?> type) {
+        return listeners(type).length != 0;
     }
 
     @SuppressWarnings({ "rawtypes", "unchecked" })
@@ -274,51 +644,138 @@ public class Workflow {
 
     @SuppressWarnings({ "rawtypes", "unchecked" })
     public <T> void fire(Class<?> ctype, T type, boolean before) {
-        Seq<Cons2<?, Boolean>> listeners = events.get(ctype);
+        Cons2[] items = listeners(ctype);
 
-        if (listeners != null) {
-            int len = listeners.size;
-            Cons2[] items = listeners.items;
-            for (int i = 0; i < len; i++) {
-                items[i].get(type, before);
+        for (int i = 0; i < items.length; i++) {
+            items[i].get(type, before);
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private Cons2[] listeners(Class<?> type) {
+        int id = EVENT_IDS.get(type);
+        Cons2[][] table = dispatchTable;
+
+        if (id < table.length) {
+            Cons2[] listeners = table[id];
+
+            if (listeners != null) {
+                return listeners;
             }
         }
+
+        return resolveListeners(type, id);
     }
 
-    private void tryRun(Runnable runnable) {
-        try {
-            runnable.run();
-        } catch (Exception e) {
-            Log.err("Error running task", e);
+    @SuppressWarnings("rawtypes")
+    private synchronized Cons2[] resolveListeners(Class<?> type, int id) {
+        Cons2[][] table = dispatchTable;
+
+        if (id < table.length && table[id] != null) {
+            return table[id];
+        }
+
+        if (id >= table.length) {
+            int size = Math.max(id + 1, table.length * 2);
+            table = Arrays.copyOf(table, size);
+            dispatchClasses = Arrays.copyOf(dispatchClasses, size);
+        }
+
+        Cons2[] listeners = flattenListeners(type);
+
+        table[id] = listeners;
+        dispatchClasses[id] = type;
+        dispatchTable = table;
+
+        return listeners;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private Cons2[] flattenListeners(Class<?> type) {
+        Seq<Cons2> result = new Seq<>(Cons2.class);
+
+        Seq<Cons2<?, Boolean>> exact = events.get(type);
+        if (exact != null) {
+            for (int i = 0; i < exact.size; i++) {
+                result.add(exact.items[i]);
+            }
+        }
+
+        var inherited = new ArrayList<Cons2<?, Boolean>>();
+
+        for (var entry : events.entrySet()) {
+            if (entry.getKey() != type
+                    && entry.getKey() instanceof Class<?> registered
+                    && registered.isAssignableFrom(type)) {
+                var listeners = entry.getValue();
+                for (int i = 0; i < listeners.size; i++) {
+                    inherited.add(listeners.items[i]);
+                }
+            }
+        }
+
+        // The map iterates in hash order, listeners of supertypes keep the order they were added in
+        inherited.sort(Comparator.comparingLong(listener -> registeredAt.getOrDefault(listener, Long.MAX_VALUE)));
+
+        for (var listener : inherited) {
+            result.add(listener);
+        }
+
+        return result.size == 0 ? NO_LISTENERS : Arrays.copyOf(result.items, result.size);
+    }
+
+    private synchronized void invalidateDispatchTable() {
+        dispatchTable = new Cons2[dispatchTable.length][];
+    }
+
+    /** Eagerly re-resolves every event class that has been dispatched so far. */
+    @SuppressWarnings("rawtypes")
+    private synchronized void rebuildDispatchTable() {
+        Cons2[][] table = new Cons2[dispatchClasses.length][];
+
+        for (int id = 0; id < dispatchClasses.length; id++) {
+            if (dispatchClasses[id] != null) {
+                table[id] = flattenListeners(dispatchClasses[id]);
+            }
         }
+
+        dispatchTable = table;
+    }
+
+    /** Applies an effect on game state, see {@link WorkflowExecutor#apply(Runnable)}. */
+    public void apply(Runnable effect) {
+        executor.apply(effect);
     }
 
-    public void scheduleAtFixedRate(Runnable runnable, long delay, long period) {
+    public WorkflowTimer.Timeout scheduleAtFixedRate(Runnable runnable, long delay, long period) {
         Log.debug("Schedule task at fixed rate: " + runnable.getClass().getName() +
                 " delay: " + delay +
                 " period: " + period);
 
-        scheduledTasks
-                .add(context.get().BACKGROUND_SCHEDULER.scheduleAtFixedRate(() -> tryRun(runnable), delay, period,
-                        TimeUnit.SECONDS));
+        return timer.scheduleAtFixedRate(runnable, delay, period, TimeUnit.SECONDS);
     }
 
-    public void scheduleWithFixedDelay(Runnable runnable, long initialDelay, long delay) {
+    public WorkflowTimer.Timeout scheduleWithFixedDelay(Runnable runnable, long initialDelay, long delay) {
         Log.debug("Schedule task with fixed delay: " +
                 runnable.getClass().getName() +
                 " initialDelay: " + initialDelay +
                 " delay: " + delay);
 
-        scheduledTasks
-                .add(context.get().BACKGROUND_SCHEDULER.scheduleWithFixedDelay(() -> tryRun(runnable), initialDelay,
-                        delay,
-                        TimeUnit.SECONDS));
+        return timer.scheduleWithFixedDelay(runnable, initialDelay, delay, TimeUnit.SECONDS);
     }
 
-    public void schedule(Runnable runnable, long delay) {
+    public WorkflowTimer.Timeout schedule(Runnable runnable, long delay) {
         Log.debug("Schedule task: " + runnable.getClass().getName() + " delay: " + delay);
-        scheduledTasks
-                .add(context.get().BACKGROUND_SCHEDULER.schedule(() -> tryRun(runnable), delay, TimeUnit.SECONDS));
+
+        return timer.schedule(runnable, delay, TimeUnit.SECONDS);
+    }
+
+    public WorkflowTimer.Timeout scheduleAtFixedRate(Runnable runnable, long delay, long period, TimeUnit unit) {
+        return timer.scheduleAtFixedRate(runnable, delay, period, unit);
+    }
+
+    public WorkflowTimer.Timeout schedule(Runnable runnable, long delay, TimeUnit unit) {
+        return timer.schedule(runnable, delay, unit);
     }
 
 }
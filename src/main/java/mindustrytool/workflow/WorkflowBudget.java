@@ -0,0 +1,171 @@
+package mindustrytool.workflow;
+
+import java.util.HashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import arc.util.Log;
+
+/**
+ * Time and step limits for workflow runs, checked between steps. A run that
+ * used up its own budget is aborted. A run on the game thread that finds the
+ * tick budget used up is suspended until the next tick or aborted, depending
+ * on the action. A single slow node can not be interrupted, the limits bound
+ * how much runs after it. A limit of 0 disables it.
+ */
+public class WorkflowBudget {
+    private final Consumer<Runnable> mainThread;
+
+    private volatile long runNanos = 50_000_000L;
+    private volatile int runSteps = 0;
+    private volatile long tickNanos = 5_000_000L;
+    private volatile int tickSteps = 0;
+    private volatile WorkflowBudgetAction action = WorkflowBudgetAction.SUSPEND;
+
+    private final LongAdder suspended = new LongAdder();
+    private final LongAdder aborted = new LongAdder();
+
+    // Game thread only, reset by a post that runs at the start of the next tick
+    private long tickUsedNanos;
+    private int tickUsedSteps;
+    private boolean tickResetScheduled;
+
+    public WorkflowBudget(Consumer<Runnable> mainThread) {
+        this.mainThread = mainThread;
+    }
+
+    public long getRunNanos() {
+        return runNanos;
+    }
+
+    public void setRunNanos(long runNanos) {
+        this.runNanos = Math.max(0, runNanos);
+    }
+
+    public int getRunSteps() {
+        return runSteps;
+    }
+
+    public void setRunSteps(int runSteps) {
+        this.runSteps = Math.max(0, runSteps);
+    }
+
+    public long getTickNanos() {
+        return tickNanos;
+    }
+
+    public void setTickNanos(long tickNanos) {
+        this.tickNanos = Math.max(0, tickNanos);
+    }
+
+    public int getTickSteps() {
+        return tickSteps;
+    }
+
+    public void setTickSteps(int tickSteps) {
+        this.tickSteps = Math.max(0, tickSteps);
+    }
+
+    public WorkflowBudgetAction getAction() {
+        return action;
+    }
+
+    public void setAction(WorkflowBudgetAction action) {
+        this.action = action;
+    }
+
+    public long getSuspended() {
+        return suspended.sum();
+    }
+
+    public long getAborted() {
+        return aborted.sum();
+    }
+
+    /**
+     * Decides whether the run may execute its next step. Returns null when it
+     * may, otherwise what to do with it. Reports every decision other than null.
+     */
+    WorkflowBudgetAction check(WorkflowRun run, WorkflowEmitEvent next, boolean onWorker) {
+        long runNanos = this.runNanos;
+        int runSteps = this.runSteps;
+
+        if (runSteps > 0 && run.getUsedSteps() >= runSteps) {
+            return report(next, run, "run steps", WorkflowBudgetAction.ABORT);
+        }
+
+        if (runNanos > 0 && run.getUsedNanos() >= runNanos) {
+            return report(next, run, "run time", WorkflowBudgetAction.ABORT);
+        }
+
+        // Workers do not hold up the tick
+        if (onWorker) {
+            return null;
+        }
+
+        long tickNanos = this.tickNanos;
+        int tickSteps = this.tickSteps;
+
+        if (tickSteps > 0 && tickUsedSteps >= tickSteps) {
+            return report(next, run, "tick steps", action);
+        }
+
+        if (tickNanos > 0 && tickUsedNanos >= tickNanos) {
+            return report(next, run, "tick time", action);
+        }
+
+        return null;
+    }
+
+    void charge(WorkflowRun run, long nanos, boolean onWorker) {
+        run.charge(nanos);
+
+        if (onWorker) {
+            return;
+        }
+
+        tickUsedNanos += nanos;
+        tickUsedSteps++;
+
+        if (!tickResetScheduled) {
+            tickResetScheduled = true;
+            mainThread.accept(this::resetTick);
+        }
+    }
+
+    /** Continues a suspended run on the next tick. */
+    void defer(Runnable drain) {
+        mainThread.accept(drain);
+    }
+
+    private void resetTick() {
+        tickUsedNanos = 0;
+        tickUsedSteps = 0;
+        tickResetScheduled = false;
+    }
+
+    private WorkflowBudgetAction report(WorkflowEmitEvent next, WorkflowRun run, String reason,
+            WorkflowBudgetAction result) {
+        if (result == WorkflowBudgetAction.ABORT) {
+            aborted.increment();
+            Log.warn("Workflow run of node @ aborted before node @, @ budget used up after @ steps and @ms",
+                    run.getEmitter().getId(), next.getCurrent().getId(), reason,
+                    run.getUsedSteps(), run.getUsedNanos() / 1_000_000);
+        } else {
+            suspended.increment();
+        }
+
+        var context = next.getContext();
+
+        if (context.getTracer().hasConsumers()) {
+            HashMap<String, Object> value = new HashMap<>();
+            value.put("reason", reason);
+            value.put("action", result);
+            value.put("nanos", run.getUsedNanos());
+            value.put("steps", run.getUsedSteps());
+            context.sendWorkflowEvent(new WorkflowEvent(next.getCurrent().getId(), "BUDGET", value));
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,9 @@
+package mindustrytool.workflow;
+
+/** What happens to a run that finds the tick budget used up. */
+public enum WorkflowBudgetAction {
+    /** The run continues on the next tick. */
+    SUSPEND,
+    /** The run is dropped. */
+    ABORT
+}
@@ -0,0 +1,15 @@
+package mindustrytool.workflow;
+
+/**
+ * What happens to a run when the workflow worker queue is full. Only runs
+ * that have not executed a step are ever dropped, a run that is underway
+ * continues on the calling thread under every policy.
+ */
+public enum WorkflowDropPolicy {
+    /** The run continues on the thread that queued it, which slows the game down instead of losing work. */
+    CALLER_RUNS,
+    /** The run that did not fit is dropped. */
+    DROP_NEWEST,
+    /** The oldest queued run that has not started is dropped to make room. */
+    DROP_OLDEST
+}
@@ -1,20 +1,21 @@
 package mindustrytool.workflow;
 
-import java.util.Calendar;
-import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import arc.util.Log;
 import lombok.Getter;
 import lombok.ToString;
-import mindustry.gen.Groups;
+import mindustrytool.workflow.errors.WorkflowError;
+import mindustrytool.workflow.nodes.JoinWorkflow;
 import mindustrytool.workflow.nodes.WorkflowNode;
 
-@ToString(exclude = { "context" })
+@ToString(exclude = { "context", "run" })
 public class WorkflowEmitEvent {
     private static final int MAX_STEP = 5000;
 
+    @Getter
     private final int step;
 
     @Getter
@@ -26,84 +27,189 @@ public class WorkflowEmitEvent {
     @Getter
     private final Workflow context;
 
+    private final WorkflowRun run;
+
+    WorkflowRun getRun() {
+        return run;
+    }
+
     public WorkflowEmitEvent putValue(String name, Object value) {
         variables.put(name, value);
-        Log.debug("Add variable: " + name + " = " + value);
+        Log.debug("Add variable: @ = @", name, value);
 
-        HashMap<String, Object> vars = new HashMap<>();
+        if (run.isTraced()) {
+            HashMap<String, Object> vars = new HashMap<>();
 
-        vars.put(name, value);
+            vars.put(name, value);
 
-        context.sendWorkflowEvent(new WorkflowEvent(current.getId(), "SET", vars));
+            context.sendWorkflowEvent(new WorkflowEvent(current.getId(), "SET", vars));
+        }
 
         return this;
     }
 
-    private WorkflowEmitEvent(int step, WorkflowNode currentNode, Workflow context, Map<String, Object> variables) {
+    private WorkflowEmitEvent(int step, WorkflowNode currentNode, Workflow context, Map<String, Object> variables,
+            WorkflowRun run) {
         this.step = step;
         this.current = currentNode;
         this.context = context;
         this.variables = variables;
+        this.run = run;
+    }
 
-        putDefaultValues(variables);
-
-        Log.debug("step: " + step + " current: " + current.getName() + ":" + currentNode.getId() + " variables: "
-                + variables);
+    public void next() {
+        next(current.nextId());
     }
 
-    public static void putDefaultValues(Map<String, Object> variables) {
+    public void next(String nextId) {
+        if (step > MAX_STEP) {
+            throw new WorkflowError("Max step exceeded: " + MAX_STEP);
+        }
+
+        if (nextId == null) {
+            Log.debug("No next node to execute, step: @, current: @", step, current.getId());
+            return;
+        }
+
+        var node = context.getNodes().get(nextId);
 
-        variables.put("@time", System.currentTimeMillis());
-        variables.put("@step", 0);
+        // A reload removed it while this run waited, like a Wait whose timer was still pending
+        if (node == null) {
+            Log.warn("Node not found, id: @, run ends at: @", nextId, current.getId());
+            run.dropHandOff();
+            return;
+        }
 
-        Calendar calendar = Calendar.getInstance();
+        run.submit(new WorkflowEmitEvent(step + 1, node, context, variables, run));
+    }
 
-        variables.put("@second", calendar.get(Calendar.SECOND));
-        variables.put("@minute", calendar.get(Calendar.MINUTE));
-        variables.put("@hour", calendar.get(Calendar.HOUR));
-        variables.put("@day", calendar.get(Calendar.DAY_OF_MONTH));
-        variables.put("@month", calendar.get(Calendar.MONTH));
-        variables.put("@year", calendar.get(Calendar.YEAR));
+    /**
+     * Continues every next id at once, each as a branch on the worker pool.
+     * With a Join the forking run continues once the branches met there,
+     * without one it ends here.
+     */
+    public void fork(List<String> nextIds, JoinWorkflow join) {
+        if (step > MAX_STEP) {
+            throw new WorkflowError("Max step exceeded: " + MAX_STEP);
+        }
 
-        variables.put("@datetime", new Date().toString());
-        variables.put("@players", Groups.player);
+        for (var nextId : nextIds) {
+            node(nextId);
+        }
 
+        if (!nextIds.isEmpty()) {
+            context.getExecutor().fork(this, run, nextIds, join);
+        }
     }
 
-    public void next() {
-        next(current.nextId());
+    /**
+     * Marks that this run continues later from a callback calling next on
+     * this event, so it does not count as ended once the node returns.
+     */
+    public void handOff() {
+        run.handOff();
     }
 
-    public void next(String nextId) {
-        if (step > MAX_STEP) {
-            throw new StackOverflowError("Max stack exceeded");
+    /**
+     * Ends the run of an event that handed off its continuation but will not
+     * be continued after all, like one a newer event replaced.
+     */
+    public void end() {
+        run.finish();
+    }
+
+    /**
+     * Hands this branch to the join of the enclosing fork, which continues the
+     * forking run once the branches met. Outside a fork this is a plain next.
+     */
+    public void join(JoinWorkflow node) {
+        var join = run.getJoin();
+
+        if (join == null) {
+            putValue(node.getArrivedName(), 1);
+            next(node.getJoinedId());
+            return;
         }
 
+        join.arrive(this);
+    }
+
+    WorkflowEmitEvent branch(String nextId, WorkflowRun branchRun) {
+        return new WorkflowEmitEvent(step + 1, node(nextId), context, ((WorkflowScope) variables).child(branchRun),
+                branchRun);
+    }
+
+    void resume(String nextId, int lastStep, Map<String, Object> values) {
         if (nextId == null) {
-            Log.debug("No next node to execute, step: @, current: @", step, current.getId());
             return;
         }
 
-        var nextNode = context.getNodes().get(nextId);
+        var scope = ((WorkflowScope) variables).child();
+        scope.putAll(values);
+
+        var event = new WorkflowEmitEvent(lastStep + 1, node(nextId), context, scope, run);
+        var executor = context.getExecutor();
+
+        // A run that is not pooled must not continue on a worker
+        if (run.isParallel() || !executor.isWorker()) {
+            run.submit(event);
+        } else {
+            executor.toMainThread(() -> run.submit(event));
+        }
+    }
+
+    private WorkflowNode node(String id) {
+        var node = context.getNodes().get(id);
 
-        if (nextNode == null) {
-            throw new IllegalStateException("Node not found, id: " + nextId);
+        if (node == null) {
+            throw new IllegalStateException("Node not found, id: " + id);
         }
 
+        return node;
+    }
+
+    /** Executes the current node and returns how long it took. */
+    long execute() {
+        Log.debug("step: @ current: @:@", step, current.getName(), current.getId());
+
+        boolean failed = false;
+        long start = System.nanoTime();
+
         try {
-            nextNode.execute(new WorkflowEmitEvent(step + 1, nextNode, context, variables));
+            current.execute(this);
         } catch (Exception e) {
+            failed = true;
             Log.err(e);
-            HashMap<String, Object> error = new HashMap<>();
-            error.put("message", e.getMessage());
-            context.sendWorkflowEvent(new WorkflowEvent(nextNode.getId(), "ERROR", error));
+
+            // Errors are reported whether or not the run was sampled
+            if (context.getTracer().hasConsumers()) {
+                HashMap<String, Object> error = new HashMap<>();
+                error.put("message", e.getMessage());
+                context.sendWorkflowEvent(new WorkflowEvent(current.getId(), "ERROR", error));
+            }
+        }
+
+        long nanos = System.nanoTime() - start;
+
+        context.getProfiler().recordStep(current, run.getEmitter(), nanos, failed);
+
+        if (run.isTraced()) {
+            context.sendWorkflowEvent(new WorkflowEvent(current.getId(), "EMIT", null));
         }
-        context.sendWorkflowEvent(new WorkflowEvent(nextNode.getId(), "EMIT", null));
+
+        return nanos;
     }
 
     public static WorkflowEmitEvent create(WorkflowNode current, Workflow context) {
-        context.sendWorkflowEvent(new WorkflowEvent(current.getId(), "EMIT", null));
+        var executor = context.getExecutor();
+        var run = new WorkflowRun(current, context.getTracer().sample(), executor.isAsync() ? executor : null);
+
+        context.getProfiler().recordRun(current);
+
+        if (run.isTraced()) {
+            context.sendWorkflowEvent(new WorkflowEvent(current.getId(), "EMIT", null));
+        }
 
-        return new WorkflowEmitEvent(0, current, context, new HashMap<>());
+        return new WorkflowEmitEvent(0, current, context, new WorkflowScope(run), run);
     }
 }
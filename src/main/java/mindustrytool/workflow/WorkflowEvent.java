@@ -2,6 +2,7 @@ package mindustrytool.workflow;
 
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 import lombok.Data;
 
@@ -18,7 +19,9 @@ public class WorkflowEvent<T extends Map> {
         this.name = name;
         this.value = value;
 
-        id = UUID.randomUUID().toString();
+        // Only needs to be unique per editor session, SecureRandom is not worth it here
+        var random = ThreadLocalRandom.current();
+        id = new UUID(random.nextLong(), random.nextLong()).toString();
         createdAt = System.currentTimeMillis();
     }
 }
@@ -0,0 +1,8 @@
+package mindustrytool.workflow;
+
+public enum WorkflowExecutionMode {
+    /** Runs execute inside the game's event dispatch, as they always did. */
+    SYNC,
+    /** Runs are queued on the workflow worker pool, game effects are applied once per tick. */
+    ASYNC
+}
@@ -0,0 +1,334 @@
+package mindustrytool.workflow;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import arc.util.Log;
+import mindustrytool.workflow.nodes.JoinWorkflow;
+
+/**
+ * Worker pool for workflow runs. Forked branches always execute here, and in
+ * {@link WorkflowExecutionMode#ASYNC} mode every run does. Runs hop to the
+ * game thread for nodes that need it and back to a worker for the rest.
+ * Effects on game state are queued with {@link #apply(Runnable)} and applied
+ * together once per tick.
+ */
+public class WorkflowExecutor {
+    public static final int DEFAULT_QUEUE_SIZE = 1024;
+
+    private final Consumer<Runnable> mainThread;
+    private final AtomicInteger threadId = new AtomicInteger();
+
+    private final Queue<Runnable> effects = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean effectsScheduled = new AtomicBoolean();
+
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+
+    private volatile WorkflowExecutionMode mode = WorkflowExecutionMode.SYNC;
+    private volatile WorkflowDropPolicy dropPolicy = WorkflowDropPolicy.CALLER_RUNS;
+    private volatile int queueSize = DEFAULT_QUEUE_SIZE;
+    private volatile boolean dryRun;
+
+    private ThreadPoolExecutor pool;
+
+    public WorkflowExecutor(Consumer<Runnable> mainThread) {
+        this.mainThread = mainThread;
+    }
+
+    public WorkflowExecutionMode getMode() {
+        return mode;
+    }
+
+    public void setMode(WorkflowExecutionMode mode) {
+        this.mode = mode;
+    }
+
+    public WorkflowDropPolicy getDropPolicy() {
+        return dropPolicy;
+    }
+
+    public void setDropPolicy(WorkflowDropPolicy dropPolicy) {
+        this.dropPolicy = dropPolicy;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /** Resizes the worker queue. Work already queued finishes on the old pool. */
+    public synchronized void setQueueSize(int queueSize) {
+        if (queueSize < 1) {
+            throw new IllegalArgumentException("Queue size must be positive: " + queueSize);
+        }
+
+        if (queueSize == this.queueSize) {
+            return;
+        }
+
+        this.queueSize = queueSize;
+
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    /** Runs waiting for a worker. */
+    public synchronized int getQueued() {
+        return pool == null ? 0 : pool.getQueue().size();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getApplied() {
+        return applied.sum();
+    }
+
+    /** Effects counted instead of applied, see {@link #setDryRun(boolean)}. */
+    public long getDiscarded() {
+        return discarded.sum();
+    }
+
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    /** Counts effects instead of applying them, for replays that must not touch the game. */
+    public void setDryRun(boolean dryRun) {
+        this.dryRun = dryRun;
+    }
+
+    public int getPendingEffects() {
+        return effects.size();
+    }
+
+    /** Whether the current thread is one of this executor's workers. */
+    public boolean isWorker() {
+        return Thread.currentThread() instanceof Worker worker && worker.owner == this;
+    }
+
+    /** Whether a run started now should execute on the pool. */
+    boolean isAsync() {
+        return mode == WorkflowExecutionMode.ASYNC;
+    }
+
+    /**
+     * Applies an effect on game state. On a worker it is queued and applied
+     * with every other effect of this tick in one post, anywhere else it runs
+     * right away.
+     */
+    public void apply(Runnable effect) {
+        if (dryRun) {
+            discarded.increment();
+            return;
+        }
+
+        if (!isWorker()) {
+            effect.run();
+            applied.increment();
+            return;
+        }
+
+        effects.add(effect);
+
+        if (effectsScheduled.compareAndSet(false, true)) {
+            mainThread.accept(this::applyEffects);
+        }
+    }
+
+    private void applyEffects() {
+        // Cleared first, an effect added while draining schedules the next tick
+        effectsScheduled.set(false);
+
+        Runnable effect;
+
+        while ((effect = effects.poll()) != null) {
+            try {
+                effect.run();
+            } catch (Exception e) {
+                Log.err("Error applying workflow effect", e);
+            }
+
+            applied.increment();
+        }
+    }
+
+    /**
+     * Starts one branch run per next id, each with its own copy-on-write scope
+     * over the forking event's variables. With a Join node the forking run
+     * waits for the branches there, its timeout counted from now.
+     */
+    public void fork(WorkflowEmitEvent event, WorkflowRun parent, List<String> nextIds, JoinWorkflow node) {
+        WorkflowJoin join = null;
+
+        if (node != null) {
+            join = new WorkflowJoin(event, nextIds.size(), node);
+            parent.handOff();
+        }
+
+        for (var nextId : nextIds) {
+            var run = new WorkflowRun(parent, this, join);
+            var branch = event.branch(nextId, run);
+
+            if (!tryExecute(() -> run.submit(branch))) {
+                // Pool saturated, the branch runs on the game thread instead
+                mainThread.accept(() -> run.submit(branch));
+            }
+        }
+    }
+
+    /**
+     * Moves a pooled run to the thread its next node needs. Returns false when
+     * the current thread is already right and the run should go on here.
+     * When the queue is full only a run that has not executed a step yet can
+     * be dropped, one that is underway continues on the calling thread.
+     */
+    boolean dispatch(WorkflowRun run, boolean needsMainThread, boolean started, Runnable task) {
+        boolean onWorker = isWorker();
+
+        if (needsMainThread && onWorker) {
+            mainThread.accept(task);
+            return true;
+        }
+
+        if (needsMainThread || onWorker) {
+            return false;
+        }
+
+        var queued = new QueuedRun(run, started, task);
+
+        if (tryExecute(queued)) {
+            return true;
+        }
+
+        if (!queued.isDroppable()) {
+            return false;
+        }
+
+        switch (dropPolicy) {
+            case DROP_NEWEST:
+                drop(run);
+                return true;
+
+            case DROP_OLDEST:
+                var oldest = pollOldest();
+
+                if (oldest == null) {
+                    drop(run);
+                    return true;
+                }
+
+                drop(oldest.run);
+
+                return tryExecute(queued);
+
+            default:
+                return false;
+        }
+    }
+
+    void toMainThread(Runnable task) {
+        mainThread.accept(task);
+    }
+
+    public synchronized void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+            pool = null;
+        }
+
+        effects.clear();
+        effectsScheduled.set(false);
+    }
+
+    /** Takes the oldest queued run that has not started out of the queue, null when there is none. */
+    private synchronized QueuedRun pollOldest() {
+        if (pool == null) {
+            return null;
+        }
+
+        for (var task : pool.getQueue()) {
+            if (task instanceof QueuedRun queued && queued.isDroppable() && pool.getQueue().remove(task)) {
+                return queued;
+            }
+        }
+
+        return null;
+    }
+
+    private void drop(WorkflowRun run) {
+        run.abandon();
+        dropped.increment();
+
+        Log.warn("Workflow worker queue full (@), dropped a run of node @", dropPolicy, run.getEmitter().getId());
+    }
+
+    private boolean tryExecute(Runnable task) {
+        try {
+            pool().execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            Log.debug("Workflow worker queue full");
+            return false;
+        }
+    }
+
+    private synchronized ThreadPoolExecutor pool() {
+        if (pool == null) {
+            int threads = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+
+            pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueSize),
+                    runnable -> new Worker(this, runnable, "workflow-worker-" + threadId.incrementAndGet()));
+            pool.allowCoreThreadTimeOut(true);
+        }
+
+        return pool;
+    }
+
+    /** A run waiting for a worker, the queue is searched for these when dropping the oldest one. */
+    private static final class QueuedRun implements Runnable {
+        private final WorkflowRun run;
+        private final boolean started;
+        private final Runnable task;
+
+        private QueuedRun(WorkflowRun run, boolean started, Runnable task) {
+            this.run = run;
+            this.started = started;
+            this.task = task;
+        }
+
+        // A dropped branch would end at its join without arriving, the forking run would go on without its result
+        private boolean isDroppable() {
+            return !started && run.getJoin() == null;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+    }
+
+    private static final class Worker extends Thread {
+        private final WorkflowExecutor owner;
+
+        private Worker(WorkflowExecutor owner, Runnable runnable, String name) {
+            super(runnable, name);
+            this.owner = owner;
+            setDaemon(true);
+        }
+    }
+}
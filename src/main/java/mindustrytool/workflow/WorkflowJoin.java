@@ -0,0 +1,121 @@
+package mindustrytool.workflow;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import mindustrytool.workflow.nodes.JoinWorkflow;
+
+/**
+ * Meeting point of the branches started by one fork. The Join found
+ * downstream of the fork decides how it ends: after every branch, after the
+ * first one, or when the timeout counted from the fork runs out. A branch
+ * that ends without reaching a Join is no longer waited for but hands back
+ * nothing, so the fork also ends when no branch gets there. The forking
+ * run then continues with the variables the arrived branches set, later
+ * arrivals win.
+ */
+final class WorkflowJoin {
+    private final WorkflowEmitEvent fork;
+    private final int total;
+    private final boolean any;
+    private final String nextId;
+    private final String timeoutId;
+    private final String arrivedName;
+
+    private final Map<String, Object> values = new LinkedHashMap<>();
+    private final Set<WorkflowRun> finished = Collections.newSetFromMap(new IdentityHashMap<>());
+    private int arrived;
+    private int step;
+    private boolean done;
+    private WorkflowTimer.Timeout timeout;
+
+    WorkflowJoin(WorkflowEmitEvent fork, int total, JoinWorkflow node) {
+        this.fork = fork;
+        this.total = total;
+        this.any = node.isAny();
+        this.nextId = node.getJoinedId();
+        this.timeoutId = node.getTimeoutId();
+        this.arrivedName = node.getArrivedName();
+
+        long timeoutMs = node.getTimeoutMs();
+
+        if (timeoutMs > 0) {
+            timeout = fork.getContext().schedule(this::expire, timeoutMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** A branch reached a Join, its variables are handed back to the forking run. */
+    void arrive(WorkflowEmitEvent event) {
+        Map<String, Object> result;
+
+        synchronized (this) {
+            if (done || !finished.add(event.getRun())) {
+                return;
+            }
+
+            arrived++;
+            step = Math.max(step, event.getStep());
+            ((WorkflowScope) event.getVariables()).collectSince((WorkflowScope) fork.getVariables(), values);
+
+            if (!any && finished.size() < total) {
+                return;
+            }
+
+            result = complete();
+        }
+
+        fork.resume(nextId, step, result);
+    }
+
+    /** A branch ran out of nodes, was aborted or failed before reaching a Join. */
+    void end(WorkflowRun run) {
+        Map<String, Object> result;
+
+        synchronized (this) {
+            if (done || !finished.add(run) || finished.size() < total) {
+                return;
+            }
+
+            step = Math.max(step, run.getStep());
+            result = complete();
+        }
+
+        fork.resume(nextId, step, result);
+    }
+
+    private void expire() {
+        Map<String, Object> result;
+
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+
+            done = true;
+            result = finish();
+        }
+
+        fork.resume(timeoutId, step, result);
+    }
+
+    private Map<String, Object> complete() {
+        done = true;
+
+        if (timeout != null) {
+            timeout.cancel();
+        }
+
+        return finish();
+    }
+
+    private Map<String, Object> finish() {
+        var result = new LinkedHashMap<>(values);
+        result.put(arrivedName, arrived);
+
+        return result;
+    }
+}
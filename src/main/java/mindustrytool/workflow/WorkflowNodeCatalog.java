@@ -0,0 +1,75 @@
+package mindustrytool.workflow;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+
+import mindustrytool.utils.JsonUtils;
+import mindustrytool.workflow.nodes.WorkflowNode;
+
+/**
+ * The registered node types as the JSON the editor loads, serialized once.
+ * The ETag is a hash of those bytes, so it only changes when the catalog
+ * does and clients can revalidate with If-None-Match.
+ */
+public final class WorkflowNodeCatalog {
+    private final byte[] json;
+    private final String etag;
+
+    private WorkflowNodeCatalog(byte[] json, String etag) {
+        this.json = json;
+        this.etag = etag;
+    }
+
+    public static WorkflowNodeCatalog of(Map<String, WorkflowNode> nodeTypes) {
+        var json = JsonUtils.toJsonBytes(nodeTypes);
+
+        return new WorkflowNodeCatalog(json, "\"" + sha256(json) + "\"");
+    }
+
+    /** Serialized catalog, shared between requests so it must not be modified. */
+    public byte[] getJson() {
+        return json;
+    }
+
+    public String getETag() {
+        return etag;
+    }
+
+    /** Whether an If-None-Match header names this catalog, the client copy is still current then. */
+    public boolean matches(String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+
+        for (var tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+
+            // If-None-Match compares weakly
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(data);
+            var hex = new StringBuilder(digest.length * 2);
+
+            for (var b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
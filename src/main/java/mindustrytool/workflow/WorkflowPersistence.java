@@ -0,0 +1,273 @@
+package mindustrytool.workflow;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import arc.util.Log;
+
+/**
+ * Crash safe saving of the workflow files. Every write goes to a temp file
+ * that is fsynced and then renamed over the target, so a reader sees either
+ * the old or the new content. Saves within the delay of each other are
+ * coalesced into one write of the latest content. Versioned saves also keep
+ * the last few copies, named after their createdAt. Without a snapshot
+ * directory everything is kept in memory, for workflows running headless.
+ */
+public class WorkflowPersistence {
+    private static final long SAVE_DELAY_MS = 500;
+
+    private final Path snapshotDir;
+    private final int keepSnapshots;
+    // Written files when running in memory, null when they go to disk
+    private final Map<Path, byte[]> memory;
+
+    private final Map<Path, Save> pending = new LinkedHashMap<>();
+    private final Object writeLock = new Object();
+
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> scheduled;
+
+    public WorkflowPersistence(Path snapshotDir, int keepSnapshots) {
+        this.snapshotDir = snapshotDir;
+        this.keepSnapshots = keepSnapshots;
+        this.memory = null;
+    }
+
+    /** Persistence that keeps the files in memory and never touches the disk. */
+    public WorkflowPersistence(int keepSnapshots) {
+        this.snapshotDir = Paths.get("versions");
+        this.keepSnapshots = keepSnapshots;
+        this.memory = new HashMap<>();
+    }
+
+    /** Until started every save is written right away on the calling thread. */
+    public synchronized void start(ScheduledExecutorService scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    public void save(Path target, String content) {
+        queue(target, new Save(content, -1));
+    }
+
+    /** Saves and keeps a snapshot of the content named after createdAt. */
+    public void saveVersioned(Path target, String content, long createdAt) {
+        queue(target, new Save(content, createdAt));
+    }
+
+    /**
+     * Writes every pending save now. The pending saves are taken under the
+     * write lock, so a flush that took older content can never write it
+     * after a later flush wrote newer content.
+     */
+    public void flush() {
+        synchronized (writeLock) {
+            Map<Path, Save> saves;
+
+            synchronized (this) {
+                if (scheduled != null) {
+                    scheduled.cancel(false);
+                    scheduled = null;
+                }
+
+                saves = new LinkedHashMap<>(pending);
+                pending.clear();
+            }
+
+            for (var entry : saves.entrySet()) {
+                try {
+                    write(entry.getKey(), entry.getValue());
+                } catch (IOException e) {
+                    Log.err("Failed to save @: @", entry.getKey(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    /** Content last written to target, null when there is none. */
+    public String read(Path target) throws IOException {
+        if (memory != null) {
+            synchronized (writeLock) {
+                var bytes = memory.get(target);
+                return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+
+        return Files.exists(target) ? new String(Files.readAllBytes(target), StandardCharsets.UTF_8) : null;
+    }
+
+    /** Content of the snapshot of target taken at createdAt, null when it is not kept. */
+    public String readVersion(Path target, long createdAt) throws IOException {
+        return read(snapshotOf(target, createdAt));
+    }
+
+    /** createdAt of every kept snapshot of target, newest first. */
+    public List<Long> getVersions(Path target) {
+        var result = new ArrayList<Long>();
+
+        for (var snapshot : snapshots(target)) {
+            result.add(versionOf(target, snapshot));
+        }
+
+        return result;
+    }
+
+    private void queue(Path target, Save save) {
+        synchronized (this) {
+            pending.put(target, save);
+
+            if (scheduler != null) {
+                if (scheduled == null) {
+                    scheduled = scheduler.schedule(this::flush, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+                }
+
+                return;
+            }
+        }
+
+        flush();
+    }
+
+    private void write(Path target, Save save) throws IOException {
+        var bytes = save.content.getBytes(StandardCharsets.UTF_8);
+
+        store(target, bytes);
+
+        if (save.createdAt < 0) {
+            return;
+        }
+
+        if (memory == null) {
+            Files.createDirectories(snapshotDir);
+        }
+
+        store(snapshotOf(target, save.createdAt), bytes);
+
+        var snapshots = snapshots(target);
+
+        for (int i = keepSnapshots; i < snapshots.size(); i++) {
+            if (memory == null) {
+                Files.deleteIfExists(snapshots.get(i));
+            } else {
+                memory.remove(snapshots.get(i));
+            }
+        }
+    }
+
+    private void store(Path target, byte[] bytes) throws IOException {
+        if (memory == null) {
+            writeAtomic(target, bytes);
+        } else {
+            memory.put(target, bytes);
+        }
+    }
+
+    private Path snapshotOf(Path target, long createdAt) {
+        return snapshotDir.resolve(baseName(target) + "-" + createdAt + ".json");
+    }
+
+    private List<Path> snapshots(Path target) {
+        if (memory == null && !Files.isDirectory(snapshotDir)) {
+            return new ArrayList<>();
+        }
+
+        var prefix = baseName(target) + "-";
+
+        try (Stream<Path> files = memory == null ? Files.list(snapshotDir) : memoryFiles()) {
+            return files
+                    .filter(file -> isSnapshotName(file.getFileName().toString(), prefix))
+                    .filter(file -> versionOf(target, file) >= 0)
+                    .sorted((a, b) -> Long.compare(versionOf(target, b), versionOf(target, a)))
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            Log.err("Failed to list workflow snapshots: @", e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    private Stream<Path> memoryFiles() {
+        synchronized (writeLock) {
+            return new ArrayList<>(memory.keySet()).stream().filter(file -> snapshotDir.equals(file.getParent()));
+        }
+    }
+
+    // Anything else in the directory, like a stray prefix-1 file, is not ours to parse
+    private static boolean isSnapshotName(String name, String prefix) {
+        return name.startsWith(prefix)
+                && name.endsWith(".json")
+                && name.length() > prefix.length() + ".json".length();
+    }
+
+    private static long versionOf(Path target, Path snapshot) {
+        var name = snapshot.getFileName().toString();
+        var version = name.substring(baseName(target).length() + 1, name.length() - ".json".length());
+
+        try {
+            return Long.parseLong(version);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String baseName(Path target) {
+        var name = target.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+
+        return dot < 0 ? name : name.substring(0, dot);
+    }
+
+    /** Writes bytes to a temp file next to target, fsyncs it and renames it over target. */
+    public static void writeAtomic(Path target, byte[] bytes) throws IOException {
+        var temp = target.resolveSibling(target.getFileName() + ".tmp");
+
+        try (var channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            var buffer = ByteBuffer.wrap(bytes);
+
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+
+            channel.force(true);
+        }
+
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        // Makes the rename itself durable, not every platform can open a directory
+        try (var directory = FileChannel.open(target.toAbsolutePath().getParent(), StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static final class Save {
+        private final String content;
+        private final long createdAt;
+
+        private Save(String content, long createdAt) {
+            this.content = content;
+            this.createdAt = createdAt;
+        }
+    }
+}
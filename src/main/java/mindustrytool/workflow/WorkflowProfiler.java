@@ -0,0 +1,114 @@
+package mindustrytool.workflow;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import mindustrytool.type.WorkflowProfileDto;
+import mindustrytool.workflow.nodes.WorkflowNode;
+
+/**
+ * Always-on execution counters. Node entries measure the node's own
+ * {@code execute} time per step. Emitter entries measure whole runs: the
+ * time of every step a run and its forked branches executed, recorded once
+ * the last of them ends, so their percentiles are per run.
+ */
+public class WorkflowProfiler {
+    private static final Comparator<WorkflowProfileDto.Entry> BY_TOTAL = Comparator
+            .comparingLong(WorkflowProfileDto.Entry::getTotalNanos)
+            .reversed();
+
+    private final ConcurrentHashMap<String, Profile> nodes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Profile> emitters = new ConcurrentHashMap<>();
+
+    private volatile long since = System.currentTimeMillis();
+
+    public void recordRun(WorkflowNode emitter) {
+        profile(emitters, emitter).invocations.increment();
+    }
+
+    public void recordStep(WorkflowNode node, WorkflowNode emitter, long nanos, boolean failed) {
+        var profile = profile(nodes, node);
+        profile.invocations.increment();
+        profile.latency.record(nanos);
+
+        var total = profile(emitters, emitter);
+        total.steps.increment();
+
+        if (failed) {
+            profile.errors.increment();
+            total.errors.increment();
+        }
+    }
+
+    /** Records the execution time of a run that ended, including its branches. */
+    public void recordRunEnd(WorkflowNode emitter, long nanos) {
+        profile(emitters, emitter).latency.record(nanos);
+    }
+
+    public void reset() {
+        nodes.clear();
+        emitters.clear();
+        since = System.currentTimeMillis();
+    }
+
+    /** Forgets nodes that are no longer part of the loaded workflow. */
+    public void retain(Collection<String> ids) {
+        nodes.keySet().retainAll(ids);
+        emitters.keySet().retainAll(ids);
+    }
+
+    public WorkflowProfileDto snapshot() {
+        var result = new WorkflowProfileDto().setSince(since);
+
+        nodes.values().forEach(profile -> result.getNodes().add(profile.toDto(false)));
+        emitters.values().forEach(profile -> result.getEmitters().add(profile.toDto(true)));
+
+        result.getNodes().sort(BY_TOTAL);
+        result.getEmitters().sort(BY_TOTAL);
+
+        return result;
+    }
+
+    private static Profile profile(ConcurrentHashMap<String, Profile> profiles, WorkflowNode node) {
+        var profile = profiles.get(node.getId());
+
+        if (profile == null) {
+            profile = profiles.computeIfAbsent(node.getId(), id -> new Profile(id, node.getName()));
+        }
+
+        return profile;
+    }
+
+    private static final class Profile {
+        private final String id;
+        private final String name;
+        private final LongAdder invocations = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder steps = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        private Profile(String id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        private WorkflowProfileDto.Entry toDto(boolean emitter) {
+            long steps = emitter ? this.steps.sum() : latency.getCount();
+
+            return new WorkflowProfileDto.Entry()
+                    .setId(id)
+                    .setName(name)
+                    .setInvocations(invocations.sum())
+                    .setErrors(errors.sum())
+                    .setSteps(steps)
+                    .setTotalNanos(latency.getTotal())
+                    .setMeanNanos(latency.getMean())
+                    .setP50Nanos(latency.getPercentile(50))
+                    .setP90Nanos(latency.getPercentile(90))
+                    .setP99Nanos(latency.getPercentile(99))
+                    .setMaxNanos(latency.getMax());
+        }
+    }
+}
@@ -0,0 +1,438 @@
+package mindustrytool.workflow;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import arc.util.Log;
+import mindustrytool.type.WorkflowContext;
+import mindustrytool.workflow.errors.WorkflowError;
+import mindustrytool.workflow.expressions.ExpressionParser;
+import mindustrytool.workflow.expressions.PathAccessor;
+import mindustrytool.workflow.nodes.WorkflowNode;
+
+/**
+ * Captures the events a workflow listens to into a {@link WorkflowRecording}.
+ * Only the paths the workflow's fields read from each listener's event
+ * variable are written, the rest of the event is dropped. The caller only
+ * reads those values, a writer thread encodes them and does the file I/O.
+ * Recording stops by itself after the event limit.
+ */
+public class WorkflowRecorder {
+    public static final int DEFAULT_MAX_EVENTS = 1_000_000;
+
+    private static final int MAX_STRING_LENGTH = 8192;
+    private static final int QUEUE_SIZE = 64 * 1024;
+    private static final Entry NOT_RECORDED = new Entry(-1, null);
+
+    private volatile Session session;
+
+    public boolean isRecording() {
+        var current = session;
+
+        return current != null && !current.closing;
+    }
+
+    public synchronized Path getPath() {
+        return session == null ? null : session.path;
+    }
+
+    public synchronized int getRecorded() {
+        return session == null ? 0 : session.written;
+    }
+
+    /** Starts recording the events workflowContext listens to, replacing any running recording. */
+    public synchronized void start(Path path, WorkflowContext workflowContext, int maxEvents) {
+        stop();
+
+        var paths = pathsOf(workflowContext);
+
+        if (paths.isEmpty()) {
+            throw new WorkflowError("The workflow has no event listener to record");
+        }
+
+        DataOutputStream output = null;
+        Map<Class<?>, Entry> classes = new ConcurrentHashMap<>();
+
+        try {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+
+            output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 64 * 1024));
+            output.writeInt(WorkflowRecording.MAGIC);
+            output.writeInt(WorkflowRecording.VERSION);
+            output.writeLong(System.currentTimeMillis());
+
+            for (var entry : paths.entrySet()) {
+                var type = entry.getKey();
+                var accessors = new PathAccessor[entry.getValue().size()][];
+
+                output.writeByte(WorkflowRecording.TAG_CLASS);
+                output.writeInt(classes.size());
+                output.writeUTF(type.getName());
+                output.writeInt(accessors.length);
+
+                for (int i = 0; i < accessors.length; i++) {
+                    var segments = entry.getValue().get(i).split("\\.");
+
+                    output.writeUTF(entry.getValue().get(i));
+                    accessors[i] = new PathAccessor[segments.length];
+
+                    // One accessor per segment, a null tells how deep the read got
+                    for (int j = 0; j < segments.length; j++) {
+                        accessors[i][j] = ExpressionParser.compileFields(segments[j]);
+                    }
+                }
+
+                classes.put(type, new Entry(classes.size(), accessors));
+            }
+        } catch (IOException e) {
+            close(output);
+            throw new WorkflowError("Can not start recording to " + path, e);
+        }
+
+        session = new Session(path, output, classes, maxEvents <= 0 ? DEFAULT_MAX_EVENTS : maxEvents);
+
+        Log.info("Recording workflow events to @", path);
+    }
+
+    /**
+     * Stops recording and returns the file once everything recorded so far
+     * is written, null when nothing was recording.
+     */
+    public synchronized Path stop() {
+        var current = session;
+
+        if (current == null || current.writer == null) {
+            return null;
+        }
+
+        current.closing = true;
+
+        try {
+            current.writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        current.writer = null;
+
+        return current.path;
+    }
+
+    public void record(Object event) {
+        var current = session;
+
+        if (current == null || current.closing) {
+            return;
+        }
+
+        var entry = current.entry(event.getClass());
+
+        if (entry == NOT_RECORDED) {
+            return;
+        }
+
+        var values = new Object[entry.accessors.length];
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = read(event, entry.accessors[i]);
+        }
+
+        if (!current.queue.offer(new Recorded(entry, System.nanoTime() - current.startNanos, values))) {
+            if (current.dropped++ == 0) {
+                Log.warn("Workflow recording to @ can not keep up, dropping events", current.path);
+            }
+
+            return;
+        }
+
+        if (++current.recorded >= current.maxEvents) {
+            current.closing = true;
+        }
+    }
+
+    /** Recorded form of the value at the path: Double, Boolean, String or where it hit null. */
+    private static Object read(Object event, PathAccessor[] accessors) {
+        Object value = event;
+
+        for (int i = 0; i < accessors.length; i++) {
+            try {
+                value = accessors[i].readFrom(value);
+            } catch (WorkflowError e) {
+                value = null;
+            }
+
+            if (value == null) {
+                return new NullAt(i + 1);
+            }
+        }
+
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+
+        if (value instanceof Boolean) {
+            return value;
+        }
+
+        if (value instanceof Enum<?> constant) {
+            return constant.name();
+        }
+
+        var text = value.toString();
+
+        return text.length() > MAX_STRING_LENGTH ? text.substring(0, MAX_STRING_LENGTH) : text;
+    }
+
+    private static void close(DataOutputStream output) {
+        try {
+            if (output != null) {
+                output.close();
+            }
+        } catch (IOException e) {
+            Log.err("Failed to close workflow recording: @", e.getMessage());
+        }
+    }
+
+    /**
+     * Paths read from each listened event class, found by matching the
+     * {{variable.path}} references in every field against the variable each
+     * EventListener puts its event in.
+     */
+    static Map<Class<?>, List<String>> pathsOf(WorkflowContext workflowContext) {
+        Map<String, Class<?>> variables = new HashMap<>();
+
+        for (var data : workflowContext.getNodes()) {
+            var field = data.getState() == null ? null : data.getState().getFields().get("class");
+
+            if (!"EventListener".equals(data.getName()) || field == null || field.getConsumer() == null) {
+                continue;
+            }
+
+            try {
+                variables.put(field.getVariableName() == null ? "event" : field.getVariableName(),
+                        Class.forName(field.getConsumer()));
+            } catch (ClassNotFoundException e) {
+                Log.warn("Can not record unknown event class: @", field.getConsumer());
+            }
+        }
+
+        Map<Class<?>, TreeSet<String>> found = new LinkedHashMap<>();
+
+        for (var type : variables.values()) {
+            found.putIfAbsent(type, new TreeSet<>());
+        }
+
+        for (var data : workflowContext.getNodes()) {
+            if (data.getState() == null) {
+                continue;
+            }
+
+            for (var field : data.getState().getFields().values()) {
+                if (field.getConsumer() == null) {
+                    continue;
+                }
+
+                var matcher = WorkflowNode.VARIABLE_PATTERN.matcher(field.getConsumer());
+
+                while (matcher.find()) {
+                    var reference = matcher.group(1).trim();
+                    int dot = reference.indexOf('.');
+                    var type = dot < 0 ? null : variables.get(reference.substring(0, dot));
+
+                    if (type != null) {
+                        found.get(type).add(reference.substring(dot + 1));
+                    }
+                }
+            }
+        }
+
+        Map<Class<?>, List<String>> result = new LinkedHashMap<>();
+
+        for (var entry : found.entrySet()) {
+            var paths = new ArrayList<String>();
+
+            // A path that others continue from is an object, only its leaves are recorded
+            for (var path : entry.getValue()) {
+                var next = entry.getValue().ceiling(path + ".");
+
+                if (next == null || !next.startsWith(path + ".")) {
+                    paths.add(path);
+                }
+            }
+
+            result.put(entry.getKey(), paths);
+        }
+
+        return result;
+    }
+
+    private static final class Entry {
+        private final int id;
+        private final PathAccessor[][] accessors;
+
+        private Entry(int id, PathAccessor[][] accessors) {
+            this.id = id;
+            this.accessors = accessors;
+        }
+    }
+
+    private static final class Recorded {
+        private final Entry entry;
+        private final long nanos;
+        private final Object[] values;
+
+        private Recorded(Entry entry, long nanos, Object[] values) {
+            this.entry = entry;
+            this.nanos = nanos;
+            this.values = values;
+        }
+    }
+
+    private static final class NullAt {
+        private final int depth;
+
+        private NullAt(int depth) {
+            this.depth = depth;
+        }
+    }
+
+    /** One recording, its writer thread owns the stream and the string ids. */
+    private static final class Session {
+        private final Path path;
+        private final DataOutputStream output;
+        private final Map<Class<?>, Entry> classes;
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final BlockingQueue<Recorded> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        private final long startNanos = System.nanoTime();
+        private final int maxEvents;
+
+        // Only touched by the thread firing events
+        private int recorded;
+        private int dropped;
+
+        private volatile int written;
+        private volatile boolean closing;
+        private Thread writer;
+
+        private Session(Path path, DataOutputStream output, Map<Class<?>, Entry> classes, int maxEvents) {
+            this.path = path;
+            this.output = output;
+            this.classes = classes;
+            this.maxEvents = maxEvents;
+
+            writer = new Thread(this::write, "workflow-recorder");
+            writer.setDaemon(true);
+            writer.start();
+        }
+
+        private Entry entry(Class<?> type) {
+            var entry = classes.get(type);
+
+            if (entry != null) {
+                return entry;
+            }
+
+            // A listener on a super class also sees this event
+            entry = NOT_RECORDED;
+
+            for (var candidate : classes.entrySet()) {
+                if (candidate.getValue() != NOT_RECORDED && candidate.getKey().isAssignableFrom(type)) {
+                    entry = candidate.getValue();
+                    break;
+                }
+            }
+
+            classes.put(type, entry);
+
+            return entry;
+        }
+
+        private void write() {
+            try {
+                while (true) {
+                    var next = queue.poll(100, TimeUnit.MILLISECONDS);
+
+                    if (next == null) {
+                        if (closing && queue.isEmpty()) {
+                            break;
+                        }
+
+                        continue;
+                    }
+
+                    writeEvent(next);
+                    written++;
+                }
+            } catch (IOException e) {
+                Log.err("Failed to record workflow event, stopping: @", e.getMessage());
+                closing = true;
+                queue.clear();
+            } catch (InterruptedException e) {
+                closing = true;
+                Thread.currentThread().interrupt();
+            }
+
+            close(output);
+
+            Log.info("Recorded @ workflow events to @", written, path);
+        }
+
+        private void writeEvent(Recorded event) throws IOException {
+            // Strings go out before the event that references them
+            for (var value : event.values) {
+                if (value instanceof String text) {
+                    stringId(text);
+                }
+            }
+
+            output.writeByte(WorkflowRecording.TAG_EVENT);
+            output.writeInt(event.entry.id);
+            output.writeLong(event.nanos);
+
+            for (var value : event.values) {
+                if (value instanceof NullAt nullAt) {
+                    output.writeByte(WorkflowRecording.VALUE_NULL);
+                    output.writeByte(nullAt.depth);
+                } else if (value instanceof Double number) {
+                    output.writeByte(WorkflowRecording.VALUE_NUMBER);
+                    output.writeDouble(number);
+                } else if (value instanceof Boolean bool) {
+                    output.writeByte(bool ? WorkflowRecording.VALUE_TRUE : WorkflowRecording.VALUE_FALSE);
+                } else {
+                    output.writeByte(WorkflowRecording.VALUE_STRING);
+                    output.writeInt(strings.get((String) value));
+                }
+            }
+        }
+
+        private int stringId(String value) throws IOException {
+            var id = strings.get(value);
+
+            if (id != null) {
+                return id;
+            }
+
+            id = strings.size();
+            strings.put(value, id);
+
+            output.writeByte(WorkflowRecording.TAG_STRING);
+            output.writeInt(id);
+            output.writeUTF(value);
+
+            return id;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package mindustrytool.workflow;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import mindustrytool.workflow.errors.WorkflowError;
+
+/**
+ * Binary event trace written by {@link WorkflowRecorder}. Classes and
+ * strings are written once and referenced by id afterwards.
+ *
+ * <pre>
+ * header  magic int, version int, started at long (epoch millis)
+ * class   1, id int, name utf, path count int, paths utf...
+ * string  2, id int, value utf
+ * event   3, class id int, nanos long, one value per path of the class
+ * value   0 null, depth byte | 1 number double | 2 true | 3 false | 4 string id int
+ * </pre>
+ *
+ * A null value carries how many path segments were read before hitting it.
+ */
+public class WorkflowRecording {
+    static final int MAGIC = 0x57465243;
+    static final int VERSION = 1;
+
+    static final byte TAG_CLASS = 1;
+    static final byte TAG_STRING = 2;
+    static final byte TAG_EVENT = 3;
+
+    static final byte VALUE_NULL = 0;
+    static final byte VALUE_NUMBER = 1;
+    static final byte VALUE_TRUE = 2;
+    static final byte VALUE_FALSE = 3;
+    static final byte VALUE_STRING = 4;
+
+    private final long startedAt;
+    private final List<RecordedEvent> events;
+
+    private WorkflowRecording(long startedAt, List<RecordedEvent> events) {
+        this.startedAt = startedAt;
+        this.events = events;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public List<RecordedEvent> getEvents() {
+        return events;
+    }
+
+    /** Reads a whole trace, a file cut short by a crash keeps the events before the cut. */
+    public static WorkflowRecording read(Path path) {
+        try (var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 64 * 1024))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new WorkflowError("Not a workflow recording: " + path);
+            }
+
+            long startedAt = input.readLong();
+
+            Map<Integer, Class<?>> classes = new HashMap<>();
+            Map<Integer, String[][]> paths = new HashMap<>();
+            Map<Integer, String> strings = new HashMap<>();
+            List<RecordedEvent> events = new ArrayList<>();
+
+            while (true) {
+                int tag;
+
+                try {
+                    tag = input.readByte();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                try {
+                    switch (tag) {
+                        case TAG_CLASS: {
+                            int id = input.readInt();
+                            var name = input.readUTF();
+                            var classPaths = new String[input.readInt()][];
+
+                            for (int i = 0; i < classPaths.length; i++) {
+                                classPaths[i] = input.readUTF().split("\\.");
+                            }
+
+                            classes.put(id, loadClass(name));
+                            paths.put(id, classPaths);
+                            break;
+                        }
+
+                        case TAG_STRING:
+                            strings.put(input.readInt(), input.readUTF());
+                            break;
+
+                        case TAG_EVENT: {
+                            int id = input.readInt();
+                            var event = new RecordedEvent(classes.get(id), input.readLong());
+
+                            for (var segments : paths.get(id)) {
+                                readValue(input, event, segments, strings);
+                            }
+
+                            events.add(event);
+                            break;
+                        }
+
+                        default:
+                            throw new WorkflowError("Unknown record " + tag + " in " + path);
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+            }
+
+            return new WorkflowRecording(startedAt, events);
+        } catch (IOException e) {
+            throw new WorkflowError("Can not read workflow recording: " + path, e);
+        }
+    }
+
+    private static void readValue(DataInputStream input, RecordedEvent event, String[] segments,
+            Map<Integer, String> strings) throws IOException {
+        byte type = input.readByte();
+
+        switch (type) {
+            case VALUE_NULL:
+                event.put(segments, input.readByte(), null);
+                break;
+            case VALUE_NUMBER:
+                event.put(segments, segments.length, input.readDouble());
+                break;
+            case VALUE_TRUE:
+                event.put(segments, segments.length, true);
+                break;
+            case VALUE_FALSE:
+                event.put(segments, segments.length, false);
+                break;
+            case VALUE_STRING:
+                event.put(segments, segments.length, strings.get(input.readInt()));
+                break;
+            default:
+                throw new WorkflowError("Unknown value type " + type);
+        }
+    }
+
+    private static Class<?> loadClass(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new WorkflowError("Recorded event class not found: " + name, e);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package mindustrytool.workflow;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.locks.LockSupport;
+
+import mindustrytool.type.WorkflowContext;
+import mindustrytool.type.WorkflowReplayDto;
+
+/**
+ * Feeds a {@link WorkflowRecording} through a workflow that runs headless on
+ * the calling thread. Effects such as chat messages are counted instead of
+ * applied. Each event is fired before and after, like the server does, and
+ * its latency covers the synchronous part of the runs it starts. A speed of
+ * 0 replays as fast as possible, 1 keeps the recorded timing and 10 plays it
+ * ten times faster.
+ */
+public class WorkflowReplay {
+    private final WorkflowContext workflowContext;
+    private final WorkflowRecording recording;
+    private final double speed;
+
+    public WorkflowReplay(WorkflowContext workflowContext, WorkflowRecording recording, double speed) {
+        this.workflowContext = workflowContext;
+        this.recording = recording;
+        this.speed = Math.max(0, speed);
+    }
+
+    public WorkflowReplayDto run() {
+        var workflow = new Workflow(new WeakReference<>(null), Runnable::run);
+
+        workflow.registerNodes();
+        workflow.getExecutor().setDryRun(true);
+        workflow.load(workflowContext);
+
+        var latency = new LatencyHistogram();
+
+        try {
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+
+            for (var event : recording.getEvents()) {
+                if (speed > 0) {
+                    long wait = start + (long) (event.getNanos() / speed) - System.nanoTime();
+
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                }
+
+                long begin = System.nanoTime();
+
+                workflow.fire(event.getEventClass(), event, true);
+                workflow.fire(event.getEventClass(), event, false);
+
+                latency.record(System.nanoTime() - begin);
+            }
+
+            long duration = System.nanoTime() - start;
+            long allocated = allocatedBefore < 0 ? -1 : allocatedBytes() - allocatedBefore;
+            long events = latency.getCount();
+
+            var profile = workflow.getProfiler().snapshot();
+
+            return new WorkflowReplayDto()
+                    .setEvents(events)
+                    .setSpeed(speed)
+                    .setDurationNanos(duration)
+                    .setBusyNanos(latency.getTotal())
+                    .setEventsPerSecond(latency.getTotal() == 0 ? 0 : events * 1e9 / latency.getTotal())
+                    .setMeanNanos(latency.getMean())
+                    .setP50Nanos(latency.getPercentile(50))
+                    .setP90Nanos(latency.getPercentile(90))
+                    .setP99Nanos(latency.getPercentile(99))
+                    .setMaxNanos(latency.getMax())
+                    .setAllocatedBytes(allocated)
+                    .setBytesPerEvent(events == 0 || allocated < 0 ? 0 : allocated / events)
+                    .setSteps(profile.getEmitters().stream().mapToLong(entry -> entry.getSteps()).sum())
+                    .setErrors(profile.getNodes().stream().mapToLong(entry -> entry.getErrors()).sum())
+                    .setEffects(workflow.getExecutor().getDiscarded());
+        } finally {
+            workflow.clear();
+        }
+    }
+
+    /** Bytes allocated by this thread so far, -1 when the JVM does not tell. */
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemorySupported()) {
+            return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,274 @@
+package mindustrytool.workflow;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import mindustrytool.workflow.nodes.WorkflowNode;
+
+/**
+ * Run loop of one workflow execution. Nodes hand their continuation to
+ * {@link #submit(WorkflowEmitEvent)} instead of calling the next node
+ * directly, so the Java stack stays one node deep no matter how many steps
+ * the run takes. A run with nothing queued holds no stack frames, which lets
+ * async nodes resume it later from any thread.
+ *
+ * <p>
+ * Continuations a node submits while it executes are pushed onto the front
+ * of the queue in their original order, so a node with several outputs runs
+ * each one to its end before starting the next, like the nested calls did.
+ *
+ * <p>
+ * Branch runs started by a fork, and every run in async mode, carry the
+ * executor and move between worker threads and the game thread depending on
+ * the node they run next.
+ */
+public class WorkflowRun {
+    private final ArrayDeque<WorkflowEmitEvent> pending = new ArrayDeque<>();
+    // Continuations submitted by the node executing, moved to the front of pending once it returns
+    private final ArrayDeque<WorkflowEmitEvent> produced = new ArrayDeque<>();
+    private Thread executing;
+    private boolean running = false;
+    private volatile int step = 0;
+
+    // Only touched by the thread draining the run
+    private long usedNanos;
+    private int usedSteps;
+    // Whether a node since the run last started handed its continuation to a callback
+    private boolean waiting;
+    private boolean ended;
+    private Workflow context;
+
+    private final WorkflowNode emitter;
+    private final boolean traced;
+    private final WorkflowExecutor executor;
+    private final WorkflowJoin join;
+    // Shared by a run and the branches it forked, reported once the last of them ends
+    private final Total total;
+
+    public WorkflowRun(WorkflowNode emitter, boolean traced) {
+        this(emitter, traced, null);
+    }
+
+    public WorkflowRun(WorkflowNode emitter, boolean traced, WorkflowExecutor executor) {
+        this.emitter = emitter;
+        this.traced = traced;
+        this.executor = executor;
+        this.join = null;
+        this.total = new Total();
+    }
+
+    WorkflowRun(WorkflowRun parent, WorkflowExecutor executor, WorkflowJoin join) {
+        this.emitter = parent.emitter;
+        this.traced = parent.traced;
+        this.executor = executor;
+        this.join = join;
+        this.total = parent.total;
+
+        total.live.incrementAndGet();
+    }
+
+    /** Node that started this run. */
+    public WorkflowNode getEmitter() {
+        return emitter;
+    }
+
+    /** Whether this run reports its steps to the tracer, fixed when the run starts. */
+    public boolean isTraced() {
+        return traced;
+    }
+
+    /** Step of the node currently executing, exposed as {@code @step}. */
+    public int getStep() {
+        return step;
+    }
+
+    /** Time spent executing this run's steps so far. */
+    public long getUsedNanos() {
+        return usedNanos;
+    }
+
+    /** Steps this run executed so far, including those after a Wait. */
+    public int getUsedSteps() {
+        return usedSteps;
+    }
+
+    void charge(long nanos) {
+        usedNanos += nanos;
+        usedSteps++;
+    }
+
+    /** Whether this run executes on the worker pool, as a forked branch or in async mode. */
+    public boolean isParallel() {
+        return executor != null;
+    }
+
+    /** Join of the fork that started this branch, null outside a fork. */
+    WorkflowJoin getJoin() {
+        return join;
+    }
+
+    /** Marks that the node executing hands the continuation of this run to something later. */
+    void handOff() {
+        synchronized (this) {
+            waiting = true;
+        }
+    }
+
+    /** The handed off continuation went nowhere, the run ends once nothing else is running. */
+    void dropHandOff() {
+        synchronized (this) {
+            waiting = false;
+
+            if (running) {
+                return;
+            }
+        }
+
+        finish();
+    }
+
+    /** Forgets everything queued, for a run dropped before it got a worker. */
+    void abandon() {
+        synchronized (this) {
+            pending.clear();
+            produced.clear();
+            running = false;
+        }
+
+        finish();
+    }
+
+    public void submit(WorkflowEmitEvent event) {
+        synchronized (this) {
+            if (executing == Thread.currentThread()) {
+                produced.add(event);
+                return;
+            }
+
+            pending.add(event);
+            // A continuation from another thread is the one that was handed off
+            waiting = false;
+
+            if (context == null) {
+                context = event.getContext();
+            }
+
+            if (running) {
+                return;
+            }
+
+            running = true;
+        }
+
+        drain();
+    }
+
+    private void drain() {
+        while (true) {
+            WorkflowEmitEvent next;
+            boolean ended = false;
+
+            synchronized (this) {
+                next = pending.peek();
+
+                if (next == null) {
+                    running = false;
+                    ended = !waiting;
+                }
+            }
+
+            if (next == null) {
+                if (ended) {
+                    finish();
+                }
+
+                return;
+            }
+
+            // Still marked running, the run continues on the other thread
+            if (executor != null && executor.dispatch(this, next.getCurrent().needsMainThread(next),
+                    usedSteps > 0, this::drain)) {
+                return;
+            }
+
+            var budget = next.getContext().getBudget();
+            boolean onWorker = executor != null && executor.isWorker();
+            var verdict = budget.check(this, next, onWorker);
+
+            if (verdict == WorkflowBudgetAction.SUSPEND) {
+                budget.defer(this::drain);
+                return;
+            }
+
+            if (verdict == WorkflowBudgetAction.ABORT) {
+                synchronized (this) {
+                    pending.clear();
+                    running = false;
+                }
+
+                finish();
+                return;
+            }
+
+            synchronized (this) {
+                pending.poll();
+                executing = Thread.currentThread();
+            }
+
+            step = next.getStep();
+
+            if (next.getVariables() instanceof WorkflowScope scope) {
+                scope.resetClock();
+            }
+
+            try {
+                budget.charge(this, next.execute(), onWorker);
+            } catch (Error e) {
+                synchronized (this) {
+                    executing = null;
+                    produced.clear();
+                    pending.clear();
+                    running = false;
+                }
+
+                finish();
+                throw e;
+            }
+
+            synchronized (this) {
+                executing = null;
+
+                while (!produced.isEmpty()) {
+                    pending.addFirst(produced.pollLast());
+                }
+            }
+        }
+    }
+
+    // Nothing left to run or never resumed, a branch counts as arrived at its join
+    void finish() {
+        synchronized (this) {
+            if (ended) {
+                return;
+            }
+
+            ended = true;
+        }
+
+        if (join != null) {
+            join.end(this);
+        }
+
+        total.nanos.add(usedNanos);
+
+        if (total.live.decrementAndGet() == 0 && context != null) {
+            context.getProfiler().recordRunEnd(emitter, total.nanos.sum());
+        }
+    }
+
+    private static final class Total {
+        private final AtomicInteger live = new AtomicInteger(1);
+        private final LongAdder nanos = new LongAdder();
+    }
+}
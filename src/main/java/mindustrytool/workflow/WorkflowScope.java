@@ -0,0 +1,261 @@
+package mindustrytool.workflow;
+
+import java.util.AbstractMap;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import mindustry.gen.Groups;
+
+/**
+ * Variables of a workflow run. Values set by nodes live in the scope that set
+ * them and reads fall back to the parent chain. Built-in {@code @} variables
+ * are not stored at all: the root scope computes the clock based ones on
+ * first access and keeps them until the run moves on to its next step, so a
+ * run that resumes after a Wait sees the time it resumed at.
+ */
+public class WorkflowScope extends AbstractMap<String, Object> {
+    private static final Object NOT_BUILTIN = new Object();
+
+    private static final Map<String, Class<?>> BUILTIN_TYPES = new HashMap<>();
+
+    static {
+        BUILTIN_TYPES.put("@time", Long.class);
+        BUILTIN_TYPES.put("@step", Integer.class);
+        BUILTIN_TYPES.put("@second", Integer.class);
+        BUILTIN_TYPES.put("@minute", Integer.class);
+        BUILTIN_TYPES.put("@hour", Integer.class);
+        BUILTIN_TYPES.put("@day", Integer.class);
+        BUILTIN_TYPES.put("@month", Integer.class);
+        BUILTIN_TYPES.put("@year", Integer.class);
+        BUILTIN_TYPES.put("@datetime", String.class);
+        BUILTIN_TYPES.put("@players", Object.class);
+    }
+
+    private final WorkflowScope parent;
+    private final WorkflowRun run;
+
+    private HashMap<String, Object> local;
+
+    // Only used on the root scope, cleared before every step
+    private volatile Clock clock;
+
+    public WorkflowScope(WorkflowRun run) {
+        this.parent = null;
+        this.run = run;
+    }
+
+    private WorkflowScope(WorkflowScope parent, WorkflowRun run) {
+        this.parent = parent;
+        this.run = run;
+    }
+
+    public static Set<String> builtinNames() {
+        return Collections.unmodifiableSet(BUILTIN_TYPES.keySet());
+    }
+
+    /** Type of a built-in variable, null when the name is not a built-in. */
+    public static Class<?> builtinType(String name) {
+        return BUILTIN_TYPES.get(name);
+    }
+
+    /** Drops the cached clock, the next step reading a time built-in takes a fresh one. */
+    public void resetClock() {
+        var root = root();
+
+        if (root.clock != null) {
+            root.clock = null;
+        }
+    }
+
+    /** New scope that sees every variable of this one but writes only to itself. */
+    public WorkflowScope child() {
+        return new WorkflowScope(this, run);
+    }
+
+    /** Child scope of a branch, {@code @step} reads the step of the branch run instead of this one. */
+    public WorkflowScope child(WorkflowRun run) {
+        return new WorkflowScope(this, run);
+    }
+
+    @Override
+    public Object get(Object key) {
+        for (var scope = this; scope != null; scope = scope.parent) {
+            var values = scope.local;
+
+            if (values != null) {
+                Object value = values.get(key);
+
+                if (value != null || values.containsKey(key)) {
+                    return value;
+                }
+            }
+        }
+
+        Object value = builtin(key);
+
+        return value == NOT_BUILTIN ? null : value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        for (var scope = this; scope != null; scope = scope.parent) {
+            if (scope.local != null && scope.local.containsKey(key)) {
+                return true;
+            }
+        }
+
+        return builtin(key) != NOT_BUILTIN;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        if (local == null) {
+            local = new HashMap<>();
+        }
+
+        return local.put(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        return local == null ? null : local.remove(key);
+    }
+
+    /** Snapshot of the stored variables, built-ins are left out. */
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        var result = new HashMap<String, Object>();
+        collect(result);
+
+        return result.entrySet();
+    }
+
+    private void collect(Map<String, Object> result) {
+        if (parent != null) {
+            parent.collect(result);
+        }
+
+        if (local != null) {
+            result.putAll(local);
+        }
+    }
+
+    /** Adds the variables set below {@code ancestor}, outermost first. */
+    void collectSince(WorkflowScope ancestor, Map<String, Object> result) {
+        if (this == ancestor) {
+            return;
+        }
+
+        if (parent != null) {
+            parent.collectSince(ancestor, result);
+        }
+
+        if (local != null) {
+            result.putAll(local);
+        }
+    }
+
+    private WorkflowScope root() {
+        var scope = this;
+
+        while (scope.parent != null) {
+            scope = scope.parent;
+        }
+
+        return scope;
+    }
+
+    private Object builtin(Object key) {
+        if (!(key instanceof String name) || name.isEmpty() || name.charAt(0) != '@') {
+            return NOT_BUILTIN;
+        }
+
+        switch (name) {
+            case "@time":
+                return clock().time;
+            case "@step":
+                return run == null ? 0 : run.getStep();
+            case "@second":
+                return clock().calendar()[0];
+            case "@minute":
+                return clock().calendar()[1];
+            case "@hour":
+                return clock().calendar()[2];
+            case "@day":
+                return clock().calendar()[3];
+            case "@month":
+                return clock().calendar()[4];
+            case "@year":
+                return clock().calendar()[5];
+            case "@datetime":
+                return clock().datetime();
+            case "@players":
+                return Groups.player;
+            default:
+                return NOT_BUILTIN;
+        }
+    }
+
+    private Clock clock() {
+        var root = root();
+        var result = root.clock;
+
+        if (result == null) {
+            result = new Clock(System.currentTimeMillis());
+            root.clock = result;
+        }
+
+        return result;
+    }
+
+    /**
+     * One reading of the clock. The derived values are computed on demand
+     * from the same time, threads racing on them compute equal results.
+     */
+    private static final class Clock {
+        private final long time;
+        private volatile int[] calendar;
+        private volatile String datetime;
+
+        private Clock(long time) {
+            this.time = time;
+        }
+
+        // Read once into plain ints, Calendar itself is not safe to share
+        private int[] calendar() {
+            var result = calendar;
+
+            if (result == null) {
+                var instance = Calendar.getInstance();
+                instance.setTimeInMillis(time);
+
+                result = new int[] {
+                        instance.get(Calendar.SECOND),
+                        instance.get(Calendar.MINUTE),
+                        instance.get(Calendar.HOUR),
+                        instance.get(Calendar.DAY_OF_MONTH),
+                        instance.get(Calendar.MONTH),
+                        instance.get(Calendar.YEAR)
+                };
+                calendar = result;
+            }
+
+            return result;
+        }
+
+        private String datetime() {
+            var result = datetime;
+
+            if (result == null) {
+                result = new Date(time).toString();
+                datetime = result;
+            }
+
+            return result;
+        }
+    }
+}
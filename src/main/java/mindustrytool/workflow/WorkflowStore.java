@@ -0,0 +1,571 @@
+package mindustrytool.workflow;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import arc.util.Log;
+import mindustrytool.workflow.errors.WorkflowError;
+
+/**
+ * Global workflow variables that survive runs and restarts, kept in a memory
+ * mapped file. Every key has a fixed size slot holding its type and either the
+ * number itself or the offset of a string in the append log behind the slot
+ * table. Writing a number touches only its slot, writing a string appends to
+ * the log, and compaction rewrites the file once dead strings pile up. A
+ * store without a path keeps the same layout in a heap buffer instead.
+ *
+ * <pre>
+ * header  magic, version, capacity, log end, garbage bytes
+ * slots   capacity x (key offset int, type int, value long)
+ * log     records of (length int, utf-8 bytes), keys and string values
+ * </pre>
+ */
+public class WorkflowStore {
+    private static final int MAGIC = 0x57465354;
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 32;
+    private static final int SLOT_SIZE = 16;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int INITIAL_LOG_SIZE = 64 * 1024;
+    private static final long MIN_COMPACT_GARBAGE = 256 * 1024;
+
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int LOG_END_OFFSET = 12;
+    private static final int GARBAGE_OFFSET = 20;
+
+    private static final int TYPE_EMPTY = 0;
+    private static final int TYPE_NUMBER = 1;
+    private static final int TYPE_STRING = 2;
+    private static final int TYPE_BOOLEAN = 3;
+
+    private final Path path;
+
+    private RandomAccessFile file;
+    private ByteBuffer buffer;
+    private int capacity;
+    private long logEnd;
+    private long garbage;
+
+    private final Map<String, Integer> index = new HashMap<>();
+    private final ArrayDeque<Integer> free = new ArrayDeque<>();
+
+    public WorkflowStore(Path path) {
+        this.path = path;
+    }
+
+    /** Store that lives in memory only, for workflows running headless. */
+    public WorkflowStore() {
+        this(null);
+    }
+
+    public synchronized void open() {
+        if (buffer != null) {
+            return;
+        }
+
+        try {
+            if (path == null) {
+                allocate(INITIAL_CAPACITY, INITIAL_LOG_SIZE);
+                readIndex();
+                return;
+            }
+
+            Files.createDirectories(path.toAbsolutePath().getParent());
+
+            if (Files.exists(path) && Files.size(path) > 0) {
+                map(path);
+
+                if (!isReadable()) {
+                    Log.err("Workflow store @ is not readable, starting over", path);
+                    closeFile();
+                    Files.move(path, path.resolveSibling(path.getFileName() + ".corrupt"),
+                            StandardCopyOption.REPLACE_EXISTING);
+                    create(path, INITIAL_CAPACITY, INITIAL_LOG_SIZE);
+                    readIndex();
+                }
+            } else {
+                create(path, INITIAL_CAPACITY, INITIAL_LOG_SIZE);
+                readIndex();
+            }
+        } catch (IOException e) {
+            closeFile();
+            throw new WorkflowError("Can not open workflow store: " + path, e);
+        }
+    }
+
+    public synchronized boolean isOpen() {
+        return buffer != null;
+    }
+
+    /**
+     * Checks the header against the file size, then reads the index. A file
+     * cut short or overwritten fails here instead of on some later read.
+     */
+    private boolean isReadable() {
+        long size = buffer.capacity();
+
+        if (size < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            return false;
+        }
+
+        int storedCapacity = buffer.getInt(CAPACITY_OFFSET);
+        long storedLogEnd = buffer.getLong(LOG_END_OFFSET);
+        long storedGarbage = buffer.getLong(GARBAGE_OFFSET);
+
+        if (storedCapacity <= 0 || logStart(storedCapacity) > size
+                || storedLogEnd < logStart(storedCapacity) || storedLogEnd > size
+                || storedGarbage < 0 || storedGarbage > storedLogEnd - logStart(storedCapacity)) {
+            return false;
+        }
+
+        try {
+            readIndex();
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
+    public synchronized void close() {
+        if (buffer == null) {
+            return;
+        }
+
+        force();
+        closeFile();
+
+        index.clear();
+        free.clear();
+    }
+
+    /** Writes dirty pages to disk. */
+    public synchronized void flush() {
+        if (buffer != null) {
+            force();
+        }
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    public synchronized boolean contains(String key) {
+        return index.containsKey(key);
+    }
+
+    /** Double, String or Boolean, null when the key is not set. */
+    public synchronized Object get(String key) {
+        ensureOpen();
+
+        var slot = index.get(key);
+
+        if (slot == null) {
+            return null;
+        }
+
+        int offset = slotOffset(slot);
+        long value = buffer.getLong(offset + 8);
+
+        switch (buffer.getInt(offset + 4)) {
+            case TYPE_NUMBER:
+                return Double.longBitsToDouble(value);
+            case TYPE_BOOLEAN:
+                return value != 0;
+            case TYPE_STRING:
+                return readString(value);
+            default:
+                return null;
+        }
+    }
+
+    /** Number stored under key, or fallback when it is missing or not a number. */
+    public synchronized double getNumber(String key, double fallback) {
+        ensureOpen();
+
+        var slot = index.get(key);
+
+        if (slot == null || buffer.getInt(slotOffset(slot) + 4) != TYPE_NUMBER) {
+            return fallback;
+        }
+
+        return buffer.getDouble(slotOffset(slot) + 8);
+    }
+
+    /** Stores a Number, Boolean or the string form of anything else, null removes the key. */
+    public synchronized void set(String key, Object value) {
+        if (value == null) {
+            remove(key);
+        } else if (value instanceof Number number) {
+            setNumber(key, number.doubleValue());
+        } else if (value instanceof Boolean bool) {
+            write(key, TYPE_BOOLEAN, bool ? 1 : 0);
+        } else {
+            setString(key, value.toString());
+        }
+    }
+
+    public synchronized void setNumber(String key, double value) {
+        write(key, TYPE_NUMBER, Double.doubleToRawLongBits(value));
+    }
+
+    public synchronized void setString(String key, String value) {
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        int offset = slot(key);
+
+        ensureLog(4 + bytes.length);
+        long record = append(bytes);
+
+        discardValue(offset);
+        buffer.putLong(offset + 8, record);
+        buffer.putInt(offset + 4, TYPE_STRING);
+    }
+
+    /** Adds delta to the number under key, a missing key counts as 0. */
+    public synchronized double add(String key, double delta) {
+        double result = getNumber(key, 0) + delta;
+        setNumber(key, result);
+
+        return result;
+    }
+
+    public synchronized boolean remove(String key) {
+        var slot = index.remove(key);
+
+        if (slot == null) {
+            return false;
+        }
+
+        int offset = slotOffset(slot);
+
+        addGarbage(recordSize(buffer.getInt(offset)));
+        discardValue(offset);
+
+        buffer.putInt(offset + 4, TYPE_EMPTY);
+        buffer.putInt(offset, 0);
+        free.push(slot);
+
+        return true;
+    }
+
+    /** Copy of every stored variable. */
+    public synchronized Map<String, Object> snapshot() {
+        var result = new LinkedHashMap<String, Object>();
+
+        for (var key : index.keySet()) {
+            result.put(key, get(key));
+        }
+
+        return result;
+    }
+
+    /** Compacts when dead strings take more than half of the log. */
+    public synchronized void compactIfNeeded() {
+        if (buffer == null) {
+            return;
+        }
+
+        long live = logEnd - logStart(capacity) - garbage;
+
+        if (garbage >= MIN_COMPACT_GARBAGE && garbage > live) {
+            compact(capacity);
+        }
+    }
+
+    /**
+     * Rewrites the live entries into a fresh file and swaps it in with an
+     * atomic move, so a crash leaves either the old or the new file.
+     */
+    public synchronized void compact(int newCapacity) {
+        ensureOpen();
+
+        var entries = snapshot();
+        int capacity = Math.max(newCapacity, entries.size() * 2);
+
+        long logSize = INITIAL_LOG_SIZE;
+
+        for (var entry : entries.entrySet()) {
+            logSize += keyRecordSize(entry.getKey());
+
+            if (entry.getValue() instanceof String value) {
+                logSize += 4 + value.getBytes(StandardCharsets.UTF_8).length;
+            }
+        }
+
+        if (path == null) {
+            allocate(capacity, logSize);
+            readIndex();
+
+            for (var entry : entries.entrySet()) {
+                set(entry.getKey(), entry.getValue());
+            }
+
+            return;
+        }
+
+        var temp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try {
+            closeFile();
+
+            create(temp, capacity, logSize);
+            readIndex();
+
+            for (var entry : entries.entrySet()) {
+                set(entry.getKey(), entry.getValue());
+            }
+
+            force();
+            closeFile();
+
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            map(path);
+            readIndex();
+        } catch (IOException e) {
+            closeFile();
+
+            try {
+                // Back to the old file, it is untouched until the final move
+                map(path);
+                readIndex();
+            } catch (IOException reopen) {
+                e.addSuppressed(reopen);
+            }
+
+            throw new WorkflowError("Can not compact workflow store: " + path, e);
+        }
+    }
+
+    private void ensureOpen() {
+        if (buffer == null) {
+            throw new WorkflowError("Workflow store is not open: " + path);
+        }
+    }
+
+    private void write(String key, int type, long value) {
+        int offset = slot(key);
+
+        discardValue(offset);
+        buffer.putLong(offset + 8, value);
+        buffer.putInt(offset + 4, type);
+    }
+
+    /**
+     * Offset of the slot of key, taking a free one when the key is new. The
+     * type is written last, a slot still empty after a crash is just free.
+     */
+    private int slot(String key) {
+        ensureOpen();
+
+        var slot = index.get(key);
+
+        if (slot != null) {
+            return slotOffset(slot);
+        }
+
+        if (free.isEmpty()) {
+            compact(capacity * 2);
+        }
+
+        var bytes = key.getBytes(StandardCharsets.UTF_8);
+        ensureLog(4 + bytes.length);
+
+        slot = free.pop();
+        int offset = slotOffset(slot);
+
+        buffer.putInt(offset + 4, TYPE_EMPTY);
+        buffer.putInt(offset, (int) append(bytes));
+        index.put(key, slot);
+
+        return offset;
+    }
+
+    private void discardValue(int offset) {
+        if (buffer.getInt(offset + 4) == TYPE_STRING) {
+            addGarbage(recordSize((int) buffer.getLong(offset + 8)));
+        }
+    }
+
+    private long append(byte[] bytes) {
+        long offset = logEnd;
+
+        buffer.putInt((int) offset, bytes.length);
+
+        for (int i = 0; i < bytes.length; i++) {
+            buffer.put((int) offset + 4 + i, bytes[i]);
+        }
+
+        logEnd += 4 + bytes.length;
+        buffer.putLong(LOG_END_OFFSET, logEnd);
+
+        return offset;
+    }
+
+    private String readString(long offset) {
+        int length = buffer.getInt((int) offset);
+        var bytes = new byte[length];
+
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get((int) offset + 4 + i);
+        }
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void checkRecord(long offset) {
+        if (offset < logStart(capacity) || offset + 4 > logEnd) {
+            throw new IllegalStateException("Record outside the log at " + offset);
+        }
+
+        int length = buffer.getInt((int) offset);
+
+        if (length < 0 || offset + 4 + length > logEnd) {
+            throw new IllegalStateException("Record of " + length + " bytes overruns the log at " + offset);
+        }
+    }
+
+    private int recordSize(int offset) {
+        return 4 + buffer.getInt(offset);
+    }
+
+    private void addGarbage(long bytes) {
+        garbage += bytes;
+        buffer.putLong(GARBAGE_OFFSET, garbage);
+    }
+
+    private void ensureLog(long bytes) {
+        if (logEnd + bytes <= buffer.capacity()) {
+            return;
+        }
+
+        long size = Math.max(buffer.capacity() * 2L, logEnd + bytes);
+
+        if (size > Integer.MAX_VALUE) {
+            throw new WorkflowError("Workflow store is full: " + path);
+        }
+
+        if (file == null) {
+            var grown = ByteBuffer.allocate((int) size);
+            var source = buffer.duplicate();
+
+            source.clear();
+            grown.put(source);
+            buffer = grown;
+            return;
+        }
+
+        try {
+            file.setLength(size);
+            buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw new WorkflowError("Can not grow workflow store: " + path, e);
+        }
+    }
+
+    private void create(Path target, int capacity, long logSize) throws IOException {
+        Files.deleteIfExists(target);
+
+        long size = logStart(capacity) + logSize;
+
+        file = new RandomAccessFile(target.toFile(), "rw");
+        file.setLength(size);
+        buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+        writeHeader(capacity);
+    }
+
+    private void allocate(int capacity, long logSize) {
+        buffer = ByteBuffer.allocate((int) (logStart(capacity) + logSize));
+
+        writeHeader(capacity);
+    }
+
+    private void writeHeader(int capacity) {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        buffer.putLong(LOG_END_OFFSET, logStart(capacity));
+        buffer.putLong(GARBAGE_OFFSET, 0);
+    }
+
+    private void map(Path target) throws IOException {
+        file = new RandomAccessFile(target.toFile(), "rw");
+        buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, file.length());
+    }
+
+    private void readIndex() {
+        capacity = buffer.getInt(CAPACITY_OFFSET);
+        logEnd = buffer.getLong(LOG_END_OFFSET);
+        garbage = buffer.getLong(GARBAGE_OFFSET);
+
+        index.clear();
+        free.clear();
+
+        for (int slot = capacity - 1; slot >= 0; slot--) {
+            int offset = slotOffset(slot);
+
+            int type = buffer.getInt(offset + 4);
+
+            if (type == TYPE_EMPTY) {
+                free.push(slot);
+                continue;
+            }
+
+            if (type > TYPE_BOOLEAN || type < 0) {
+                throw new IllegalStateException("Unknown type " + type + " in slot " + slot);
+            }
+
+            int key = buffer.getInt(offset);
+            checkRecord(key);
+
+            if (type == TYPE_STRING) {
+                checkRecord(buffer.getLong(offset + 8));
+            }
+
+            index.put(readString(key), slot);
+        }
+    }
+
+    private void force() {
+        if (buffer instanceof MappedByteBuffer mapped) {
+            mapped.force();
+        }
+    }
+
+    private void closeFile() {
+        try {
+            if (file != null) {
+                file.close();
+            }
+        } catch (IOException e) {
+            Log.err("Can not close workflow store", e);
+        }
+
+        file = null;
+        buffer = null;
+    }
+
+    private static int keyRecordSize(String key) {
+        return 4 + key.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static int slotOffset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private static long logStart(int capacity) {
+        return HEADER_SIZE + (long) capacity * SLOT_SIZE;
+    }
+}
@@ -0,0 +1,414 @@
+package mindustrytool.workflow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import arc.util.Log;
+
+/**
+ * Hashed timing wheel for workflow timers. Scheduling and cancelling only
+ * touch lock-free queues, the timer thread moves entries in and out of the
+ * wheel once per tick. Everything that expires in a tick is handed to the
+ * dispatcher as one batch, by default a single post to the game thread.
+ *
+ * <p>
+ * A manual timer starts no thread, its ticks run when {@link #advance()} is
+ * called and the clock passed them.
+ */
+public class WorkflowTimer {
+    private static final long TICK_MS = 10;
+    private static final int WHEEL_SIZE = 512;
+    private static final int MAX_TRANSFER_PER_TICK = 100_000;
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(TICK_MS);
+
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private final Consumer<Runnable> dispatcher;
+    private final LongSupplier clock;
+    private final boolean manual;
+
+    private final Bucket[] wheel = new Bucket[WHEEL_SIZE];
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private volatile int generation = 0;
+    private volatile long startTime;
+    private boolean started;
+    private Thread worker;
+
+    // Only touched by the worker
+    private long tick;
+
+    public WorkflowTimer(Consumer<Runnable> dispatcher) {
+        this(dispatcher, System::nanoTime, false);
+    }
+
+    WorkflowTimer(Consumer<Runnable> dispatcher, LongSupplier clock, boolean manual) {
+        this.dispatcher = dispatcher;
+        this.clock = clock;
+        this.manual = manual;
+
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new Bucket();
+        }
+    }
+
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        return add(new Timeout(task, unit.toNanos(delay), 0, false));
+    }
+
+    public Timeout scheduleAtFixedRate(Runnable task, long delay, long period, TimeUnit unit) {
+        return add(new Timeout(task, unit.toNanos(delay), Math.max(unit.toNanos(period), TICK_NANOS), true));
+    }
+
+    public Timeout scheduleWithFixedDelay(Runnable task, long delay, long period, TimeUnit unit) {
+        return add(new Timeout(task, unit.toNanos(delay), Math.max(unit.toNanos(period), TICK_NANOS), false));
+    }
+
+    /** Number of timers waiting to fire. */
+    public int getPending() {
+        return pending.get();
+    }
+
+    /** Cancels every pending timer and stops the timer thread until the next schedule. */
+    public void clear() {
+        Thread current;
+
+        synchronized (this) {
+            generation++;
+            started = false;
+            current = worker;
+            worker = null;
+        }
+
+        if (current != null) {
+            current.interrupt();
+
+            try {
+                current.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized (this) {
+            for (var bucket : wheel) {
+                bucket.clear();
+            }
+
+            added.clear();
+            cancelled.clear();
+            pending.set(0);
+        }
+    }
+
+    private Timeout add(Timeout timeout) {
+        ensureStarted();
+
+        timeout.generation = generation;
+        timeout.deadline = clock.getAsLong() - startTime + timeout.delay;
+
+        pending.incrementAndGet();
+        added.add(timeout);
+
+        return timeout;
+    }
+
+    private synchronized void ensureStarted() {
+        if (started) {
+            return;
+        }
+
+        started = true;
+        startTime = clock.getAsLong();
+        tick = 0;
+
+        if (manual) {
+            return;
+        }
+
+        worker = new Thread(this::run, "workflow-timer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private void run() {
+        var expired = new ArrayList<Timeout>();
+
+        while (!Thread.currentThread().isInterrupted()) {
+            long deadline = waitForNextTick();
+
+            if (deadline < 0) {
+                return;
+            }
+
+            runTick(deadline, expired);
+        }
+    }
+
+    /** Runs every tick the clock passed, for a manual timer. */
+    synchronized void advance() {
+        if (!manual || !started) {
+            return;
+        }
+
+        var expired = new ArrayList<Timeout>();
+        long now = clock.getAsLong() - startTime;
+
+        while (TICK_NANOS * (tick + 1) <= now) {
+            runTick(TICK_NANOS * (tick + 1), expired);
+        }
+    }
+
+    private void runTick(long deadline, List<Timeout> expired) {
+        removeCancelled();
+        transferAdded();
+
+        wheel[(int) (tick & (WHEEL_SIZE - 1))].expire(deadline, expired, added);
+        tick++;
+
+        if (!expired.isEmpty()) {
+            dispatch(new ArrayList<>(expired));
+            expired.clear();
+        }
+    }
+
+    private long waitForNextTick() {
+        long deadline = TICK_NANOS * (tick + 1);
+
+        while (true) {
+            long sleepNanos = deadline - (clock.getAsLong() - startTime);
+
+            if (sleepNanos <= 0) {
+                return deadline;
+            }
+
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } catch (InterruptedException e) {
+                return -1;
+            }
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferAdded() {
+        for (int i = 0; i < MAX_TRANSFER_PER_TICK; i++) {
+            var timeout = added.poll();
+
+            if (timeout == null) {
+                return;
+            }
+
+            if (timeout.state.get() == CANCELLED || timeout.generation != generation) {
+                continue;
+            }
+
+            long target = timeout.deadline / TICK_NANOS;
+            timeout.remainingRounds = (target - tick) / WHEEL_SIZE;
+
+            wheel[(int) (Math.max(target, tick) & (WHEEL_SIZE - 1))].add(timeout);
+        }
+    }
+
+    private void dispatch(List<Timeout> batch) {
+        try {
+            dispatcher.accept(() -> {
+                for (var timeout : batch) {
+                    timeout.run();
+                }
+            });
+        } catch (Exception e) {
+            Log.err("Failed to dispatch workflow timers", e);
+        }
+    }
+
+    private void reschedule(Timeout timeout, long deadline) {
+        if (timeout.generation != generation) {
+            return;
+        }
+
+        timeout.deadline = deadline;
+        added.add(timeout);
+    }
+
+    public final class Timeout {
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        private final long delay;
+        private final long period;
+        private final boolean fixedRate;
+
+        private Runnable task;
+        private int generation;
+        private volatile long deadline;
+        private long remainingRounds;
+
+        // Wheel links, only touched by the worker
+        private Bucket bucket;
+        private Timeout next;
+        private Timeout prev;
+
+        private Timeout(Runnable task, long delay, long period, boolean fixedRate) {
+            this.task = task;
+            this.delay = Math.max(0, delay);
+            this.period = period;
+            this.fixedRate = fixedRate;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        public boolean cancel() {
+            int current = state.get();
+
+            if (current == CANCELLED || !state.compareAndSet(current, CANCELLED)) {
+                return false;
+            }
+
+            if (current == PENDING && generation == WorkflowTimer.this.generation) {
+                pending.decrementAndGet();
+                cancelled.add(this);
+            }
+
+            task = null;
+
+            return true;
+        }
+
+        private void run() {
+            var runnable = task;
+
+            if (runnable == null || state.get() == CANCELLED || generation != WorkflowTimer.this.generation) {
+                return;
+            }
+
+            if (period == 0) {
+                task = null;
+            }
+
+            try {
+                runnable.run();
+            } catch (Exception e) {
+                Log.err("Error running workflow timer", e);
+            }
+
+            if (period > 0 && !fixedRate && state.get() == PENDING && generation == WorkflowTimer.this.generation) {
+                reschedule(this, clock.getAsLong() - startTime + period);
+            }
+        }
+
+        /** Called by the worker when the wheel reaches this timeout. */
+        private void expire(List<Timeout> expired) {
+            expired.add(this);
+
+            if (period == 0) {
+                if (state.compareAndSet(PENDING, EXPIRED)) {
+                    pending.decrementAndGet();
+                }
+            } else if (fixedRate && state.get() == PENDING) {
+                reschedule(this, deadline + period);
+            }
+        }
+    }
+
+    /** Doubly linked list of timeouts sharing a wheel slot. */
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        private void add(Timeout timeout) {
+            timeout.bucket = this;
+
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        private void remove(Timeout timeout) {
+            var next = timeout.next;
+
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+
+            if (next != null) {
+                next.prev = timeout.prev;
+            }
+
+            if (timeout == head) {
+                head = next;
+            }
+
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        private void expire(long deadline, List<Timeout> expired, Queue<Timeout> requeue) {
+            var timeout = head;
+
+            while (timeout != null) {
+                var next = timeout.next;
+
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+
+                    if (timeout.isCancelled()) {
+                        // Dropped, the cancelled queue entry becomes a no-op
+                    } else if (timeout.deadline <= deadline) {
+                        timeout.expire(expired);
+                    } else {
+                        // Slotted too early, goes back through the added queue
+                        requeue.add(timeout);
+                    }
+                } else {
+                    timeout.remainingRounds--;
+                }
+
+                timeout = next;
+            }
+        }
+
+        private void clear() {
+            var timeout = head;
+
+            while (timeout != null) {
+                var next = timeout.next;
+                timeout.prev = null;
+                timeout.next = null;
+                timeout.bucket = null;
+                timeout = next;
+            }
+
+            head = tail = null;
+        }
+    }
+}
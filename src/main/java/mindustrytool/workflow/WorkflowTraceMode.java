@@ -0,0 +1,7 @@
+package mindustrytool.workflow;
+
+public enum WorkflowTraceMode {
+    OFF,
+    SAMPLED,
+    FULL
+}
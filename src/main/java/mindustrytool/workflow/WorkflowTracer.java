@@ -0,0 +1,193 @@
+package mindustrytool.workflow;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import arc.util.Log;
+import io.javalin.http.sse.SseClient;
+import lombok.Getter;
+
+/**
+ * Collects trace events of workflow runs and ships them to the SSE clients.
+ * Nodes only write into a fixed size ring per node, a background task drains
+ * the rings and sends what it found in the order it was recorded, one event
+ * per record as the editor expects them. When the rings overflow the
+ * oldest records are lost, execution never waits for a slow client.
+ */
+public class WorkflowTracer {
+    private static final int RING_SIZE = 64;
+    private static final int SAMPLE_RATE = 16;
+    private static final long DRAIN_INTERVAL_MS = 200;
+
+    private static final Comparator<Record> BY_ORDER = Comparator.comparingLong(record -> record.order);
+
+    @Getter
+    private volatile WorkflowTraceMode mode = WorkflowTraceMode.OFF;
+
+    @Getter
+    private final Queue<SseClient> consumers = new ConcurrentLinkedQueue<>();
+
+    private final ConcurrentHashMap<String, Ring> rings = new ConcurrentHashMap<>();
+    private final AtomicLong order = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+
+    private ScheduledFuture<?> drainTask;
+
+    public void setMode(WorkflowTraceMode mode) {
+        this.mode = mode;
+        Log.info("Workflow trace mode: " + mode);
+    }
+
+    /** Whether a client is connected, errors are sent whenever one is. */
+    public boolean hasConsumers() {
+        return !consumers.isEmpty();
+    }
+
+    /** Decides once per run whether its steps are traced. */
+    public boolean sample() {
+        return sample(!consumers.isEmpty());
+    }
+
+    boolean sample(boolean connected) {
+        switch (mode) {
+            case FULL:
+                return connected;
+            case SAMPLED:
+                return connected && ThreadLocalRandom.current().nextInt(SAMPLE_RATE) == 0;
+            default:
+                return false;
+        }
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public void record(WorkflowEvent<?> event) {
+        rings.computeIfAbsent(event.getNodeId() == null ? "" : event.getNodeId(), _ignore -> new Ring())
+                .add(order.getAndIncrement(), event);
+    }
+
+    public synchronized void start(ScheduledExecutorService scheduler) {
+        if (drainTask != null) {
+            drainTask.cancel(false);
+        }
+
+        drainTask = scheduler.scheduleWithFixedDelay(this::drain, DRAIN_INTERVAL_MS, DRAIN_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (drainTask != null) {
+            drainTask.cancel(false);
+            drainTask = null;
+        }
+    }
+
+    /** Drops buffered records, used when the node graph is replaced. */
+    public void reset() {
+        rings.clear();
+    }
+
+    /** Records waiting for the next drain, at most a ring's worth per node. */
+    synchronized int getBuffered() {
+        int buffered = 0;
+
+        for (var ring : rings.values()) {
+            buffered += (int) Math.min(ring.head.get() - ring.tail, RING_SIZE);
+        }
+
+        return buffered;
+    }
+
+    synchronized void drain() {
+        if (rings.isEmpty()) {
+            return;
+        }
+
+        List<Record> batch = new ArrayList<>();
+
+        for (var ring : rings.values()) {
+            ring.drainTo(batch);
+        }
+
+        if (batch.isEmpty() || consumers.isEmpty()) {
+            return;
+        }
+
+        batch.sort(BY_ORDER);
+
+        for (var client : consumers) {
+            try {
+                for (var record : batch) {
+                    client.sendEvent(record.event);
+                }
+            } catch (Exception e) {
+                Log.err("Error sending workflow event", e);
+            }
+        }
+    }
+
+    private static final class Record {
+        private final long sequence;
+        private final long order;
+        private final WorkflowEvent<?> event;
+
+        private Record(long sequence, long order, WorkflowEvent<?> event) {
+            this.sequence = sequence;
+            this.order = order;
+            this.event = event;
+        }
+    }
+
+    /** Multi producer, single consumer ring, writers never block. */
+    private final class Ring {
+        private final AtomicReferenceArray<Record> slots = new AtomicReferenceArray<>(RING_SIZE);
+        private final AtomicLong head = new AtomicLong();
+
+        // Only touched by the drain task
+        private long tail = 0;
+
+        private void add(long order, WorkflowEvent<?> event) {
+            long sequence = head.getAndIncrement();
+            slots.set((int) (sequence & (RING_SIZE - 1)), new Record(sequence, order, event));
+        }
+
+        private void drainTo(List<Record> batch) {
+            long end = head.get();
+
+            if (end - tail > RING_SIZE) {
+                dropped.add(end - tail - RING_SIZE);
+                tail = end - RING_SIZE;
+            }
+
+            while (tail < end) {
+                var record = slots.get((int) (tail & (RING_SIZE - 1)));
+
+                if (record == null || record.sequence < tail) {
+                    // Claimed but not written yet, pick it up next time
+                    break;
+                }
+
+                if (record.sequence == tail) {
+                    batch.add(record);
+                } else {
+                    dropped.increment();
+                }
+
+                tail++;
+            }
+        }
+    }
+}
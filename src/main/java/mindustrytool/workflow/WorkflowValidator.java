@@ -0,0 +1,375 @@
+package mindustrytool.workflow;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import mindustrytool.type.WorkflowContext;
+import mindustrytool.workflow.errors.WorkflowError;
+import mindustrytool.workflow.expressions.Expression;
+import mindustrytool.workflow.expressions.ExpressionParser;
+import mindustrytool.workflow.nodes.WorkflowNode;
+
+/**
+ * Static checks over a {@link WorkflowContext} before it is loaded: node
+ * types, field values, expression types, output references and synchronous
+ * cycles. Collects every problem instead of stopping at the first one.
+ */
+public class WorkflowValidator {
+    private final Map<String, WorkflowNode> nodeTypes;
+    private final ExpressionParser parser;
+
+    private final List<WorkflowError> errors = new ArrayList<>();
+    private final Map<String, Map<String, Class<?>>> inferredTypes = new HashMap<>();
+    private final Map<String, Class<?>> variableTypes = new HashMap<>();
+
+    public WorkflowValidator(Map<String, WorkflowNode> nodeTypes, ExpressionParser parser) {
+        this.nodeTypes = nodeTypes;
+        this.parser = parser;
+    }
+
+    public List<WorkflowError> validate(WorkflowContext context) {
+        errors.clear();
+        inferredTypes.clear();
+        variableTypes.clear();
+
+        var nodes = new LinkedHashMap<String, NodeData>();
+
+        for (var data : context.getNodes()) {
+            if (data.getId() == null) {
+                errors.add(new WorkflowError(null, null, "Node without id: " + data.getName()));
+            } else if (nodes.put(data.getId(), data) != null) {
+                errors.add(new WorkflowError(data.getId(), null, "Duplicate node id: " + data.getId()));
+            }
+        }
+
+        var valid = new LinkedHashMap<String, NodeData>();
+
+        for (var data : nodes.values()) {
+            if (nodeTypes.get(data.getName()) == null) {
+                errors.add(new WorkflowError(data.getId(), null, "Node type not found: " + data.getName()));
+            } else if (data.getState() == null) {
+                errors.add(new WorkflowError(data.getId(), null, "Node has no state: " + data.getName()));
+            } else {
+                valid.put(data.getId(), data);
+            }
+        }
+
+        for (var data : valid.values()) {
+            collectVariables(data);
+        }
+
+        for (var data : valid.values()) {
+            validateFields(data);
+            validateOutputs(data, nodes);
+        }
+
+        detectCycles(valid);
+
+        return errors;
+    }
+
+    /**
+     * Result type of every expression field that passed validation, by node id
+     * and field name. Object when the type depends on runtime values.
+     */
+    public Map<String, Map<String, Class<?>>> getInferredTypes() {
+        return inferredTypes;
+    }
+
+    private void collectVariables(NodeData data) {
+        var type = nodeTypes.get(data.getName());
+
+        for (var field : type.getFields()) {
+            var producer = field.getProducer();
+
+            if (producer == null) {
+                continue;
+            }
+
+            var state = data.getState().getFields().get(field.getName());
+            var name = state != null && state.getVariableName() != null
+                    ? state.getVariableName()
+                    : producer.getVariableName();
+
+            Class<?> produced = producer.getProduceType();
+
+            // An event listener produces an instance of the class picked in its own field
+            if (produced == Class.class && field.getConsumer() != null && field.getConsumer().getType() == Class.class) {
+                produced = state == null ? null : loadClass(state.getConsumer());
+            }
+
+            if (produced == null || produced == Void.class) {
+                produced = Object.class;
+            }
+
+            var previous = variableTypes.putIfAbsent(name, produced);
+
+            if (previous != null && previous != produced) {
+                variableTypes.put(name, Object.class);
+            }
+        }
+    }
+
+    private Class<?> variableType(String name) {
+        var type = variableTypes.get(name);
+
+        if (type == null) {
+            type = WorkflowScope.builtinType(name);
+        }
+
+        // Set nodes and anything computed at runtime are unknown here
+        return type == null ? Object.class : type;
+    }
+
+    private void validateFields(NodeData data) {
+        var type = nodeTypes.get(data.getName());
+        var states = data.getState().getFields();
+
+        for (var entry : states.entrySet()) {
+            if (type.getFields().stream().noneMatch(field -> field.getName().equals(entry.getKey()))) {
+                errors.add(new WorkflowError(data.getId(), entry.getKey(),
+                        "Node fields not found: " + entry.getKey() + " on node: " + type.getName()));
+            }
+        }
+
+        for (var field : type.getFields()) {
+            var consumer = field.getConsumer();
+
+            if (consumer == null) {
+                continue;
+            }
+
+            var state = states.get(field.getName());
+            var value = state == null ? null : state.getConsumer();
+
+            if (value == null) {
+                if (consumer.isRequired() && state != null) {
+                    errors.add(new WorkflowError(data.getId(), field.getName(),
+                            "Node fields value is required: " + field.getName() + " on node: " + type.getName()));
+                }
+
+                continue;
+            }
+
+            try {
+                validateValue(data, field.getName(), consumer, value);
+            } catch (WorkflowError e) {
+                errors.add(new WorkflowError(data.getId(), field.getName(), e.getMessage()));
+            }
+        }
+    }
+
+    private void validateValue(NodeData data, String fieldName, WorkflowNode.FieldConsumer<?> consumer,
+            String value) {
+        var expected = consumer.getType();
+
+        if (expected == Class.class) {
+            if (loadClass(value) == null) {
+                throw new WorkflowError("Invalid class: " + value);
+            }
+
+            return;
+        }
+
+        if (expected.isEnum()) {
+            if (!consumer.isExpression()) {
+                var constants = expected.getEnumConstants();
+
+                for (var constant : constants) {
+                    if (((Enum<?>) constant).name().equals(value)) {
+                        return;
+                    }
+                }
+
+                throw new WorkflowError("Invalid enum value: " + value + " for type: " + expected.getName());
+            }
+        }
+
+        if (!consumer.isExpression()) {
+            if (expected == String.class) {
+                parser.compileTemplate(value);
+            }
+
+            return;
+        }
+
+        Expression expression = parser.compile(value);
+        Class<?> result = expression.inferType(this::variableType);
+
+        // Forced expressions on String fields are read through asBoolean or asString by the node
+        if (expected != String.class && !accepts(expected, result)) {
+            throw new WorkflowError("Invalid result type of expression: " + value + ", result type: "
+                    + result.getSimpleName() + ", expected type: " + expected.getSimpleName());
+        }
+
+        inferredTypes.computeIfAbsent(data.getId(), _ignore -> new HashMap<>()).put(fieldName, result);
+    }
+
+    private static boolean accepts(Class<?> expected, Class<?> result) {
+        // Numeric fields are read through asDouble and friends, any number fits
+        if (Number.class.isAssignableFrom(expected) || expected.isPrimitive() && expected != boolean.class) {
+            return Expression.canBe(Number.class, result);
+        }
+
+        return Expression.canBe(expected, result);
+    }
+
+    private void validateOutputs(NodeData data, Map<String, NodeData> nodes) {
+        var type = nodeTypes.get(data.getName());
+
+        for (var entry : data.getState().getOutputs().entrySet()) {
+            var name = entry.getKey();
+            var nextId = entry.getValue();
+
+            if (type.getOutputs().stream().noneMatch(output -> output.getName().equals(name))) {
+                errors.add(new WorkflowError(data.getId(), name,
+                        "Node output not found: " + name + " on node: " + type.getName()));
+            } else if (nextId != null && !nodes.containsKey(nextId)) {
+                errors.add(new WorkflowError(data.getId(), name, "Node not found, id: " + nextId));
+            }
+        }
+    }
+
+    /**
+     * Reports strongly connected groups of synchronous nodes that no output
+     * can leave. A run entering one only stops at the step limit. Cycles with
+     * a branch out, or through an async node such as Wait, are allowed.
+     */
+    private void detectCycles(Map<String, NodeData> nodes) {
+        var edges = new LinkedHashMap<String, List<String>>();
+
+        for (var data : nodes.values()) {
+            var type = nodeTypes.get(data.getName());
+            var targets = new ArrayList<String>();
+
+            if (!type.isAsync()) {
+                for (var output : type.getOutputs()) {
+                    // An unconnected output ends the run, which counts as an exit
+                    targets.add(data.getState().getOutputs().get(output.getName()));
+                }
+            }
+
+            edges.put(data.getId(), targets);
+        }
+
+        for (var component : stronglyConnected(edges)) {
+            var first = component.get(0);
+            var self = edges.get(first).contains(first);
+
+            if (component.size() == 1 && !self) {
+                continue;
+            }
+
+            var members = new HashSet<>(component);
+            var closed = component.stream()
+                    .allMatch(id -> !edges.get(id).isEmpty() && members.containsAll(edges.get(id)));
+
+            if (closed) {
+                errors.add(new WorkflowError(first, null, "Synchronous cycle without Wait: "
+                        + component.stream().collect(Collectors.joining(" -> "))));
+            }
+        }
+    }
+
+    /** Iterative Tarjan, graphs can be long chains and recursion would blow the stack. */
+    private static List<List<String>> stronglyConnected(Map<String, List<String>> edges) {
+        var index = new HashMap<String, Integer>();
+        var low = new HashMap<String, Integer>();
+        var onStack = new HashSet<String>();
+        var stack = new ArrayDeque<String>();
+        var result = new ArrayList<List<String>>();
+        int counter = 0;
+
+        for (var start : edges.keySet()) {
+            if (index.containsKey(start)) {
+                continue;
+            }
+
+            var work = new ArrayDeque<Object[]>();
+            work.push(new Object[] { start, 0 });
+
+            while (!work.isEmpty()) {
+                var frame = work.peek();
+                var node = (String) frame[0];
+                int next = (Integer) frame[1];
+
+                if (next == 0) {
+                    index.put(node, counter);
+                    low.put(node, counter);
+                    counter++;
+                    stack.push(node);
+                    onStack.add(node);
+                }
+
+                var targets = edges.get(node);
+                boolean descended = false;
+
+                while (next < targets.size()) {
+                    var target = targets.get(next++);
+
+                    if (target == null || !edges.containsKey(target)) {
+                        continue;
+                    }
+
+                    if (!index.containsKey(target)) {
+                        frame[1] = next;
+                        work.push(new Object[] { target, 0 });
+                        descended = true;
+                        break;
+                    }
+
+                    if (onStack.contains(target)) {
+                        low.put(node, Math.min(low.get(node), index.get(target)));
+                    }
+                }
+
+                if (descended) {
+                    continue;
+                }
+
+                frame[1] = next;
+                work.pop();
+
+                if (!work.isEmpty()) {
+                    var parent = (String) work.peek()[0];
+                    low.put(parent, Math.min(low.get(parent), low.get(node)));
+                }
+
+                if (low.get(node).equals(index.get(node))) {
+                    var component = new ArrayList<String>();
+                    String member;
+
+                    do {
+                        member = stack.pop();
+                        onStack.remove(member);
+                        component.add(member);
+                    } while (!member.equals(node));
+
+                    Collections.reverse(component);
+                    result.add(component);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private static Class<?> loadClass(String name) {
+        if (name == null) {
+            return null;
+        }
+
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+    }
+}
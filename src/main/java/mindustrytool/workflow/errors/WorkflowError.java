@@ -3,10 +3,19 @@ package mindustrytool.workflow.errors;
 public class WorkflowError extends RuntimeException {
     private static final long serialVersionUID = 930829348901L;
 
+    private String nodeId;
+    private String field;
+
     public WorkflowError(String message) {
         super(message);
     }
 
+    public WorkflowError(String nodeId, String field, String message) {
+        super(message);
+        this.nodeId = nodeId;
+        this.field = field;
+    }
+
     public WorkflowError(String message, Throwable cause) {
         super(message, cause);
     }
@@ -19,4 +28,13 @@ public class WorkflowError extends RuntimeException {
         super(message, cause, enableSuppression, writableStackTrace);
     }
 
+    /** Node the error belongs to, null when it is not tied to one. */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /** Field or output name on the node, null when it is about the node itself. */
+    public String getField() {
+        return field;
+    }
 }
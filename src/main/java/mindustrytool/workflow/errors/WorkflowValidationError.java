@@ -0,0 +1,21 @@
+package mindustrytool.workflow.errors;
+
+import java.util.List;
+
+/** Every problem found while validating a workflow, thrown before anything is loaded. */
+public class WorkflowValidationError extends WorkflowError {
+    private static final long serialVersionUID = 930829348902L;
+
+    private final List<WorkflowError> errors;
+
+    public WorkflowValidationError(List<WorkflowError> errors) {
+        super(errors.size() == 1
+                ? errors.get(0).getMessage()
+                : errors.size() + " errors, first: " + errors.get(0).getMessage());
+        this.errors = errors;
+    }
+
+    public List<WorkflowError> getErrors() {
+        return errors;
+    }
+}
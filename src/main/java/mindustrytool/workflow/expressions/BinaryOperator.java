@@ -1,6 +1,7 @@
 package mindustrytool.workflow.expressions;
 
 import java.util.function.BiFunction;
+import java.util.function.DoubleBinaryOperator;
 
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
@@ -11,4 +12,21 @@ public class BinaryOperator {
     private final String name;
     private final String sign;
     private final BiFunction<Object, Object, Object> function;
+    private final DoubleBinaryOperator numeric;
+
+    // Static types used by load-time validation, Object when unknown
+    private final Class<?> operandType;
+    private final Class<?> resultType;
+
+    // Set for operators registered over numbers, lets compiled expressions skip the boxed checks
+    private BiFunction<Double, Double, Object> numberFunction;
+
+    public BinaryOperator(String name, String sign, BiFunction<Object, Object, Object> function) {
+        this(name, sign, function, null, Object.class, Object.class);
+    }
+
+    public BinaryOperator(String name, String sign, BiFunction<Object, Object, Object> function, DoubleBinaryOperator numeric) {
+        this(name, sign, function, numeric, numeric == null ? Object.class : Number.class,
+                numeric == null ? Object.class : Double.class);
+    }
 }
@@ -0,0 +1,407 @@
+package mindustrytool.workflow.expressions;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Function;
+
+import mindustrytool.workflow.errors.WorkflowError;
+
+/**
+ * Tree of small final node classes built from an expression's postfix
+ * program. Every node calls its operator and its children directly, so there
+ * is no token dispatch, no operand stack and no boxing inside numeric
+ * subtrees, and the JIT can inline a whole hot condition. Nodes only run on
+ * values the interpreter would accept, anything else throws {@link Fallback}
+ * and the expression is interpreted instead, which produces the usual result
+ * or error.
+ */
+final class CompiledExpression {
+    /** Thrown when a value needs the interpreter, it has no stack trace. */
+    static final class Fallback extends RuntimeException {
+        static final Fallback INSTANCE = new Fallback();
+
+        private Fallback() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final Node root;
+
+    private CompiledExpression(Node root) {
+        this.root = root;
+    }
+
+    Object evaluate(Map<String, Object> variables) {
+        return root.evaluate(variables);
+    }
+
+    double evaluateAsDouble(Map<String, Object> variables) {
+        if (root instanceof NumberNode number) {
+            return number.evaluateAsDouble(variables);
+        }
+
+        if (root.evaluate(variables) instanceof Double result) {
+            return result;
+        }
+
+        throw Fallback.INSTANCE;
+    }
+
+    static CompiledExpression compile(Expression.Token[] program) {
+        var stack = new ArrayDeque<Node>();
+
+        for (var token : program) {
+            switch (token.kind) {
+                case CONSTANT:
+                    stack.push(token.constant instanceof Double value
+                            ? new NumberConstant(value)
+                            : new Constant(token.constant));
+                    break;
+
+                case VARIABLE:
+                    stack.push(new Variable(token.path));
+                    break;
+
+                case BINARY: {
+                    var b = stack.pop();
+                    var a = stack.pop();
+                    stack.push(binary(token.binary, a, b));
+                    break;
+                }
+
+                case UNARY:
+                    stack.push(unary(token.unary, stack.pop()));
+                    break;
+            }
+        }
+
+        if (stack.size() != 1) {
+            throw new WorkflowError("Malformed expression program, " + stack.size() + " values left");
+        }
+
+        return new CompiledExpression(stack.pop());
+    }
+
+    private static Node binary(BinaryOperator operator, Node a, Node b) {
+        var numberA = asNumber(a);
+        var numberB = asNumber(b);
+
+        if (numberA != null && numberB != null) {
+            var numeric = operator.getNumeric();
+
+            if (numeric != null) {
+                switch (operator.getSign()) {
+                    case "+":
+                        return new Add(numberA, numberB);
+                    case "-":
+                        return new Subtract(numberA, numberB);
+                    case "*":
+                        return new Multiply(numberA, numberB);
+                    case "/":
+                        return new Divide(numberA, numberB);
+                    default:
+                        return new NumberBinary(numeric, numberA, numberB);
+                }
+            }
+
+            if (operator.getNumberFunction() != null) {
+                return new NumberArgumentsBinary(operator, numberA, numberB);
+            }
+        }
+
+        return new Binary(operator, a, b);
+    }
+
+    private static Node unary(UnaryOperator operator, Node a) {
+        var number = asNumber(a);
+
+        if (number != null) {
+            if (operator.getNumeric() != null) {
+                return new NumberUnary(operator.getNumeric(), number);
+            }
+
+            if (operator.getNumberFunction() != null) {
+                return new NumberArgumentUnary(operator, number);
+            }
+        }
+
+        return new Unary(operator, a);
+    }
+
+    /** Node as a double producing one, null when it can not be a number. */
+    private static NumberNode asNumber(Node node) {
+        if (node instanceof NumberNode number) {
+            return number;
+        }
+
+        if (node instanceof Variable variable) {
+            return new NumberVariable(variable.path);
+        }
+
+        return null;
+    }
+
+    private abstract static class Node {
+        abstract Object evaluate(Map<String, Object> variables);
+    }
+
+    private abstract static class NumberNode extends Node {
+        abstract double evaluateAsDouble(Map<String, Object> variables);
+
+        @Override
+        final Object evaluate(Map<String, Object> variables) {
+            return evaluateAsDouble(variables);
+        }
+    }
+
+    private static final class Constant extends Node {
+        private final Object value;
+
+        private Constant(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        Object evaluate(Map<String, Object> variables) {
+            return value;
+        }
+    }
+
+    private static final class NumberConstant extends NumberNode {
+        private final double value;
+
+        private NumberConstant(double value) {
+            this.value = value;
+        }
+
+        @Override
+        double evaluateAsDouble(Map<String, Object> variables) {
+            return value;
+        }
+    }
+
+    private static final class Variable extends Node {
+        private final PathAccessor path;
+
+        private Variable(PathAccessor path) {
+            this.path = path;
+        }
+
+        @Override
+        Object evaluate(Map<String, Object> variables) {
+            Object value = path.read(variables);
+            return value instanceof Number number ? number.doubleValue() : value;
+        }
+    }
+
+    private static final class NumberVariable extends NumberNode {
+        private final PathAccessor path;
+
+        private NumberVariable(PathAccessor path) {
+            this.path = path;
+        }
+
+        @Override
+        double evaluateAsDouble(Map<String, Object> variables) {
+            if (path.read(variables) instanceof Number number) {
+                return number.doubleValue();
+            }
+
+            throw Fallback.INSTANCE;
+        }
+    }
+
+    private static final class Add extends NumberNode {
+        private final NumberNode a;
+        private final NumberNode b;
+
+        private Add(NumberNode a, NumberNode b) {
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        double evaluateAsDouble(Map<String, Object> variables) {
+            return a.evaluateAsDouble(variables) + b.evaluateAsDouble(variables);
+        }
+    }
+
+    private static final class Subtract extends NumberNode {
+        private final NumberNode a;
+        private final NumberNode b;
+
+        private Subtract(NumberNode a, NumberNode b) {
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        double evaluateAsDouble(Map<String, Object> variables) {
+            return a.evaluateAsDouble(variables) - b.evaluateAsDouble(variables);
+        }
+    }
+
+    private static final class Multiply extends NumberNode {
+        private final NumberNode a;
+        private final NumberNode b;
+
+        private Multiply(NumberNode a, NumberNode b) {
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        double evaluateAsDouble(Map<String, Object> variables) {
+            return a.evaluateAsDouble(variables) * b.evaluateAsDouble(variables);
+        }
+    }
+
+    private static final class Divide extends NumberNode {
+        private final NumberNode a;
+        private final NumberNode b;
+
+        private Divide(NumberNode a, NumberNode b) {
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        double evaluateAsDouble(Map<String, Object> variables) {
+            return a.evaluateAsDouble(variables) / b.evaluateAsDouble(variables);
+        }
+    }
+
+    private static final class NumberBinary extends NumberNode {
+        private final DoubleBinaryOperator operator;
+        private final NumberNode a;
+        private final NumberNode b;
+
+        private NumberBinary(DoubleBinaryOperator operator, NumberNode a, NumberNode b) {
+            this.operator = operator;
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        double evaluateAsDouble(Map<String, Object> variables) {
+            return operator.applyAsDouble(a.evaluateAsDouble(variables), b.evaluateAsDouble(variables));
+        }
+    }
+
+    private static final class NumberUnary extends NumberNode {
+        private final DoubleUnaryOperator operator;
+        private final NumberNode a;
+
+        private NumberUnary(DoubleUnaryOperator operator, NumberNode a) {
+            this.operator = operator;
+            this.a = a;
+        }
+
+        @Override
+        double evaluateAsDouble(Map<String, Object> variables) {
+            return operator.applyAsDouble(a.evaluateAsDouble(variables));
+        }
+    }
+
+    /** Comparisons and other operators over numbers whose result is not a double. */
+    private static final class NumberArgumentsBinary extends Node {
+        private final BinaryOperator operator;
+        private final BiFunction<Double, Double, Object> function;
+        private final NumberNode a;
+        private final NumberNode b;
+
+        private NumberArgumentsBinary(BinaryOperator operator, NumberNode a, NumberNode b) {
+            this.operator = operator;
+            this.function = operator.getNumberFunction();
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        Object evaluate(Map<String, Object> variables) {
+            double left = a.evaluateAsDouble(variables);
+            double right = b.evaluateAsDouble(variables);
+
+            try {
+                return function.apply(left, right);
+            } catch (Exception e) {
+                throw new WorkflowError("Invalid binary operation: " + left + " " + operator.getSign() + " " + right, e);
+            }
+        }
+    }
+
+    private static final class NumberArgumentUnary extends Node {
+        private final UnaryOperator operator;
+        private final Function<Double, Object> function;
+        private final NumberNode a;
+
+        private NumberArgumentUnary(UnaryOperator operator, NumberNode a) {
+            this.operator = operator;
+            this.function = operator.getNumberFunction();
+            this.a = a;
+        }
+
+        @Override
+        Object evaluate(Map<String, Object> variables) {
+            double value = a.evaluateAsDouble(variables);
+
+            try {
+                return function.apply(value);
+            } catch (Exception e) {
+                throw new WorkflowError("Invalid unary operation: " + operator.getSign() + " " + value, e);
+            }
+        }
+    }
+
+    private static final class Binary extends Node {
+        private final BinaryOperator operator;
+        private final BiFunction<Object, Object, Object> function;
+        private final Node a;
+        private final Node b;
+
+        private Binary(BinaryOperator operator, Node a, Node b) {
+            this.operator = operator;
+            this.function = operator.getFunction();
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        Object evaluate(Map<String, Object> variables) {
+            Object left = a.evaluate(variables);
+            Object right = b.evaluate(variables);
+
+            try {
+                return function.apply(left, right);
+            } catch (Exception e) {
+                throw new WorkflowError("Invalid binary operation: " + left + " " + operator.getSign() + " " + right, e);
+            }
+        }
+    }
+
+    private static final class Unary extends Node {
+        private final UnaryOperator operator;
+        private final Function<Object, Object> function;
+        private final Node a;
+
+        private Unary(UnaryOperator operator, Node a) {
+            this.operator = operator;
+            this.function = operator.getFunction();
+            this.a = a;
+        }
+
+        @Override
+        Object evaluate(Map<String, Object> variables) {
+            Object value = a.evaluate(variables);
+
+            try {
+                return function.apply(value);
+            } catch (Exception e) {
+                throw new WorkflowError("Invalid unary operation: " + operator.getSign() + " " + value, e);
+            }
+        }
+    }
+}
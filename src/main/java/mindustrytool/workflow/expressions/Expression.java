@@ -0,0 +1,558 @@
+package mindustrytool.workflow.expressions;
+
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import arc.util.Log;
+import mindustrytool.workflow.errors.WorkflowError;
+
+/**
+ * Immutable, pre-compiled form of an expression. Produced once by
+ * {@link ExpressionParser#compile(String)} and evaluated many times.
+ */
+public final class Expression {
+    enum Kind {
+        CONSTANT, VARIABLE, BINARY, UNARY
+    }
+
+    static final class Token {
+        final Kind kind;
+        final Object constant;
+        final PathAccessor path;
+        final BinaryOperator binary;
+        final UnaryOperator unary;
+
+        private Token(Kind kind, Object constant, PathAccessor path, BinaryOperator binary, UnaryOperator unary) {
+            this.kind = kind;
+            this.constant = constant;
+            this.path = path;
+            this.binary = binary;
+            this.unary = unary;
+        }
+
+        static Token constant(Object value) {
+            return new Token(Kind.CONSTANT, value, null, null, null);
+        }
+
+        static Token variable(PathAccessor path) {
+            return new Token(Kind.VARIABLE, null, path, null, null);
+        }
+
+        static Token binary(BinaryOperator operator) {
+            return new Token(Kind.BINARY, null, null, operator, null);
+        }
+
+        static Token unary(UnaryOperator operator) {
+            return new Token(Kind.UNARY, null, null, null, operator);
+        }
+    }
+
+    private static final int OP_CONSTANT = 0;
+    private static final int OP_VARIABLE = 1;
+    private static final int OP_ADD = 2;
+    private static final int OP_SUBTRACT = 3;
+    private static final int OP_MULTIPLY = 4;
+    private static final int OP_DIVIDE = 5;
+    private static final int OP_BINARY = 6;
+    private static final int OP_UNARY = 7;
+
+    private static final int SHARED_STACK_SIZE = 32;
+    // Values the compiled tier can not take, past this the interpreter alone is faster
+    private static final int MAX_FALLBACKS = 8;
+    private static final ThreadLocal<double[]> NUMERIC_STACK = ThreadLocal
+            .withInitial(() -> new double[SHARED_STACK_SIZE]);
+
+    private final String source;
+    private final Token[] program;
+    private final int maxDepth;
+
+    // Unboxed program, only present when every token is numeric
+    private final int[] opcodes;
+    private final double[] constants;
+    private final PathAccessor[] paths;
+    private final DoubleBinaryOperator[] binaries;
+    private final DoubleUnaryOperator[] unaries;
+
+    // Compiled tier, built once the expression was evaluated compileThreshold times
+    private final int compileThreshold;
+    private int evaluations;
+    private int fallbacks;
+    private volatile CompiledExpression compiled;
+    private volatile boolean compileFailed;
+
+    Expression(String source, Token[] program, int maxDepth) {
+        this(source, program, maxDepth, 0);
+    }
+
+    Expression(String source, Token[] program, int maxDepth, int compileThreshold) {
+        this.source = source;
+        this.program = program;
+        this.maxDepth = maxDepth;
+        this.compileThreshold = compileThreshold;
+
+        if (isNumeric(program)) {
+            int length = program.length;
+
+            opcodes = new int[length];
+            constants = new double[length];
+            paths = new PathAccessor[length];
+            binaries = new DoubleBinaryOperator[length];
+            unaries = new DoubleUnaryOperator[length];
+
+            for (int i = 0; i < length; i++) {
+                var token = program[i];
+
+                switch (token.kind) {
+                    case CONSTANT:
+                        opcodes[i] = OP_CONSTANT;
+                        constants[i] = (Double) token.constant;
+                        break;
+                    case VARIABLE:
+                        opcodes[i] = OP_VARIABLE;
+                        paths[i] = token.path;
+                        break;
+                    case BINARY:
+                        opcodes[i] = toBinaryOpcode(token.binary.getSign());
+                        binaries[i] = token.binary.getNumeric();
+                        break;
+                    case UNARY:
+                        opcodes[i] = OP_UNARY;
+                        unaries[i] = token.unary.getNumeric();
+                        break;
+                }
+            }
+        } else {
+            opcodes = null;
+            constants = null;
+            paths = null;
+            binaries = null;
+            unaries = null;
+        }
+    }
+
+    private static boolean isNumeric(Token[] program) {
+        for (var token : program) {
+            switch (token.kind) {
+                case CONSTANT:
+                    if (!(token.constant instanceof Double)) {
+                        return false;
+                    }
+                    break;
+                case VARIABLE:
+                    break;
+                case BINARY:
+                    if (token.binary.getNumeric() == null) {
+                        return false;
+                    }
+                    break;
+                case UNARY:
+                    if (token.unary.getNumeric() == null) {
+                        return false;
+                    }
+                    break;
+            }
+        }
+
+        return true;
+    }
+
+    private static int toBinaryOpcode(String sign) {
+        switch (sign) {
+            case "+":
+                return OP_ADD;
+            case "-":
+                return OP_SUBTRACT;
+            case "*":
+                return OP_MULTIPLY;
+            case "/":
+                return OP_DIVIDE;
+            default:
+                return OP_BINARY;
+        }
+    }
+
+    /** Whether this expression runs on the unboxed {@code double[]} path. */
+    public boolean isNumeric() {
+        return opcodes != null;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /** Whether evaluation went over to the compiled node tree. */
+    public boolean isCompiled() {
+        return compiled != null;
+    }
+
+    private CompiledExpression compiled() {
+        var result = compiled;
+
+        if (result != null || compileThreshold <= 0 || compileFailed) {
+            return result;
+        }
+
+        // Racy on purpose, a lost increment only delays compiling
+        if (++evaluations < compileThreshold) {
+            return null;
+        }
+
+        try {
+            result = CompiledExpression.compile(program);
+            compiled = result;
+        } catch (RuntimeException e) {
+            compileFailed = true;
+            Log.debug("Expression @ stays interpreted: @", source, e.getMessage());
+        }
+
+        return result;
+    }
+
+    private void fallBack() {
+        // Racy like evaluations, a lost increment only delays going back
+        if (++fallbacks < MAX_FALLBACKS) {
+            return;
+        }
+
+        compileFailed = true;
+        compiled = null;
+        Log.debug("Expression @ went back to the interpreter after @ fallbacks", source, MAX_FALLBACKS);
+    }
+
+    public Object evaluate(Map<String, Object> variables) {
+        return evaluate(Object.class, variables);
+    }
+
+    public double evaluateAsDouble(Map<String, Object> variables) {
+        var compiled = compiled();
+
+        if (compiled != null) {
+            try {
+                return compiled.evaluateAsDouble(variables);
+            } catch (CompiledExpression.Fallback e) {
+                // Interpreted below
+                fallBack();
+            }
+        }
+
+        if (opcodes == null) {
+            return cast(Double.class, interpret(variables));
+        }
+
+        double[] stack = maxDepth <= SHARED_STACK_SIZE ? NUMERIC_STACK.get() : new double[maxDepth];
+        int top = 0;
+
+        for (int i = 0; i < opcodes.length; i++) {
+            switch (opcodes[i]) {
+                case OP_CONSTANT:
+                    stack[top++] = constants[i];
+                    break;
+
+                case OP_VARIABLE: {
+                    Object variable = paths[i].read(variables);
+
+                    if (!(variable instanceof Number)) {
+                        // Let the generic path produce the usual error or conversion
+                        return cast(Double.class, interpret(variables));
+                    }
+
+                    stack[top++] = ((Number) variable).doubleValue();
+                    break;
+                }
+
+                case OP_ADD:
+                    top--;
+                    stack[top - 1] = stack[top - 1] + stack[top];
+                    break;
+
+                case OP_SUBTRACT:
+                    top--;
+                    stack[top - 1] = stack[top - 1] - stack[top];
+                    break;
+
+                case OP_MULTIPLY:
+                    top--;
+                    stack[top - 1] = stack[top - 1] * stack[top];
+                    break;
+
+                case OP_DIVIDE:
+                    top--;
+                    stack[top - 1] = stack[top - 1] / stack[top];
+                    break;
+
+                case OP_BINARY:
+                    top--;
+                    stack[top - 1] = binaries[i].applyAsDouble(stack[top - 1], stack[top]);
+                    break;
+
+                case OP_UNARY:
+                    stack[top - 1] = unaries[i].applyAsDouble(stack[top - 1]);
+                    break;
+            }
+        }
+
+        return stack[0];
+    }
+
+    /**
+     * Condition over a single value bound to variable, for filtering raw
+     * events before a run exists. A comparison between a path on the value
+     * and a constant reads the field and compares it directly, anything else
+     * is evaluated with the value as the only variable.
+     */
+    public Predicate<Object> toFilter(String variable) {
+        Predicate<Object> evaluated = value -> evaluateAsBoolean(Collections.singletonMap(variable, value));
+
+        if (program.length != 3 || program[2].kind != Kind.BINARY
+                || program[2].binary.getResultType() != Boolean.class) {
+            return evaluated;
+        }
+
+        if (isPathOf(program[0], variable) && program[1].kind == Kind.CONSTANT) {
+            return fieldFilter(program[0].path, program[2].binary, program[1].constant, false, evaluated);
+        }
+
+        if (program[0].kind == Kind.CONSTANT && isPathOf(program[1], variable)) {
+            return fieldFilter(program[1].path, program[2].binary, program[0].constant, true, evaluated);
+        }
+
+        return evaluated;
+    }
+
+    private static boolean isPathOf(Token token, String variable) {
+        return token.kind == Kind.VARIABLE && variable.equals(token.path.getVariable());
+    }
+
+    // Values the direct comparison can not take go through evaluated, which gives the usual result or error
+    private static Predicate<Object> fieldFilter(PathAccessor path, BinaryOperator operator, Object constant,
+            boolean constantFirst, Predicate<Object> evaluated) {
+        var numberFunction = operator.getNumberFunction();
+
+        if (numberFunction != null && constant instanceof Double number) {
+            double bound = number;
+
+            return value -> {
+                if (path.readFrom(value) instanceof Number field) {
+                    return (Boolean) (constantFirst
+                            ? numberFunction.apply(bound, field.doubleValue())
+                            : numberFunction.apply(field.doubleValue(), bound));
+                }
+
+                return evaluated.test(value);
+            };
+        }
+
+        var function = operator.getFunction();
+
+        return value -> {
+            Object field = path.readFrom(value);
+
+            if (field == null) {
+                return evaluated.test(value);
+            }
+
+            if (field instanceof Number number) {
+                field = number.doubleValue();
+            }
+
+            try {
+                return (Boolean) (constantFirst ? function.apply(constant, field) : function.apply(field, constant));
+            } catch (Exception e) {
+                return evaluated.test(value);
+            }
+        };
+    }
+
+    public Boolean evaluateAsBoolean(Map<String, Object> variables) {
+        var result = evaluate(variables);
+
+        if (result instanceof Boolean) {
+            return (Boolean) result;
+        }
+
+        if (result instanceof String) {
+            return Boolean.parseBoolean(result.toString());
+        }
+
+        throw new WorkflowError("Invalid boolean value: " + result.toString());
+    }
+
+    public <T> T evaluate(Class<T> type, Map<String, Object> variables) {
+        var compiled = compiled();
+
+        if (compiled != null) {
+            try {
+                return cast(type, compiled.evaluate(variables));
+            } catch (CompiledExpression.Fallback e) {
+                // Interpreted below
+                fallBack();
+            }
+        }
+
+        return cast(type, interpret(variables));
+    }
+
+    private Object interpret(Map<String, Object> variables) {
+        Object[] stack = new Object[maxDepth];
+        int top = 0;
+
+        for (Token token : program) {
+            switch (token.kind) {
+                case CONSTANT:
+                    stack[top++] = token.constant;
+                    break;
+
+                case VARIABLE: {
+                    Object variable = token.path.read(variables);
+                    stack[top++] = variable instanceof Number number ? number.doubleValue() : variable;
+                    break;
+                }
+
+                case BINARY: {
+                    Object b = stack[--top];
+                    Object a = stack[--top];
+                    try {
+                        stack[top++] = token.binary.getFunction().apply(a, b);
+                    } catch (Exception e) {
+                        throw new WorkflowError("Invalid binary operation: " + a + " " + token.binary.getSign() + " " + b, e);
+                    }
+                    break;
+                }
+
+                case UNARY: {
+                    Object a = stack[--top];
+                    try {
+                        stack[top++] = token.unary.getFunction().apply(a);
+                    } catch (Exception e) {
+                        throw new WorkflowError("Invalid unary operation: " + token.unary.getSign() + " " + a, e);
+                    }
+                    break;
+                }
+            }
+        }
+
+        return stack[top - 1];
+    }
+
+    private <T> T cast(Class<T> type, Object result) {
+        if (result == null) {
+            throw new WorkflowError("Null result of expression: " + source);
+        }
+
+        try {
+            return type.cast(result);
+        } catch (ClassCastException e) {
+            throw new WorkflowError("Invalid result type of expression: " + source + ", result type: "
+                    + result.getClass().getSimpleName() + ", expected type: " + type.getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Static result type, worked out from constants, declared field types and
+     * operator signatures. Object when it depends on runtime values.
+     */
+    public Class<?> inferType(Function<String, Class<?>> variableTypes) {
+        Class<?>[] stack = new Class<?>[maxDepth];
+        int top = 0;
+
+        for (Token token : program) {
+            switch (token.kind) {
+                case CONSTANT:
+                    stack[top++] = token.constant == null ? Object.class : token.constant.getClass();
+                    break;
+
+                case VARIABLE:
+                    stack[top++] = normalize(token.path.inferType(variableTypes));
+                    break;
+
+                case BINARY: {
+                    Class<?> b = stack[--top];
+                    Class<?> a = stack[--top];
+                    checkOperand(token.binary.getOperandType(), a, token.binary.getSign());
+                    checkOperand(token.binary.getOperandType(), b, token.binary.getSign());
+                    stack[top++] = token.binary.getResultType();
+                    break;
+                }
+
+                case UNARY: {
+                    Class<?> a = stack[--top];
+                    checkOperand(token.unary.getOperandType(), a, token.unary.getSign());
+                    stack[top++] = token.unary.getResultType();
+                    break;
+                }
+            }
+        }
+
+        return stack[top - 1];
+    }
+
+    /**
+     * Whether a value statically typed as {@code actual} may be an instance
+     * of {@code expected} at runtime. Only provably disjoint types fail.
+     */
+    public static boolean canBe(Class<?> expected, Class<?> actual) {
+        expected = box(expected);
+        actual = box(actual);
+
+        if (expected == Object.class || actual == Object.class
+                || expected.isAssignableFrom(actual)
+                || actual.isAssignableFrom(expected)) {
+            return true;
+        }
+
+        if (Modifier.isFinal(actual.getModifiers()) || Modifier.isFinal(expected.getModifiers())) {
+            return false;
+        }
+
+        return actual.isInterface() || expected.isInterface();
+    }
+
+    private void checkOperand(Class<?> expected, Class<?> actual, String sign) {
+        if (expected != null && !canBe(expected, actual)) {
+            throw new WorkflowError("Operator " + sign + " expects " + expected.getSimpleName() + " but got "
+                    + actual.getSimpleName() + ", expression: " + source);
+        }
+    }
+
+    // Mirrors evaluate(), which widens every number read from a variable to Double
+    private static Class<?> normalize(Class<?> type) {
+        type = box(type);
+
+        return Number.class.isAssignableFrom(type) ? Double.class : type;
+    }
+
+    private static Class<?> box(Class<?> type) {
+        if (type == null) {
+            return Object.class;
+        }
+
+        if (!type.isPrimitive()) {
+            return type;
+        }
+
+        if (type == boolean.class) {
+            return Boolean.class;
+        }
+
+        if (type == char.class) {
+            return Character.class;
+        }
+
+        if (type == void.class) {
+            return Void.class;
+        }
+
+        // byte, short, int, long, float and double are all read as numbers
+        return Double.class;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
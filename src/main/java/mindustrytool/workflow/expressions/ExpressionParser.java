@@ -1,15 +1,23 @@
 package mindustrytool.workflow.expressions;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
-import java.util.Queue;
-import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
 import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
 import arc.util.Log;
 import mindustry.Vars;
 import mindustry.gen.Groups;
@@ -23,9 +31,25 @@ public class ExpressionParser {
     public final Map<String, UnaryOperator> UNARY_OPERATORS = new HashMap<>();
     public final Map<String, Class<?>> CLASSES = new HashMap<>();
 
+    private static final Map<String, PathAccessor> FIELD_ACCESSORS = new ConcurrentHashMap<>();
+
+    // Compiled expressions and templates keep their own accessors, an evicted path only costs a recompile
+    private final Cache<String, PathAccessor> accessors = Caffeine.newBuilder()
+            .maximumSize(1000)
+            .build();
+
+    private final Cache<String, Expression> compiled = Caffeine.newBuilder()
+            .maximumSize(1000)
+            .build();
+
+    /** Evaluations before an expression is compiled into a node tree, 0 keeps it interpreted. */
+    public static final int DEFAULT_COMPILE_THRESHOLD = 1000;
+
+    private volatile int compileThreshold = DEFAULT_COMPILE_THRESHOLD;
+
     private static final Pattern TOKEN_PATTERN = Pattern.compile(
             "(\\{\\{([^{}]+)\\}\\})" + // match {{ var }}
-                    "|(\\d+\\\\.*\\d*)" + // match numbers
+                    "|(\\d+\\.?\\d*)" + // match numbers
                     "|([a-zA-Z0-9_-]+)" + // match identifiers
                     "|\\S+" // fallback: match any non-whitespace char (except {{ and }})
     );
@@ -39,7 +63,7 @@ public class ExpressionParser {
         PRECEDENCE.put("==", 4);
         PRECEDENCE.put("!=", 4);
         PRECEDENCE.put("<", 5);
-        PRECEDENCE.put("><", 5);
+        PRECEDENCE.put(">", 5);
         PRECEDENCE.put("<=", 5);
         PRECEDENCE.put(">=", 5);
         PRECEDENCE.put("<<", 6);
@@ -51,40 +75,40 @@ public class ExpressionParser {
         PRECEDENCE.put("%", 8);
         PRECEDENCE.put("idiv", 8);
 
-        registerNumber("Addition", "+", (a, b) -> a + b);
-        registerNumber("Subtraction", "-", (a, b) -> a - b);
-        registerNumber("Multiplication", "*", (a, b) -> a * b);
-        registerNumber("Division", "/", (a, b) -> a / b);
-        registerNumber("Modulo", "%", (a, b) -> a % b);
-        registerNumber("Integer Division", "idiv", (a, b) -> Math.floor((a / b)));
-        register("Equals", "==", (a, b) -> a.equals(b));
-        register("Not Equals", "!=", (a, b) -> !a.equals(b));
-        registerNumber("Less Than", "<", (a, b) -> a < b);
-        registerNumber("Greater Than", ">", (a, b) -> a > b);
-        registerNumber("Less Than or Equal", "<=", (a, b) -> a <= b);
-        registerNumber("Greater Than or Equal", ">=", (a, b) -> a >= b);
-        registerNumber("Bitwise AND", "and", (a, b) -> (a.intValue() & b.intValue()));
-        registerNumber("Bitwise OR", "or", (a, b) -> (a.intValue() | b.intValue()));
-        registerNumber("Bitwise XOR", "xor", (a, b) -> (a.intValue() ^ b.intValue()));
-        registerNumber("Left Shift", "<<", (a, b) -> (a.intValue() << b.intValue()));
-        registerNumber("Right Shift", ">>", (a, b) -> (a.intValue() >> b.intValue()));
-
-        registerNumber("Absolute Value", "abs", Math::abs);
-        registerNumber("Natural Logarithm", "log", Math::log);
-        registerNumber("Base-10 Logarithm", "log10", Math::log10);
-        registerNumber("Floor", "floor", Math::floor);
-        registerNumber("Ceiling", "ceil", Math::ceil);
-        registerNumber("Round", "round", a -> Math.round(a));
-        registerNumber("Square Root", "sqrt", Math::sqrt);
-        registerNumber("Sine", "sin", Math::sin);
-        registerNumber("Cosine", "cos", Math::cos);
-        registerNumber("Tangent", "tan", Math::tan);
-        registerNumber("Arcsine", "asin", Math::asin);
-        registerNumber("Arccosine", "acos", Math::acos);
-        registerNumber("Arctangent", "atan", Math::atan);
-        registerNumber("Bitwise NOT", "flip", a -> ~(a.intValue()));
-        registerNumber("Square", "square", a -> a * a);
-        registerNumber("Length (abs)", "length", a -> Math.abs(a));
+        registerDouble("Addition", "+", (a, b) -> a + b);
+        registerDouble("Subtraction", "-", (a, b) -> a - b);
+        registerDouble("Multiplication", "*", (a, b) -> a * b);
+        registerDouble("Division", "/", (a, b) -> a / b);
+        registerDouble("Modulo", "%", (a, b) -> a % b);
+        registerDouble("Integer Division", "idiv", (a, b) -> Math.floor((a / b)));
+        register("Equals", "==", Boolean.class, (a, b) -> a.equals(b));
+        register("Not Equals", "!=", Boolean.class, (a, b) -> !a.equals(b));
+        registerNumber("Less Than", "<", Boolean.class, (a, b) -> a < b);
+        registerNumber("Greater Than", ">", Boolean.class, (a, b) -> a > b);
+        registerNumber("Less Than or Equal", "<=", Boolean.class, (a, b) -> a <= b);
+        registerNumber("Greater Than or Equal", ">=", Boolean.class, (a, b) -> a >= b);
+        registerNumber("Bitwise AND", "and", Integer.class, (a, b) -> (a.intValue() & b.intValue()));
+        registerNumber("Bitwise OR", "or", Integer.class, (a, b) -> (a.intValue() | b.intValue()));
+        registerNumber("Bitwise XOR", "xor", Integer.class, (a, b) -> (a.intValue() ^ b.intValue()));
+        registerNumber("Left Shift", "<<", Integer.class, (a, b) -> (a.intValue() << b.intValue()));
+        registerNumber("Right Shift", ">>", Integer.class, (a, b) -> (a.intValue() >> b.intValue()));
+
+        registerDouble("Absolute Value", "abs", Math::abs);
+        registerDouble("Natural Logarithm", "log", Math::log);
+        registerDouble("Base-10 Logarithm", "log10", Math::log10);
+        registerDouble("Floor", "floor", Math::floor);
+        registerDouble("Ceiling", "ceil", Math::ceil);
+        registerNumber("Round", "round", Long.class, a -> Math.round(a));
+        registerDouble("Square Root", "sqrt", Math::sqrt);
+        registerDouble("Sine", "sin", Math::sin);
+        registerDouble("Cosine", "cos", Math::cos);
+        registerDouble("Tangent", "tan", Math::tan);
+        registerDouble("Arcsine", "asin", Math::asin);
+        registerDouble("Arccosine", "acos", Math::acos);
+        registerDouble("Arctangent", "atan", Math::atan);
+        registerNumber("Bitwise NOT", "flip", Integer.class, a -> ~(a.intValue()));
+        registerDouble("Square", "square", a -> a * a);
+        registerDouble("Length (abs)", "length", a -> Math.abs(a));
 
         loadClass(Vars.class, Groups.class, System.class);
 
@@ -94,6 +118,15 @@ public class ExpressionParser {
 
     }
 
+    public int getCompileThreshold() {
+        return compileThreshold;
+    }
+
+    /** Applies to expressions compiled from now on, cached ones keep their threshold. */
+    public void setCompileThreshold(int compileThreshold) {
+        this.compileThreshold = Math.max(0, compileThreshold);
+    }
+
     public void loadClass(Class<?>... clazz) {
         for (var c : clazz) {
             CLASSES.put(c.getSimpleName(), c);
@@ -101,37 +134,90 @@ public class ExpressionParser {
     }
 
     public void register(String name, String sign, BiFunction<Object, Object, Object> function) {
-        BINARY_OPERATORS.put(sign, new BinaryOperator(name, sign, function));
+        register(name, sign, Object.class, function);
+    }
+
+    public void register(String name, String sign, Class<?> resultType,
+            BiFunction<Object, Object, Object> function) {
+        BINARY_OPERATORS.put(sign, new BinaryOperator(name, sign, function, null, Object.class, resultType));
     }
 
     public void registerNumber(String name, String sign, BiFunction<Double, Double, Object> function) {
-        BINARY_OPERATORS.put(sign, new BinaryOperator(name, sign, (a, b) -> {
+        registerNumber(name, sign, Object.class, function);
+    }
+
+    public void registerNumber(String name, String sign, Class<?> resultType,
+            BiFunction<Double, Double, Object> function) {
+        var operator = new BinaryOperator(name, sign, (a, b) -> {
 
             if (a instanceof Number numberA && b instanceof Number numberB) {
                 return function.apply(numberA.doubleValue(), numberB.doubleValue());
             }
 
             throw new WorkflowError("Invalid arguments for binary operator: " + name + " a: " + a + " b: " + b);
-        }));
+        }, null, Number.class, resultType);
+
+        operator.setNumberFunction(function);
+        BINARY_OPERATORS.put(sign, operator);
+    }
+
+    /**
+     * Registers a binary operator that maps doubles to a double, so it can also
+     * run on the unboxed evaluation path.
+     */
+    public void registerDouble(String name, String sign, DoubleBinaryOperator function) {
+        BINARY_OPERATORS.put(sign, new BinaryOperator(name, sign, (a, b) -> {
+
+            if (a instanceof Number numberA && b instanceof Number numberB) {
+                return function.applyAsDouble(numberA.doubleValue(), numberB.doubleValue());
+            }
+
+            throw new WorkflowError("Invalid arguments for binary operator: " + name + " a: " + a + " b: " + b);
+        }, function));
     }
 
     public void register(String name, String sign, Function<Object, Object> function) {
-        UNARY_OPERATORS.put(sign, new UnaryOperator(name, sign, function));
+        register(name, sign, Object.class, function);
+    }
+
+    public void register(String name, String sign, Class<?> resultType, Function<Object, Object> function) {
+        UNARY_OPERATORS.put(sign, new UnaryOperator(name, sign, function, null, Object.class, resultType));
     }
 
     public void registerNumber(String name, String sign, Function<Double, Object> function) {
-        UNARY_OPERATORS.put(sign, new UnaryOperator(name, sign, (a) -> {
+        registerNumber(name, sign, Object.class, function);
+    }
+
+    public void registerNumber(String name, String sign, Class<?> resultType, Function<Double, Object> function) {
+        var operator = new UnaryOperator(name, sign, (a) -> {
             if (a instanceof Number number) {
                 return function.apply(number.doubleValue());
             }
 
             throw new WorkflowError("Invalid argument for unary operator: " + name + " a: " + a);
-        }));
+        }, null, Number.class, resultType);
+
+        operator.setNumberFunction(function);
+        UNARY_OPERATORS.put(sign, operator);
     }
 
-    private Queue<String> toExpressionQueue(String expr) {
-        Stack<String> ops = new Stack<>();
-        Queue<String> output = new LinkedList<>();
+    public void registerDouble(String name, String sign, DoubleUnaryOperator function) {
+        UNARY_OPERATORS.put(sign, new UnaryOperator(name, sign, (a) -> {
+            if (a instanceof Number number) {
+                return function.applyAsDouble(number.doubleValue());
+            }
+
+            throw new WorkflowError("Invalid argument for unary operator: " + name + " a: " + a);
+        }, function));
+    }
+
+    public Expression compile(String expr) {
+        if (expr == null || expr.trim().isEmpty()) {
+            throw new WorkflowError("Empty expression");
+        }
+
+        Deque<String> ops = new ArrayDeque<>();
+        List<Expression.Token> output = new ArrayList<>();
 
         Matcher matcher = TOKEN_PATTERN.matcher(expr);
 
@@ -140,234 +226,197 @@ public class ExpressionParser {
 
             if (UNARY_OPERATORS.containsKey(token)) {
                 ops.push(token);
-                Log.debug("Push unary operator: " + token);
             } else if (BINARY_OPERATORS.containsKey(token)) {
                 while (!ops.isEmpty() && PRECEDENCE.getOrDefault(ops.peek(), 0) >= PRECEDENCE.get(token)) {
-                    output.add(ops.pop());
+                    output.add(toOperatorToken(ops.pop(), expr));
                 }
                 ops.push(token);
-                Log.debug("Push binary operator: " + token);
             } else if ("(".equals(token)) {
                 ops.push(token);
             } else if (")".equals(token)) {
-                while (!"(".equals(ops.peek())) {
-                    output.add(ops.pop());
+                while (!ops.isEmpty() && !"(".equals(ops.peek())) {
+                    output.add(toOperatorToken(ops.pop(), expr));
                 }
+
+                if (ops.isEmpty()) {
+                    throw new WorkflowError("Mismatched parenthesis, expression: " + expr);
+                }
+
                 ops.pop();
                 if (!ops.isEmpty() && UNARY_OPERATORS.containsKey(ops.peek())) {
-                    output.add(ops.pop());
+                    output.add(toOperatorToken(ops.pop(), expr));
                 }
             } else {
-                Log.debug("Push token: " + token);
-                output.add(token);
+                output.add(toOperandToken(token));
             }
         }
 
         while (!ops.isEmpty()) {
-            var value = ops.pop();
-            output.add(value);
-            Log.debug("Push rest token: " + value);
+            output.add(toOperatorToken(ops.pop(), expr));
         }
 
-        return output;
-    }
-
-    public Boolean evaluateAsBoolean(String expr, Map<String, Object> variables) {
-        var result = evaluate(expr, variables);
+        int depth = 0;
+        int maxDepth = 0;
+
+        for (var token : output) {
+            switch (token.kind) {
+                case CONSTANT:
+                case VARIABLE:
+                    depth++;
+                    break;
+                case BINARY:
+                    if (depth < 2) {
+                        throw new WorkflowError("Missing operand for binary operator: " + token.binary.getSign()
+                                + ", expression: " + expr);
+                    }
+                    depth--;
+                    break;
+                case UNARY:
+                    if (depth < 1) {
+                        throw new WorkflowError("Missing operand for unary operator: " + token.unary.getSign()
+                                + ", expression: " + expr);
+                    }
+                    break;
+            }
 
-        if (result instanceof Boolean) {
-            return (Boolean) result;
+            maxDepth = Math.max(maxDepth, depth);
         }
 
-        if (result instanceof String) {
-            return Boolean.parseBoolean(result.toString());
+        if (depth != 1) {
+            throw new WorkflowError("Invalid expression: " + expr);
         }
 
-        throw new WorkflowError("Invalid boolean value: " + result.toString());
-    }
+        Log.debug("Compiled expression: " + expr + " into " + output.size() + " tokens");
 
-    public Double evaluateAsDouble(String expr, Map<String, Object> variables) {
-        return evaluate(Double.class, expr, variables);
+        return new Expression(expr, output.toArray(new Expression.Token[0]), maxDepth, compileThreshold);
     }
 
-    public Object evaluate(String expr, Map<String, Object> variables) {
-        return evaluate(Object.class, expr, variables);
-    }
+    private Expression.Token toOperatorToken(String token, String expr) {
+        if ("(".equals(token)) {
+            throw new WorkflowError("Mismatched parenthesis, expression: " + expr);
+        }
 
-    public <T> T evaluate(Class<T> type, String expr, Map<String, Object> variables) {
-        Map<String, Object> vars = new HashMap<>();
-        Queue<String> rpn = toExpressionQueue(expr);
-        Stack<Object> stack = new Stack<>();
+        var unary = UNARY_OPERATORS.get(token);
 
-        if (rpn.isEmpty()) {
-            throw new WorkflowError("Empty stack, expression: " + expr);
+        if (unary != null) {
+            return Expression.Token.unary(unary);
         }
 
-        for (String token : rpn) {
-            token = token.trim();
-
-            if (BINARY_OPERATORS.containsKey(token)) {
-                Double b = (Double) stack.pop();
-                Double a = (Double) stack.pop();
-                var operation = BINARY_OPERATORS.get(token);
-                try {
-                    var result = operation.getFunction().apply(a, b);
-                    stack.push(result);
-                    Log.debug(a + " " + operation.getSign() + " " + b + " = " + result);
-                } catch (Exception e) {
-                    throw new WorkflowError("Invalid unary operation: " + a + " " + operation.getSign() + " " + b, e);
-                }
-            } else if (UNARY_OPERATORS.containsKey(token)) {
-                Double a = (Double) stack.pop();
-                var operation = UNARY_OPERATORS.get(token);
-                try {
-                    var result = operation.getFunction().apply(a);
-                    stack.push(result);
-                    Log.debug(operation.getSign() + " " + a + " = " + result);
-                } catch (Exception e) {
-                    throw new WorkflowError("Invalid unary operation: " + operation.getSign() + " " + a, e);
-                }
-            } else if (vars.containsKey(token)) {
-                stack.push(vars.get(token));
-                Log.debug("Add variable: " + token);
-            } else if ("true".equalsIgnoreCase(token) || "false".equalsIgnoreCase(token)) {
-                stack.push(Boolean.parseBoolean(token));
-            } else if (token.equals("null")) {
-                stack.push(null);
-                Log.debug("Add null");
-            } else if (WorkflowNode.VARIABLE_PATTERN.matcher(token).matches()) {
-                var variableName = token.replace("{{", "").replace("}}", "").trim();
-                var variable = consume(variableName, variables);
-                if (variable instanceof Number number) {
-                    stack.push(number.doubleValue());
-                } else {
-                    stack.push(variable);
-                }
-                Log.debug("Add variable: " + variableName);
-            } else {
-                try {
-                    stack.push(Double.parseDouble(token));
-                    Log.debug("Add number: " + token);
-                } catch (Exception e) {
-                    throw new WorkflowError("Invalid token: <" + token + ">", e);
-                }
-            }
+        return Expression.Token.binary(BINARY_OPERATORS.get(token));
+    }
+
+    private Expression.Token toOperandToken(String token) {
+        if ("true".equalsIgnoreCase(token) || "false".equalsIgnoreCase(token)) {
+            return Expression.Token.constant(Boolean.parseBoolean(token));
         }
-        var result = stack.pop();
 
-        if (result == null) {
-            throw new WorkflowError("Null result of expression: " + expr);
+        if (token.equals("null")) {
+            return Expression.Token.constant(null);
+        }
+
+        if (WorkflowNode.VARIABLE_PATTERN.matcher(token).matches()) {
+            return Expression.Token.variable(compilePath(token.replace("{{", "").replace("}}", "").trim()));
         }
 
         try {
-            return type.cast(result);
-        } catch (ClassCastException e) {
-            throw new WorkflowError("Invalid result type of expression: " + expr + ", result type: "
-                    + result.getClass().getSimpleName() + ", expected type: " + type.getSimpleName(), e);
+            return Expression.Token.constant(Double.parseDouble(token));
+        } catch (Exception e) {
+            throw new WorkflowError("Invalid token: <" + token + ">", e);
         }
     }
 
-    public static <T> T access(Object value, String path) {
-        if (value == null) {
-            Log.debug("Trying to access null value: " + path);
-            return null;
-        }
+    public Template compileTemplate(String value) {
+        var matcher = WorkflowNode.VARIABLE_PATTERN.matcher(value);
 
-        var fields = path.trim().split("\\.");
+        List<String> literals = new ArrayList<>();
+        List<PathAccessor> paths = new ArrayList<>();
 
-        if (fields.length == 0) {
-            return (T) value;
-        }
+        int lastEnd = 0;
 
-        Log.debug("Fields: " + Arrays.toString(fields));
-
-        Object result = value;
-
-        for (int index = 0; index < fields.length; index++) {
-            try {
-                Log.debug("Trying to access field: " + fields[index] + " of " + path + " on value " + result);
-                result = result.getClass().getDeclaredField(fields[index]).get(result);
-            } catch (IllegalAccessException e) {
-                throw new WorkflowError("Can not access field: " + fields[index] + " of " + path + " on value "
-                        + result, e);
-            } catch (NoSuchFieldException e) {
-                throw new WorkflowError(
-                        "Field not found: " + fields[index] + " of " + path + " on value " + result, e);
-            } catch (SecurityException e) {
-                throw new WorkflowError(
-                        "Can not access field: " + fields[index] + " of " + path + " on value " + result, e);
-            }
+        while (matcher.find()) {
+            literals.add(value.substring(lastEnd, matcher.start()));
+            paths.add(compilePath(matcher.group(1)));
+            lastEnd = matcher.end();
         }
-        return (T) result;
+
+        literals.add(value.substring(lastEnd));
+
+        return new Template(value, literals.toArray(new String[0]), paths.toArray(new PathAccessor[0]));
     }
 
-    public <T> T consume(String path, Map<String, Object> variables) {
-        if (path == null) {
-            Log.debug("Trying to access null path");
+    public Expression getCompiled(String expr) {
+        return compiled.get(expr, this::compile);
+    }
+
+    public Boolean evaluateAsBoolean(String expr, Map<String, Object> variables) {
+        return getCompiled(expr).evaluateAsBoolean(variables);
+    }
+
+    public Double evaluateAsDouble(String expr, Map<String, Object> variables) {
+        return getCompiled(expr).evaluateAsDouble(variables);
+    }
+
+    public Object evaluate(String expr, Map<String, Object> variables) {
+        return evaluate(Object.class, expr, variables);
+    }
+
+    public <T> T evaluate(Class<T> type, String expr, Map<String, Object> variables) {
+        return getCompiled(expr).evaluate(type, variables);
+    }
+
+    public static <T> T access(Object value, String path) {
+        if (value == null) {
+            Log.debug("Trying to access null value: " + path);
             return null;
         }
 
-        if (path.trim().isEmpty()) {
+        return (T) compileFields(path).readFrom(value);
+    }
+
+    /** Accessor for a path of plain fields, applied to a value with {@link PathAccessor#readFrom}. */
+    public static PathAccessor compileFields(String path) {
+        return FIELD_ACCESSORS.computeIfAbsent(path, key -> PathAccessor.ofFields(key, key.trim().split("\\.")));
+    }
+
+    public PathAccessor compilePath(String path) {
+        if (path == null || path.trim().isEmpty()) {
             throw new WorkflowError("Trying to access empty path");
         }
 
-        var fields = path.trim().split("\\.");
+        var accessor = accessors.getIfPresent(path);
 
-        Object result = null;
-        var startIndex = 1;
+        if (accessor != null) {
+            return accessor;
+        }
 
-        if (Character.isUpperCase(fields[0].charAt(0))) {
-            var clazz = CLASSES.get(fields[0].trim());
+        var fields = path.trim().split("\\.");
+        var first = fields[0].trim();
 
-            Log.debug("Trying to access class: " + fields[0]);
+        if (Character.isUpperCase(first.charAt(0))) {
+            var clazz = CLASSES.get(first);
 
             if (clazz == null) {
-                throw new WorkflowError("Class not registered: " + fields[0]);
-            }
-
-            if (fields.length == 1) {
-                return (T) clazz;
-            }
-
-            try {
-                Log.debug("Trying to access field: " + fields[1] + " of class " + clazz.getName());
-                result = clazz.getField(fields[1]).get(null);
-                startIndex = 2;
-            } catch (IllegalArgumentException e) {
-                throw new WorkflowError("Invalid class: " + path + " " + e.getMessage(), e);
-            } catch (IllegalAccessException e) {
-                throw new WorkflowError("Can not access field: " + fields[0] + " of " + path + " on value "
-                        + result, e);
-            } catch (NoSuchFieldException e) {
-                throw new WorkflowError("Field not found: " + fields[0] + " of " + path + " on value " + result, e);
-            } catch (SecurityException e) {
-                throw new WorkflowError("Can not access field: " + fields[0] + " of " + path + " on value " + result,
-                        e);
+                throw new WorkflowError("Class not registered: " + first);
             }
 
+            accessor = fields.length == 1
+                    ? PathAccessor.ofClass(path, clazz, null, new String[0])
+                    : PathAccessor.ofClass(path, clazz, fields[1], Arrays.copyOfRange(fields, 2, fields.length));
         } else {
-            Log.debug("Trying to access variable: " + fields[0]);
-            result = variables.get(fields[0]);
+            accessor = PathAccessor.ofVariable(path, first, Arrays.copyOfRange(fields, 1, fields.length));
         }
 
-        if (fields.length == 1) {
-            return (T) result;
-        }
+        accessors.put(path, accessor);
 
-        for (int index = startIndex; index < fields.length; index++) {
-            try {
-                Log.debug("Trying to access field: " + fields[index] + " of " + path + " on value " + result);
-                result = result.getClass().getDeclaredField(fields[index]).get(result);
-            } catch (IllegalArgumentException //
-                    | IllegalAccessException //
-                    | NoSuchFieldException
-                    | SecurityException e//
-            ) {
-                throw new IllegalStateException(
-                        "Field not found: " + fields[index] + " of " + path + " on value " + result, e);
-            }
+        return accessor;
+    }
+
+    public <T> T consume(String path, Map<String, Object> variables) {
+        if (path == null) {
+            Log.debug("Trying to access null path");
+            return null;
         }
 
-        return (T) result;
+        return (T) compilePath(path).read(variables);
     }
 }
@@ -0,0 +1,305 @@
+package mindustrytool.workflow.expressions;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import mindustrytool.workflow.errors.WorkflowError;
+
+/**
+ * Compiled {@code a.b.c} path. Field getters are resolved to method handles
+ * once per receiver class and kept in a small per-segment inline cache, with a
+ * shared (class, field) table behind it for megamorphic call sites. A
+ * {@link PathSource} resolves its fields itself, through the same caches.
+ */
+public final class PathAccessor {
+    private static final int MAX_INLINE_ENTRIES = 4;
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodHandle SOURCE_FIELD;
+
+    static {
+        try {
+            SOURCE_FIELD = MethodHandles.publicLookup().findVirtual(PathSource.class, "field",
+                    MethodType.methodType(Object.class, String.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static final ClassValue<ConcurrentHashMap<String, MethodHandle>> GETTERS = //
+            new ClassValue<ConcurrentHashMap<String, MethodHandle>>() {
+                @Override
+                protected ConcurrentHashMap<String, MethodHandle> computeValue(Class<?> type) {
+                    return new ConcurrentHashMap<>();
+                }
+            };
+
+    private final String path;
+    private final String variable;
+    private final Class<?> rootClass;
+    private final MethodHandle staticGetter;
+    private final Class<?> staticType;
+    private final Segment[] segments;
+
+    private PathAccessor(String path, String variable, Class<?> rootClass, MethodHandle staticGetter,
+            Class<?> staticType, String[] names) {
+        this.path = path;
+        this.variable = variable;
+        this.rootClass = rootClass;
+        this.staticGetter = staticGetter;
+        this.staticType = staticType;
+        this.segments = new Segment[names.length];
+
+        for (int i = 0; i < names.length; i++) {
+            segments[i] = new Segment(names[i]);
+        }
+    }
+
+    /** Path starting at a named variable, e.g. {@code event.player.name}. */
+    static PathAccessor ofVariable(String path, String variable, String[] fields) {
+        return new PathAccessor(path, variable, null, null, null, fields);
+    }
+
+    /** Path starting at a registered class, e.g. {@code Vars.state.wave}. */
+    static PathAccessor ofClass(String path, Class<?> clazz, String staticField, String[] fields) {
+        if (staticField == null) {
+            return new PathAccessor(path, null, clazz, null, null, fields);
+        }
+
+        Field field;
+
+        try {
+            field = clazz.getField(staticField);
+        } catch (NoSuchFieldException e) {
+            throw new WorkflowError(
+                    "Field not found: " + staticField + " of " + path + " on class " + clazz.getName(), e);
+        } catch (SecurityException e) {
+            throw new WorkflowError("Can not access field: " + staticField + " of " + path, e);
+        }
+
+        if (!Modifier.isStatic(field.getModifiers())) {
+            throw new WorkflowError("Field is not static: " + staticField + " of " + path);
+        }
+
+        return new PathAccessor(path, null, clazz, toGetter(field, path), field.getType(), fields);
+    }
+
+    /** Path applied directly to a value, without a variable or class root. */
+    static PathAccessor ofFields(String path, String[] fields) {
+        return new PathAccessor(path, null, null, null, null, fields);
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /** Root variable name, or null when the path starts at a class. */
+    public String getVariable() {
+        return variable;
+    }
+
+    public Object read(Map<String, Object> variables) {
+        Object root;
+
+        if (variable != null) {
+            root = variables.get(variable);
+        } else if (staticGetter != null) {
+            root = invoke(staticGetter, null, "static field of " + rootClass.getSimpleName());
+        } else {
+            root = rootClass;
+        }
+
+        return readFrom(root);
+    }
+
+    /**
+     * Declared type of the value this path reads, following field types from
+     * the root. Object when a step can only be known at runtime.
+     */
+    public Class<?> inferType(Function<String, Class<?>> variableTypes) {
+        Class<?> type;
+
+        if (variable != null) {
+            type = variableTypes.apply(variable);
+        } else if (staticType != null) {
+            type = staticType;
+        } else if (rootClass != null) {
+            type = Class.class;
+        } else {
+            type = Object.class;
+        }
+
+        for (var segment : segments) {
+            if (type == null || type == Object.class) {
+                return Object.class;
+            }
+
+            if (type.isPrimitive()) {
+                throw new WorkflowError("Trying to access field: " + segment.name + " of " + path
+                        + " on primitive type " + type.getName());
+            }
+
+            var field = lookupField(type, segment.name);
+
+            if (field == null) {
+                // A subclass may still declare it, only final types are conclusive
+                if (Modifier.isFinal(type.getModifiers())) {
+                    throw new WorkflowError(
+                            "Field not found: " + segment.name + " of " + path + " on type " + type.getName());
+                }
+
+                return Object.class;
+            }
+
+            type = field.getType();
+        }
+
+        return type == null ? Object.class : type;
+    }
+
+    /** Applies the field segments to an already resolved root value. */
+    public Object readFrom(Object root) {
+        Object result = root;
+
+        for (var segment : segments) {
+            if (result == null) {
+                throw new WorkflowError("Trying to access field: " + segment.name + " of " + path + " on null value");
+            }
+
+            result = invoke(segment.getter(result.getClass(), path), result, segment.name);
+        }
+
+        return result;
+    }
+
+    private Object invoke(MethodHandle getter, Object receiver, String name) {
+        try {
+            return (Object) getter.invokeExact(receiver);
+        } catch (WorkflowError e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new WorkflowError("Can not access field: " + name + " of " + path + " on value " + receiver, e);
+        }
+    }
+
+    private static MethodHandle resolve(Class<?> type, String name, String path) {
+        if (PathSource.class.isAssignableFrom(type)) {
+            return GETTERS.get(type).computeIfAbsent(name,
+                    key -> MethodHandles.insertArguments(SOURCE_FIELD, 1, key).asType(GETTER_TYPE));
+        }
+
+        return GETTERS.get(type).computeIfAbsent(name, key -> toGetter(findField(type, key, path), path));
+    }
+
+    private static Field findField(Class<?> type, String name, String path) {
+        var field = lookupField(type, name);
+
+        if (field == null) {
+            throw new WorkflowError("Field not found: " + name + " of " + path + " on type " + type.getName());
+        }
+
+        return field;
+    }
+
+    private static Field lookupField(Class<?> type, String name) {
+        try {
+            return type.getField(name);
+        } catch (NoSuchFieldException e) {
+            // Not public, look through the declared fields of the hierarchy
+        }
+
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            try {
+                return current.getDeclaredField(name);
+            } catch (NoSuchFieldException e) {
+                // Keep walking up
+            }
+        }
+
+        return null;
+    }
+
+    private static MethodHandle toGetter(Field field, String path) {
+        try {
+            try {
+                field.setAccessible(true);
+            } catch (RuntimeException e) {
+                // Public members of public classes are readable without it
+            }
+
+            MethodHandle getter = MethodHandles.lookup().unreflectGetter(field);
+
+            if (Modifier.isStatic(field.getModifiers())) {
+                getter = MethodHandles.dropArguments(getter, 0, Object.class);
+            }
+
+            return getter.asType(GETTER_TYPE);
+        } catch (IllegalAccessException e) {
+            throw new WorkflowError("Can not access field: " + field.getName() + " of " + path, e);
+        }
+    }
+
+    private static final class Segment {
+        private final String name;
+        private volatile InlineCache cache = InlineCache.EMPTY;
+
+        private Segment(String name) {
+            this.name = name;
+        }
+
+        private MethodHandle getter(Class<?> type, String path) {
+            var current = cache;
+            var classes = current.classes;
+
+            for (int i = 0; i < classes.length; i++) {
+                if (classes[i] == type) {
+                    return current.getters[i];
+                }
+            }
+
+            var getter = resolve(type, name, path);
+
+            if (classes.length < MAX_INLINE_ENTRIES) {
+                cache = current.with(type, getter);
+            }
+
+            return getter;
+        }
+    }
+
+    private static final class InlineCache {
+        private static final InlineCache EMPTY = new InlineCache(new Class<?>[0], new MethodHandle[0]);
+
+        private final Class<?>[] classes;
+        private final MethodHandle[] getters;
+
+        private InlineCache(Class<?>[] classes, MethodHandle[] getters) {
+            this.classes = classes;
+            this.getters = getters;
+        }
+
+        private InlineCache with(Class<?> type, MethodHandle getter) {
+            int length = classes.length;
+            var newClasses = new Class<?>[length + 1];
+            var newGetters = new MethodHandle[length + 1];
+
+            System.arraycopy(classes, 0, newClasses, 0, length);
+            System.arraycopy(getters, 0, newGetters, 0, length);
+
+            newClasses[length] = type;
+            newGetters[length] = getter;
+
+            return new InlineCache(newClasses, newGetters);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+}
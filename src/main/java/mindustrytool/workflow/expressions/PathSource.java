@@ -0,0 +1,10 @@
+package mindustrytool.workflow.expressions;
+
+/**
+ * Value that resolves its own fields instead of having them read through
+ * reflection, such as an event restored from a recording.
+ */
+public interface PathSource {
+    /** Value of the named field, throws when the field is unknown. */
+    Object field(String name);
+}
@@ -0,0 +1,73 @@
+package mindustrytool.workflow.expressions;
+
+import java.util.Map;
+
+/**
+ * Pre-parsed string with {@code {{path}}} placeholders. Literal chunks and
+ * compiled accessors alternate, so rendering is a single pass.
+ */
+public final class Template {
+    private static final int MAX_REUSED_CAPACITY = 4096;
+
+    private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(StringBuilder::new);
+
+    private final String source;
+
+    // literals.length == accessors.length + 1, literal i comes before accessor i
+    private final String[] literals;
+    private final PathAccessor[] accessors;
+    private final int estimatedLength;
+
+    Template(String source, String[] literals, PathAccessor[] accessors) {
+        this.source = source;
+        this.literals = literals;
+        this.accessors = accessors;
+
+        int literalLength = 0;
+        for (var literal : literals) {
+            literalLength += literal.length();
+        }
+
+        this.estimatedLength = literalLength + accessors.length * 16;
+    }
+
+    public boolean isConstant() {
+        return accessors.length == 0;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String render(Map<String, Object> variables) {
+        if (accessors.length == 0) {
+            return source;
+        }
+
+        var builder = BUILDER.get();
+
+        if (builder.capacity() > MAX_REUSED_CAPACITY) {
+            builder = new StringBuilder(estimatedLength);
+            BUILDER.set(builder);
+        }
+
+        builder.setLength(0);
+        builder.ensureCapacity(estimatedLength);
+
+        for (int i = 0; i < accessors.length; i++) {
+            builder.append(literals[i]);
+
+            Object value = accessors[i].read(variables);
+            builder.append(value == null ? "null" : value.toString());
+        }
+
+        builder.append(literals[accessors.length]);
+
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
@@ -1,5 +1,6 @@
 package mindustrytool.workflow.expressions;
 
+import java.util.function.DoubleUnaryOperator;
 import java.util.function.Function;
 
 import lombok.Data;
@@ -11,4 +12,21 @@ public class UnaryOperator {
     private final String name;
     private final String sign;
     private final Function<Object, Object> function;
+    private final DoubleUnaryOperator numeric;
+
+    // Static types used by load-time validation, Object when unknown
+    private final Class<?> operandType;
+    private final Class<?> resultType;
+
+    // Set for operators registered over numbers, lets compiled expressions skip the boxed checks
+    private Function<Double, Object> numberFunction;
+
+    public UnaryOperator(String name, String sign, Function<Object, Object> function) {
+        this(name, sign, function, null, Object.class, Object.class);
+    }
+
+    public UnaryOperator(String name, String sign, Function<Object, Object> function, DoubleUnaryOperator numeric) {
+        this(name, sign, function, numeric, numeric == null ? Object.class : Number.class,
+                numeric == null ? Object.class : Double.class);
+    }
 }
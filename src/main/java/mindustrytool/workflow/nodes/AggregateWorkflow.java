@@ -0,0 +1,259 @@
+package mindustrytool.workflow.nodes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import mindustrytool.workflow.Workflow;
+import mindustrytool.workflow.WorkflowEmitEvent;
+import mindustrytool.workflow.WorkflowGroup;
+import mindustrytool.workflow.WorkflowTimer;
+import mindustrytool.workflow.WorkflowUnit;
+
+/**
+ * Aggregates a value over time windows, optionally per group, and starts one
+ * run per group every time a window closes. A sliding window is kept as panes
+ * of one slide each, a tumbling window is a single pane.
+ */
+public class AggregateWorkflow extends WorkflowNode {
+    private static final int MAX_KEYS = 4096;
+    // Every pane costs each group its own slots, long windows get coarser slides instead
+    private static final int MAX_PANES = 16;
+
+    // Slots per entry: events in all panes, then the panes. The entry object is the group name
+    private static final int TOTAL = 0;
+    private static final int HEADER = 1;
+
+    // Slots per pane: count, sum, min, max as double bits
+    private static final int COUNT = 0;
+    private static final int SUM = 1;
+    private static final int MIN = 2;
+    private static final int MAX = 3;
+    private static final int PANE_STRIDE = 4;
+
+    private enum AggregateFunction {
+        COUNT, SUM, MIN, MAX, AVG
+    }
+
+    private enum WindowType {
+        TUMBLING, SLIDING
+    }
+
+    private final WorkflowField<AggregateFunction, Void> functionField = new WorkflowField<AggregateFunction, Void>(
+            "function")
+            .consume(new FieldConsumer<>(AggregateFunction.class)
+                    .options(AggregateFunction.class)
+                    .defaultValue(AggregateFunction.COUNT));
+
+    private final WorkflowField<WindowType, Void> typeField = new WorkflowField<WindowType, Void>("type")
+            .consume(new FieldConsumer<>(WindowType.class)
+                    .options(WindowType.class)
+                    .defaultValue(WindowType.TUMBLING));
+
+    private final WorkflowField<Long, Void> sizeField = new WorkflowField<Long, Void>("size")
+            .consume(new FieldConsumer<>(Long.class)
+                    .unit(WorkflowUnit.MILLISECOND)
+                    .defaultValue(60_000L));
+
+    private final WorkflowField<Long, Void> slideField = new WorkflowField<Long, Void>("slide")
+            .consume(new FieldConsumer<>(Long.class)
+                    .unit(WorkflowUnit.MILLISECOND)
+                    .defaultValue(10_000L));
+
+    private final WorkflowField<Double, Void> valueField = new WorkflowField<Double, Void>("value")
+            .consume(new FieldConsumer<>(Double.class)
+                    .defaultValue(1.0));
+
+    private final WorkflowField<String, String> groupField = new WorkflowField<String, String>("group")
+            .consume(new FieldConsumer<>(String.class)
+                    .notRequired())
+            .produce(new FieldProducer<>("group", String.class));
+
+    private final WorkflowField<Void, Double> resultField = new WorkflowField<Void, Double>("result")
+            .produce(new FieldProducer<>("result", Double.class));
+
+    private Workflow context;
+    private AggregateFunction function;
+    private int panes;
+    private int pane;
+    private LongStateTable state;
+    private WorkflowTimer.Timeout timeout;
+
+    public AggregateWorkflow() {
+        super("Aggregate", WorkflowGroup.FLOW, 1);
+
+        defaultOneOutput();
+    }
+
+    @Override
+    public boolean isAsync() {
+        return true;
+    }
+
+    @Override
+    public synchronized void init(Workflow context) {
+        long sizeMs = Math.max(1, sizeField.getConsumer().asLong());
+        long slideMs = sizeMs;
+
+        if (typeField.getConsumer().asEnum() == WindowType.SLIDING) {
+            slideMs = Math.max(1, slideField.getConsumer().asLong());
+            // Coarser slides than asked for rather than an unbounded number of panes
+            slideMs = Math.max(slideMs, (sizeMs + MAX_PANES - 1) / MAX_PANES);
+        }
+
+        this.context = context;
+        this.function = functionField.getConsumer().asEnum();
+        this.panes = (int) Math.max(1, Math.min(MAX_PANES, (sizeMs + slideMs - 1) / slideMs));
+        this.pane = 0;
+        this.state = new LongStateTable("Aggregate", HEADER + panes * PANE_STRIDE, MAX_KEYS);
+
+        timeout = context.scheduleAtFixedRate(this::close, slideMs, slideMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void unload(Workflow context) {
+        if (timeout != null) {
+            timeout.cancel();
+            timeout = null;
+        }
+
+        this.context = null;
+        this.state = null;
+    }
+
+    @Override
+    public void execute(WorkflowEmitEvent event) {
+        var group = groupField.getConsumer().asString(event);
+        double value = function == AggregateFunction.COUNT ? 0 : valueField.getConsumer().asDouble(event);
+        long key = group == null ? 0 : LongStateTable.hash(group);
+
+        synchronized (this) {
+            if (context == null) {
+                return;
+            }
+
+            int index = state.find(key);
+
+            if (index < 0) {
+                index = state.slot(key, this::isEmpty);
+
+                if (index < 0) {
+                    return;
+                }
+
+                state.setObject(index, group);
+            }
+
+            state.set(index + TOTAL, state.get(index + TOTAL) + 1);
+            add(index + HEADER + pane * PANE_STRIDE, value);
+        }
+    }
+
+    private void add(int index, double value) {
+        long count = state.get(index + COUNT);
+
+        state.set(index + COUNT, count + 1);
+        state.setDouble(index + SUM, state.getDouble(index + SUM) + value);
+        state.setDouble(index + MIN, count == 0 ? value : Math.min(state.getDouble(index + MIN), value));
+        state.setDouble(index + MAX, count == 0 ? value : Math.max(state.getDouble(index + MAX), value));
+    }
+
+    private boolean isEmpty(int index) {
+        return state.get(index + TOTAL) == 0;
+    }
+
+    // Package private so tests can close windows without waiting for the timer
+    void close() {
+        var names = new ArrayList<String>();
+        var results = new ArrayList<Double>();
+        Workflow current;
+
+        synchronized (this) {
+            current = context;
+
+            if (current == null) {
+                return;
+            }
+
+            state.forEach(index -> {
+                var result = aggregate(index);
+
+                if (result != null) {
+                    names.add((String) state.getObject(index));
+                    results.add(result);
+                }
+            });
+
+            // Without a group the window reports every time, also when nothing came in
+            if (groupField.getConsumer().getValue() == null && state.find(0) < 0
+                    && (function == AggregateFunction.COUNT || function == AggregateFunction.SUM)) {
+                names.add(null);
+                results.add(0.0);
+            }
+
+            pane = (pane + 1) % panes;
+
+            state.forEach(index -> {
+                int offset = index + HEADER + pane * PANE_STRIDE;
+
+                state.set(index + TOTAL, state.get(index + TOTAL) - state.get(offset + COUNT));
+
+                for (int slot = 0; slot < PANE_STRIDE; slot++) {
+                    state.set(offset + slot, 0);
+                }
+            });
+
+            // In place, a slide that empties no group moves nothing
+            state.removeIf(this::isEmpty);
+        }
+
+        emit(current, names, results);
+    }
+
+    private Double aggregate(int index) {
+        long count = 0;
+        double sum = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+
+        for (int p = 0; p < panes; p++) {
+            int offset = index + HEADER + p * PANE_STRIDE;
+            long paneCount = state.get(offset + COUNT);
+
+            if (paneCount == 0) {
+                continue;
+            }
+
+            count += paneCount;
+            sum += state.getDouble(offset + SUM);
+            min = Math.min(min, state.getDouble(offset + MIN));
+            max = Math.max(max, state.getDouble(offset + MAX));
+        }
+
+        if (count == 0) {
+            return null;
+        }
+
+        switch (function) {
+            case COUNT:
+                return (double) count;
+            case SUM:
+                return sum;
+            case MIN:
+                return min;
+            case MAX:
+                return max;
+            default:
+                return sum / count;
+        }
+    }
+
+    private void emit(Workflow current, List<String> names, List<Double> results) {
+        for (int i = 0; i < names.size(); i++) {
+            WorkflowEmitEvent.create(this, current)
+                    .putValue(groupField.getProducer().getVariableName(), names.get(i))
+                    .putValue(resultField.getProducer().getVariableName(), results.get(i))
+                    .next();
+        }
+    }
+}
@@ -23,12 +23,21 @@ public class BinaryOperationWorkflow extends WorkflowNode {
         defaultOneOutput();
     }
 
+    @Override
+    public WorkflowNode newInstance() {
+        return new BinaryOperationWorkflow(operator);
+    }
+
     @Override
     public void execute(WorkflowEmitEvent event) {
-        Double a = aField.getConsumer().asDouble(event);
-        Double b = bField.getConsumer().asDouble(event);
+        double a = aField.getConsumer().asDouble(event);
+        double b = bField.getConsumer().asDouble(event);
+
+        Object result = operator.getNumeric() != null
+                ? operator.getNumeric().applyAsDouble(a, b)
+                : operator.getFunction().apply(a, b);
 
-        event.putValue(resultField.getProducer().getVariableName(), operator.getFunction().apply(a, b));
+        event.putValue(resultField.getProducer().getVariableName(), result);
 
         event.next();
     }
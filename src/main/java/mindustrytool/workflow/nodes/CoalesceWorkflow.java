@@ -0,0 +1,129 @@
+package mindustrytool.workflow.nodes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import mindustrytool.workflow.Workflow;
+import mindustrytool.workflow.WorkflowEmitEvent;
+import mindustrytool.workflow.WorkflowGroup;
+import mindustrytool.workflow.WorkflowUnit;
+
+/**
+ * Collects one value per event for a window and then continues the first
+ * event's run once, with every collected value in a list. Closes the window
+ * early when it reaches the size limit.
+ */
+public class CoalesceWorkflow extends WorkflowNode {
+    private final WorkflowField<Long, Void> windowField = new WorkflowField<Long, Void>("window")
+            .consume(new FieldConsumer<>(Long.class)
+                    .unit(WorkflowUnit.MILLISECOND)
+                    .defaultValue(1000L));
+
+    private final WorkflowField<Long, Void> maxField = new WorkflowField<Long, Void>("max")
+            .consume(new FieldConsumer<>(Long.class)
+                    .defaultValue(1000L));
+
+    private final WorkflowField<Object, Void> valueField = new WorkflowField<Object, Void>("value")
+            .consume(new FieldConsumer<>(Object.class)
+                    .defaultValue("{{event}}"));
+
+    @SuppressWarnings("rawtypes")
+    private final WorkflowField<Void, List> batchField = new WorkflowField<Void, List>("batch")
+            .produce(new FieldProducer<>("batch", List.class));
+
+    private final WorkflowField<Void, Integer> countField = new WorkflowField<Void, Integer>("count")
+            .produce(new FieldProducer<>("count", Integer.class));
+
+    private Workflow context;
+    private long window;
+    private long max;
+
+    private WorkflowEmitEvent first;
+    private List<Object> values = new ArrayList<>();
+    private long generation;
+
+    public CoalesceWorkflow() {
+        super("Coalesce", WorkflowGroup.FLOW, 1);
+
+        defaultOneOutput();
+    }
+
+    @Override
+    public boolean isAsync() {
+        return true;
+    }
+
+    @Override
+    public synchronized void init(Workflow context) {
+        this.context = context;
+        this.window = windowField.getConsumer().asLong();
+        this.max = Math.max(1, maxField.getConsumer().asLong());
+    }
+
+    @Override
+    public synchronized void unload(Workflow context) {
+        this.context = null;
+
+        first = null;
+        values = new ArrayList<>();
+        generation++;
+    }
+
+    @Override
+    public void execute(WorkflowEmitEvent event) {
+        var value = valueField.getConsumer().consume(event);
+        long full = -1;
+
+        synchronized (this) {
+            if (context == null) {
+                return;
+            }
+
+            values.add(value);
+
+            if (first == null) {
+                first = event;
+
+                // A window closed right away continues the run while it is still executing
+                if (values.size() < max) {
+                    event.handOff();
+                }
+
+                long current = generation;
+                context.schedule(() -> flush(current), window, TimeUnit.MILLISECONDS);
+            }
+
+            if (values.size() >= max) {
+                full = generation;
+            }
+        }
+
+        if (full >= 0) {
+            flush(full);
+        }
+    }
+
+    private void flush(long expected) {
+        WorkflowEmitEvent event;
+        List<Object> batch;
+
+        synchronized (this) {
+            // The window was already closed by the size limit or an unload
+            if (expected != generation || first == null) {
+                return;
+            }
+
+            event = first;
+            batch = values;
+
+            first = null;
+            values = new ArrayList<>();
+            generation++;
+        }
+
+        event.putValue(batchField.getProducer().getVariableName(), batch)
+                .putValue(countField.getProducer().getVariableName(), batch.size())
+                .next();
+    }
+}
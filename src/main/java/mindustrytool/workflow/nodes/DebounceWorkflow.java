@@ -0,0 +1,127 @@
+package mindustrytool.workflow.nodes;
+
+import java.util.concurrent.TimeUnit;
+
+import mindustrytool.workflow.Workflow;
+import mindustrytool.workflow.WorkflowEmitEvent;
+import mindustrytool.workflow.WorkflowGroup;
+import mindustrytool.workflow.WorkflowUnit;
+
+/**
+ * Continues only the last event of a burst, once no event with the same key
+ * arrived for the whole delay. One timer per key and burst, later events just
+ * push the deadline. While every tracked key has a burst in flight, events
+ * for new keys are dropped.
+ */
+public class DebounceWorkflow extends WorkflowNode {
+    private static final int MAX_KEYS = 4096;
+
+    // Slots: last event nanos, timer pending, the entry object is the latest event
+    private static final int LAST = 0;
+    private static final int PENDING = 1;
+
+    private final WorkflowField<Long, Void> delayField = new WorkflowField<Long, Void>("delay")
+            .consume(new FieldConsumer<>(Long.class)
+                    .unit(WorkflowUnit.MILLISECOND)
+                    .defaultValue(500L));
+
+    private final WorkflowField<String, Void> keyField = new WorkflowField<String, Void>("key")
+            .consume(new FieldConsumer<>(String.class)
+                    .notRequired());
+
+    private final LongStateTable state = new LongStateTable("Debounce", 2, MAX_KEYS);
+
+    private Workflow context;
+    private long delayNanos;
+
+    public DebounceWorkflow() {
+        super("Debounce", WorkflowGroup.FLOW, 1);
+
+        defaultOneOutput();
+    }
+
+    @Override
+    public boolean isAsync() {
+        return true;
+    }
+
+    @Override
+    public synchronized void init(Workflow context) {
+        this.context = context;
+        this.delayNanos = TimeUnit.MILLISECONDS.toNanos(delayField.getConsumer().asLong());
+    }
+
+    @Override
+    public synchronized void unload(Workflow context) {
+        this.context = null;
+
+        state.clear();
+    }
+
+    @Override
+    public void execute(WorkflowEmitEvent event) {
+        var keyValue = keyField.getConsumer().asString(event);
+        long key = keyValue == null ? 0 : LongStateTable.hash(keyValue);
+        long now = System.nanoTime();
+        WorkflowEmitEvent replaced;
+
+        synchronized (this) {
+            if (context == null) {
+                return;
+            }
+
+            int index = state.slot(key, i -> state.get(i + PENDING) == 0);
+
+            if (index < 0) {
+                return;
+            }
+
+            replaced = (WorkflowEmitEvent) state.getObject(index);
+
+            state.set(index + LAST, now);
+            state.setObject(index, event);
+            event.handOff();
+
+            if (state.get(index + PENDING) == 0) {
+                state.set(index + PENDING, 1);
+                context.schedule(() -> fire(key), delayNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        // Only the latest event of a burst continues, the one it replaced is never resumed
+        if (replaced != null) {
+            replaced.end();
+        }
+    }
+
+    private void fire(long key) {
+        WorkflowEmitEvent event;
+
+        synchronized (this) {
+            if (context == null) {
+                return;
+            }
+
+            int index = state.find(key);
+
+            if (index < 0) {
+                return;
+            }
+
+            long remaining = state.get(index + LAST) + delayNanos - System.nanoTime();
+
+            if (remaining > 0) {
+                context.schedule(() -> fire(key), remaining, TimeUnit.NANOSECONDS);
+                return;
+            }
+
+            state.set(index + PENDING, 0);
+            event = (WorkflowEmitEvent) state.getObject(index);
+            state.setObject(index, null);
+        }
+
+        if (event != null) {
+            event.next();
+        }
+    }
+}
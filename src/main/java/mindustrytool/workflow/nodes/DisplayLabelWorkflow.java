@@ -37,14 +37,16 @@ public class DisplayLabelWorkflow extends WorkflowNode {
     public void execute(WorkflowEmitEvent event) {
         Player player = playerField.getConsumer().consume(event);
         String message = messageField.getConsumer().asString(event);
-        Float x = xField.getConsumer().asFloat(event);
-        Float y = yField.getConsumer().asFloat(event);
-        Float duration = durationField.getConsumer().asFloat(event);
-
-        if (player == null) {
-            Call.label(message, duration, x, y);
-        } else {
-            Call.label(player.con, message, duration, x, y);
-        }
+        float x = xField.getConsumer().asFloat(event);
+        float y = yField.getConsumer().asFloat(event);
+        float duration = durationField.getConsumer().asFloat(event);
+
+        event.getContext().apply(() -> {
+            if (player == null) {
+                Call.label(message, duration, x, y);
+            } else {
+                Call.label(player.con, message, duration, x, y);
+            }
+        });
     }
 }
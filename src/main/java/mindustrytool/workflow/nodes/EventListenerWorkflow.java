@@ -1,8 +1,14 @@
 package mindustrytool.workflow.nodes;
 
+import java.util.HashMap;
+import java.util.function.Predicate;
+
+import arc.func.Cons2;
+import arc.util.Log;
 import mindustry.game.EventType;
 import mindustrytool.workflow.Workflow;
 import mindustrytool.workflow.WorkflowEmitEvent;
+import mindustrytool.workflow.WorkflowEvent;
 import mindustrytool.workflow.WorkflowGroup;
 
 public class EventListenerWorkflow extends WorkflowNode {
@@ -14,6 +20,20 @@ public class EventListenerWorkflow extends WorkflowNode {
             .consume(new FieldConsumer<>(Class.class))
             .produce(new FieldProducer("event", Class.class));
 
+    // Checked against the raw event, before any run state exists
+    private final WorkflowField<Boolean, Void> filterField = new WorkflowField<Boolean, Void>("filter")
+            .consume(new FieldConsumer<>(Boolean.class)
+                    .notRequired());
+
+    @SuppressWarnings("rawtypes")
+    private Class eventClass;
+
+    @SuppressWarnings("rawtypes")
+    private Cons2 listener;
+
+    // A failing filter usually fails for every event, only the first failure per load is logged
+    private volatile boolean filterFailed;
+
     {
         preInit();
     }
@@ -32,14 +52,56 @@ public class EventListenerWorkflow extends WorkflowNode {
 
     @Override
     public void init(Workflow context) {
-        Class<?> eventClass = classField.getConsumer().asClass();
+        eventClass = classField.getConsumer().asClass();
+        filterFailed = false;
 
-        context.on(eventClass, (event, before) -> {
-            if (before == this.beforeField.getConsumer().asBoolean()) {
-                WorkflowEmitEvent.create(this, context)
-                        .putValue(classField.getProducer().getVariableName(), event)
-                        .next();
+        var variableName = classField.getProducer().getVariableName();
+        var filterValue = filterField.getConsumer().getValue();
+        Predicate<Object> filter = filterValue == null || filterValue.trim().isEmpty()
+                ? null
+                : context.getExpressionParser().compile(filterValue).toFilter(variableName);
+
+        listener = context.on(eventClass, (event, before) -> {
+            if (before != this.beforeField.getConsumer().asBoolean() || !matches(context, filter, event)) {
+                return;
             }
+
+            WorkflowEmitEvent.create(this, context)
+                    .putValue(variableName, event)
+                    .next();
         });
     }
+
+    private boolean matches(Workflow context, Predicate<Object> filter, Object event) {
+        if (filter == null) {
+            return true;
+        }
+
+        try {
+            return filter.test(event);
+        } catch (Exception e) {
+            if (!filterFailed) {
+                filterFailed = true;
+                Log.err("Filter of event listener @ failed, later failures are only sent to the tracer: @", getId(),
+                        e.getMessage());
+            }
+
+            if (context.getTracer().hasConsumers()) {
+                HashMap<String, Object> error = new HashMap<>();
+                error.put("message", e.getMessage());
+                context.sendWorkflowEvent(new WorkflowEvent(getId(), "ERROR", error));
+            }
+
+            return false;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void unload(Workflow context) {
+        if (listener != null) {
+            context.remove(eventClass, listener);
+            listener = null;
+        }
+    }
 }
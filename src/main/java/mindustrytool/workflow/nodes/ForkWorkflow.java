@@ -0,0 +1,106 @@
+package mindustrytool.workflow.nodes;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Map;
+
+import mindustrytool.workflow.WorkflowEmitEvent;
+import mindustrytool.workflow.WorkflowGroup;
+
+/**
+ * Runs every connected branch at the same time on the workflow worker pool.
+ * Branches see the variables set so far, what they set stays in the branch
+ * until a Join hands it back.
+ */
+public class ForkWorkflow extends WorkflowNode {
+    private static final int BRANCHES = 4;
+
+    // Join of this fork for the graph it was looked up in, redone after a load
+    private volatile JoinLookup lookup;
+
+    public ForkWorkflow() {
+        super("Fork", WorkflowGroup.FLOW, 1);
+
+        for (int i = 1; i <= BRANCHES; i++) {
+            new WorkflowOutput("Branch " + i, "Branch " + i);
+        }
+    }
+
+    @Override
+    public void execute(WorkflowEmitEvent event) {
+        var nextIds = new ArrayList<String>(BRANCHES);
+
+        for (var output : outputs) {
+            if (output.getNextId() != null) {
+                nextIds.add(output.getNextId());
+            }
+        }
+
+        var nodes = event.getContext().getNodes();
+        var current = lookup;
+
+        if (current == null || current.nodes != nodes) {
+            current = new JoinLookup(nodes, findJoin(nodes));
+            lookup = current;
+        }
+
+        event.fork(nextIds, current.join);
+    }
+
+    /**
+     * Nearest Join downstream of the branches that is not taken by a nested
+     * Fork, null when the branches never meet again.
+     */
+    private JoinWorkflow findJoin(Map<String, WorkflowNode> nodes) {
+        // Depth counts the nested Forks entered, whose Joins are not ours
+        var ids = new ArrayDeque<String>();
+        var depths = new ArrayDeque<Integer>();
+        var seen = new HashSet<String>();
+
+        for (var output : outputs) {
+            if (output.getNextId() != null) {
+                ids.add(output.getNextId());
+                depths.add(0);
+            }
+        }
+
+        while (!ids.isEmpty()) {
+            var node = nodes.get(ids.poll());
+            int depth = depths.poll();
+
+            if (node == null || depth > nodes.size() || !seen.add(node.getId() + ":" + depth)) {
+                continue;
+            }
+
+            if (node instanceof JoinWorkflow join) {
+                if (depth == 0) {
+                    return join;
+                }
+
+                depth--;
+            } else if (node instanceof ForkWorkflow) {
+                depth++;
+            }
+
+            for (var output : node.getOutputs()) {
+                if (output.getNextId() != null) {
+                    ids.add(output.getNextId());
+                    depths.add(depth);
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private static final class JoinLookup {
+        private final Map<String, WorkflowNode> nodes;
+        private final JoinWorkflow join;
+
+        private JoinLookup(Map<String, WorkflowNode> nodes, JoinWorkflow join) {
+            this.nodes = nodes;
+            this.join = join;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package mindustrytool.workflow.nodes;
+
+import mindustrytool.workflow.WorkflowEmitEvent;
+import mindustrytool.workflow.WorkflowGroup;
+
+public class GetGlobalWorkflow extends WorkflowNode {
+    private final WorkflowField<String, Void> keyField = new WorkflowField<String, Void>("key")
+            .consume(new FieldConsumer<>(String.class)
+                    .defaultValue("counter"));
+
+    private final WorkflowField<Object, Void> defaultField = new WorkflowField<Object, Void>("default")
+            .consume(new FieldConsumer<>(Object.class)
+                    .notRequired());
+
+    private final WorkflowField<Void, Object> valueField = new WorkflowField<Void, Object>("value")
+            .produce(new FieldProducer<>("value", Object.class));
+
+    public GetGlobalWorkflow() {
+        super("GetGlobal", WorkflowGroup.BASE, 1);
+
+        defaultOneOutput();
+    }
+
+    @Override
+    public void execute(WorkflowEmitEvent event) {
+        Object value = event.getContext().getStore().get(keyField.getConsumer().asString(event));
+
+        if (value == null) {
+            value = defaultField.getConsumer().consume(event);
+        }
+
+        event.putValue(valueField.getProducer().getVariableName(), value);
+
+        event.next();
+    }
+}
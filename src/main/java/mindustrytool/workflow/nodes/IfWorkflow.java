@@ -9,7 +9,7 @@ public class IfWorkflow extends WorkflowNode {
     private final WorkflowOutput falseOutput = new WorkflowOutput("False", "False");
 
     private final WorkflowField<String, Void> conditionField = new WorkflowField<String, Void>("condition")
-            .consume(new FieldConsumer<>(String.class));
+            .consume(new FieldConsumer<>(String.class).expression());
 
     public IfWorkflow() {
         super("if", WorkflowGroup.FLOW, 1);
@@ -17,9 +17,7 @@ public class IfWorkflow extends WorkflowNode {
 
     @Override
     public void execute(WorkflowEmitEvent event) {
-        Boolean condition = event.getContext()
-                .getExpressionParser()
-                .evaluateAsBoolean(conditionField.getConsumer().getValue(), event.getVariables());
+        Boolean condition = conditionField.getConsumer().asBoolean(event);
 
         if (condition) {
             event.next(trueOutput.getNextId());
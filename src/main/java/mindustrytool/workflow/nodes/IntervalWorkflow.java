@@ -4,6 +4,7 @@ import mindustrytool.workflow.Workflow;
 import mindustrytool.workflow.WorkflowUnit;
 import mindustrytool.workflow.WorkflowEmitEvent;
 import mindustrytool.workflow.WorkflowGroup;
+import mindustrytool.workflow.WorkflowTimer;
 
 public class IntervalWorkflow extends WorkflowNode {
     private enum IntervalType {
@@ -25,6 +26,8 @@ public class IntervalWorkflow extends WorkflowNode {
                     .options(IntervalType.class)
                     .defaultValue(IntervalType.DELAY));
 
+    private WorkflowTimer.Timeout timeout;
+
     public IntervalWorkflow() {
         super("Interval", WorkflowGroup.EMITTER, 0);
 
@@ -34,13 +37,21 @@ public class IntervalWorkflow extends WorkflowNode {
     @Override
     public void init(Workflow context) {
         if (typeField.getConsumer().asEnum() == IntervalType.FIXED_RATE) {
-            context.scheduleAtFixedRate(() -> {
+            timeout = context.scheduleAtFixedRate(() -> {
                 WorkflowEmitEvent.create(this, context).next();
             }, delayField.getConsumer().asLong(), intervalField.getConsumer().asLong());
         } else {
-            context.scheduleWithFixedDelay(() -> {
+            timeout = context.scheduleWithFixedDelay(() -> {
                 WorkflowEmitEvent.create(this, context).next();
             }, delayField.getConsumer().asLong(), intervalField.getConsumer().asLong());
         }
     }
+
+    @Override
+    public void unload(Workflow context) {
+        if (timeout != null) {
+            timeout.cancel();
+            timeout = null;
+        }
+    }
 }
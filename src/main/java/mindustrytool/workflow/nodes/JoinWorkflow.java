@@ -0,0 +1,77 @@
+package mindustrytool.workflow.nodes;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import mindustrytool.workflow.WorkflowEmitEvent;
+import mindustrytool.workflow.WorkflowGroup;
+import mindustrytool.workflow.WorkflowUnit;
+
+/**
+ * Waits for the branches of the enclosing Fork and continues the forking run
+ * once, with the variables the branches set. A branch that ends without
+ * reaching a Join stops being waited for but hands back nothing. The Join
+ * nearest to the Fork decides the mode and the timeout, which runs from the
+ * fork.
+ */
+public class JoinWorkflow extends WorkflowNode {
+    private enum JoinMode {
+        ALL, ANY
+    }
+
+    private final WorkflowOutput nextOutput = new WorkflowOutput("Next", "Joined");
+    private final WorkflowOutput timeoutOutput = new WorkflowOutput("Timeout", "Timeout");
+
+    private final WorkflowField<JoinMode, Void> modeField = new WorkflowField<JoinMode, Void>("mode")
+            .consume(new FieldConsumer<>(JoinMode.class)
+                    .options(JoinMode.class)
+                    .defaultValue(JoinMode.ALL));
+
+    private final WorkflowField<Long, Void> timeoutField = new WorkflowField<Long, Void>("timeout")
+            .consume(new FieldConsumer<>(Long.class)
+                    .unit(WorkflowUnit.MILLISECOND)
+                    .defaultValue(5000L));
+
+    private final WorkflowField<Void, Integer> arrivedField = new WorkflowField<Void, Integer>("arrived")
+            .produce(new FieldProducer<>("arrived", Integer.class));
+
+    public JoinWorkflow() {
+        super("Join", WorkflowGroup.FLOW, 1);
+    }
+
+    @Override
+    public boolean isAsync() {
+        return true;
+    }
+
+    /** Whether the first arrival ends the wait instead of every branch. */
+    @JsonIgnore
+    public boolean isAny() {
+        return modeField.getConsumer().asEnum() == JoinMode.ANY;
+    }
+
+    /** How long the fork waits for its branches, 0 waits until every branch ended. */
+    @JsonIgnore
+    public long getTimeoutMs() {
+        return timeoutField.getConsumer().asLong();
+    }
+
+    @JsonIgnore
+    public String getJoinedId() {
+        return nextOutput.getNextId();
+    }
+
+    @JsonIgnore
+    public String getTimeoutId() {
+        return timeoutOutput.getNextId();
+    }
+
+    @JsonIgnore
+    public String getArrivedName() {
+        return arrivedField.getProducer().getVariableName();
+    }
+
+    @Override
+    public void execute(WorkflowEmitEvent event) {
+        event.join(this);
+    }
+}
@@ -0,0 +1,277 @@
+package mindustrytool.workflow.nodes;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+import arc.util.Log;
+
+/**
+ * Open addressing table from a 64-bit key to a fixed number of long slots,
+ * stored flat in one array so per-key node state costs no objects. An entry
+ * can also hold one object, that array only exists once one is set. Not
+ * thread safe, nodes guard it with their own lock.
+ */
+final class LongStateTable {
+    private static final long EMPTY = 0;
+    private static final long ZERO_KEY = 0x9E3779B97F4A7C15L;
+    // A full table with nothing stale is not swept again for one timer tick
+    private static final long SWEEP_INTERVAL = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final String owner;
+    private final int stride;
+    private final int maxSize;
+
+    private long[] keys;
+    private long[] values;
+    private Object[] objects;
+    private int size;
+    // Whether the last insert was rejected, so a full table logs once
+    private boolean full;
+    private long sweptAt;
+
+    LongStateTable(String owner, int stride, int maxSize) {
+        this.owner = owner;
+        this.stride = stride;
+        this.maxSize = maxSize;
+        this.keys = new long[16];
+        this.values = new long[16 * stride];
+    }
+
+    /** Mixes a string into a well spread 64-bit key. */
+    static long hash(String value) {
+        long hash = 1125899906842597L;
+
+        for (int i = 0; i < value.length(); i++) {
+            hash = 31 * hash + value.charAt(i);
+        }
+
+        return mix(hash);
+    }
+
+    static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+
+        return value;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** Index of the first value slot of key, or -1 when absent. */
+    int find(long key) {
+        key = key == EMPTY ? ZERO_KEY : key;
+
+        int mask = keys.length - 1;
+
+        for (int i = (int) key & mask;; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return i * stride;
+            }
+
+            if (keys[i] == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Index of the first value slot of key, inserting zeroed slots when absent.
+     * When the table is full, entries matching {@code stale} are dropped to
+     * make room. Returns -1 when every entry is still live, the key is then
+     * rejected and the entries already tracked keep their state. A sweep that
+     * frees nothing is not repeated for the next 10ms.
+     */
+    int slot(long key, IntPredicate stale) {
+        int index = find(key);
+
+        if (index >= 0) {
+            return index;
+        }
+
+        if (size >= maxSize) {
+            long now = System.nanoTime();
+
+            if (!full || now - sweptAt >= SWEEP_INTERVAL) {
+                sweptAt = now;
+                removeIf(stale);
+            }
+
+            if (size >= maxSize) {
+                if (!full) {
+                    full = true;
+                    Log.warn("@ tracks @ live keys, new keys are rejected until some expire", owner, maxSize);
+                }
+
+                return -1;
+            }
+        }
+
+        full = false;
+
+        if ((size + 1) * 4 > keys.length * 3) {
+            resize(keys.length * 2);
+        }
+
+        key = key == EMPTY ? ZERO_KEY : key;
+
+        int mask = keys.length - 1;
+        int i = (int) key & mask;
+
+        while (keys[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+
+        keys[i] = key;
+        size++;
+
+        return i * stride;
+    }
+
+    long get(int index) {
+        return values[index];
+    }
+
+    void set(int index, long value) {
+        values[index] = value;
+    }
+
+    Object getObject(int index) {
+        return objects == null ? null : objects[index / stride];
+    }
+
+    void setObject(int index, Object value) {
+        if (objects == null) {
+            if (value == null) {
+                return;
+            }
+
+            objects = new Object[keys.length];
+        }
+
+        objects[index / stride] = value;
+    }
+
+    double getDouble(int index) {
+        return Double.longBitsToDouble(values[index]);
+    }
+
+    void setDouble(int index, double value) {
+        values[index] = Double.doubleToRawLongBits(value);
+    }
+
+    /** Key stored at a value index returned by {@link #slot} or {@link #forEach}. */
+    long keyAt(int index) {
+        return keys[index / stride];
+    }
+
+    /** Calls the consumer with the first value index of every entry. */
+    void forEach(IntConsumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                consumer.accept(i * stride);
+            }
+        }
+    }
+
+    /** Removes matching entries in place, nothing is reallocated. */
+    void removeIf(IntPredicate predicate) {
+        int mask = keys.length - 1;
+        int start = 0;
+
+        // Start after an empty slot, entries shifted back by a removal are then still ahead of the scan
+        while (keys[start] != EMPTY) {
+            start = (start + 1) & mask;
+        }
+
+        for (int n = 0; n < keys.length; n++) {
+            int i = (start + n) & mask;
+
+            // A removal can shift the next entry of the run into this slot, test it too
+            while (keys[i] != EMPTY && predicate.test(i * stride)) {
+                remove(i);
+            }
+        }
+    }
+
+    void clear() {
+        Arrays.fill(keys, EMPTY);
+        Arrays.fill(values, 0);
+        objects = null;
+        size = 0;
+        full = false;
+    }
+
+    /** Backward shift deletion, later entries of the probe run move up so lookups never need tombstones. */
+    private void remove(int slot) {
+        int mask = keys.length - 1;
+        int hole = slot;
+
+        for (int i = (hole + 1) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+            int home = (int) keys[i] & mask;
+
+            // The entry may fill the hole unless its home lies after the hole
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                System.arraycopy(values, i * stride, values, hole * stride, stride);
+
+                if (objects != null) {
+                    objects[hole] = objects[i];
+                }
+
+                hole = i;
+            }
+        }
+
+        // New entries expect zeroed slots
+        keys[hole] = EMPTY;
+        Arrays.fill(values, hole * stride, (hole + 1) * stride, 0);
+
+        if (objects != null) {
+            objects[hole] = null;
+        }
+
+        size--;
+    }
+
+    private void resize(int capacity) {
+        var oldKeys = keys;
+        var oldValues = values;
+        var oldObjects = objects;
+
+        keys = new long[capacity];
+        values = new long[capacity * stride];
+        objects = oldObjects == null ? null : new Object[capacity];
+        size = 0;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                insert(oldKeys[i], oldValues, oldObjects, i);
+            }
+        }
+    }
+
+    private void insert(long key, long[] sourceValues, Object[] sourceObjects, int source) {
+        int mask = keys.length - 1;
+        int i = (int) key & mask;
+
+        while (keys[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+
+        keys[i] = key;
+        System.arraycopy(sourceValues, source * stride, values, i * stride, stride);
+
+        if (sourceObjects != null) {
+            objects[i] = sourceObjects[source];
+        }
+
+        size++;
+    }
+}
@@ -24,11 +24,13 @@ public class SendChatWorkflow extends WorkflowNode {
         Player player = playerField.getConsumer().consume(event);
         String message = messageField.getConsumer().asString(event);
 
-        if (player == null) {
-            Call.sendMessage(message);
-        } else {
-            player.sendMessage(message);
-        }
+        event.getContext().apply(() -> {
+            if (player == null) {
+                Call.sendMessage(message);
+            } else {
+                player.sendMessage(message);
+            }
+        });
 
     }
 }
@@ -0,0 +1,40 @@
+package mindustrytool.workflow.nodes;
+
+import mindustrytool.workflow.WorkflowEmitEvent;
+import mindustrytool.workflow.WorkflowGroup;
+
+/**
+ * Writes a global variable that outlives the run and server restarts. Numbers
+ * and booleans are stored as they are, anything else as its string form and
+ * an empty or blank string result removes the key.
+ */
+public class SetGlobalWorkflow extends WorkflowNode {
+    private final WorkflowField<String, Void> keyField = new WorkflowField<String, Void>("key")
+            .consume(new FieldConsumer<>(String.class)
+                    .defaultValue("counter"));
+
+    private final WorkflowField<Object, Void> valueField = new WorkflowField<Object, Void>("value")
+            .consume(new FieldConsumer<>(Object.class)
+                    .defaultValue("0"));
+
+    public SetGlobalWorkflow() {
+        super("SetGlobal", WorkflowGroup.BASE, 1);
+
+        defaultOneOutput();
+    }
+
+    @Override
+    public void execute(WorkflowEmitEvent event) {
+        var key = keyField.getConsumer().asString(event);
+        var value = valueField.getConsumer().consume(event);
+        var store = event.getContext().getStore();
+
+        if (value instanceof String text && text.trim().isEmpty()) {
+            store.remove(key);
+        } else {
+            store.set(key, value);
+        }
+
+        event.next();
+    }
+}
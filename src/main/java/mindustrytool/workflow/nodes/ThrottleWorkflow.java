@@ -0,0 +1,87 @@
+package mindustrytool.workflow.nodes;
+
+import mindustrytool.workflow.Workflow;
+import mindustrytool.workflow.WorkflowEmitEvent;
+import mindustrytool.workflow.WorkflowGroup;
+
+/**
+ * Token bucket per key. Events that find a token continue on Next, the rest
+ * go to Dropped, so an expensive branch sees at most rate events per second
+ * per key plus the burst. The rate is evaluated per event. While every
+ * tracked key is still refilling, events for new keys are dropped.
+ */
+public class ThrottleWorkflow extends WorkflowNode {
+    private static final int MAX_KEYS = 4096;
+
+    // Slots: tokens as double bits, last refill nanos
+    private static final int TOKENS = 0;
+    private static final int LAST = 1;
+
+    private final WorkflowOutput nextOutput = new WorkflowOutput("Next", "Allowed");
+    private final WorkflowOutput droppedOutput = new WorkflowOutput("Dropped", "Dropped");
+
+    private final WorkflowField<Double, Void> rateField = new WorkflowField<Double, Void>("rate")
+            .consume(new FieldConsumer<>(Double.class)
+                    .defaultValue(1.0));
+
+    private final WorkflowField<Long, Void> burstField = new WorkflowField<Long, Void>("burst")
+            .consume(new FieldConsumer<>(Long.class)
+                    .defaultValue(1L));
+
+    private final WorkflowField<String, Void> keyField = new WorkflowField<String, Void>("key")
+            .consume(new FieldConsumer<>(String.class)
+                    .notRequired());
+
+    private final LongStateTable state = new LongStateTable("Throttle", 2, MAX_KEYS);
+
+    private double burst;
+
+    public ThrottleWorkflow() {
+        super("Throttle", WorkflowGroup.FLOW, 1);
+    }
+
+    @Override
+    public synchronized void init(Workflow context) {
+        burst = Math.max(1, burstField.getConsumer().asLong());
+    }
+
+    @Override
+    public synchronized void unload(Workflow context) {
+        state.clear();
+    }
+
+    @Override
+    public void execute(WorkflowEmitEvent event) {
+        var keyValue = keyField.getConsumer().asString(event);
+        long key = keyValue == null ? 0 : LongStateTable.hash(keyValue);
+        double tokensPerNano = Math.max(0, rateField.getConsumer().asDouble(event)) / 1e9;
+
+        event.next(acquire(key, System.nanoTime(), tokensPerNano) ? nextOutput.getNextId() : droppedOutput.getNextId());
+    }
+
+    private synchronized boolean acquire(long key, long now, double tokensPerNano) {
+        int index = state.find(key);
+        double tokens;
+
+        if (index < 0) {
+            // A key untouched this long has a full bucket, forgetting it changes nothing
+            long refillNanos = tokensPerNano == 0 ? Long.MAX_VALUE : (long) Math.ceil(burst / tokensPerNano);
+            index = state.slot(key, i -> now - state.get(i + LAST) >= refillNanos);
+
+            if (index < 0) {
+                return false;
+            }
+
+            tokens = burst;
+        } else {
+            tokens = Math.min(burst, state.getDouble(index + TOKENS) + (now - state.get(index + LAST)) * tokensPerNano);
+        }
+
+        boolean allowed = tokens >= 1;
+
+        state.setDouble(index + TOKENS, allowed ? tokens - 1 : tokens);
+        state.set(index + LAST, now);
+
+        return allowed;
+    }
+}
@@ -20,11 +20,20 @@ public class UnaryOperationWorkflow extends WorkflowNode {
         defaultOneOutput();
     }
 
+    @Override
+    public WorkflowNode newInstance() {
+        return new UnaryOperationWorkflow(operator);
+    }
+
     @Override
     public void execute(WorkflowEmitEvent event) {
-        Double a = aField.getConsumer().asDouble(event);
+        double a = aField.getConsumer().asDouble(event);
+
+        Object result = operator.getNumeric() != null
+                ? operator.getNumeric().applyAsDouble(a)
+                : operator.getFunction().apply(a);
 
-        event.putValue(resultField.getProducer().getVariableName(), operator.getFunction().apply(a));
+        event.putValue(resultField.getProducer().getVariableName(), result);
 
         event.next();
     }
@@ -16,8 +16,14 @@ public class WaitWorkflow extends WorkflowNode {
         defaultOneOutput();
     }
 
+    @Override
+    public boolean isAsync() {
+        return true;
+    }
+
     @Override
     public void execute(WorkflowEmitEvent event) {
+        event.handOff();
         event.getContext().schedule(() -> {
             event.next();
         }, secondField.getConsumer().asLong());
@@ -3,12 +3,13 @@ package mindustrytool.workflow.nodes;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Pattern;
-import java.util.regex.MatchResult;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
@@ -19,6 +20,9 @@ import mindustrytool.workflow.WorkflowEmitEvent;
 import mindustrytool.workflow.WorkflowGroup;
 import mindustrytool.workflow.WorkflowUnit;
 import mindustrytool.workflow.errors.WorkflowError;
+import mindustrytool.workflow.expressions.Expression;
+import mindustrytool.workflow.expressions.ExpressionParser;
+import mindustrytool.workflow.expressions.Template;
 
 @Data
 @Accessors(chain = true)
@@ -39,6 +43,14 @@ public abstract class WorkflowNode {
     protected List<WorkflowField<?, ?>> fields = new ArrayList<>();
     protected List<WorkflowOutput> outputs = new ArrayList<>();
 
+    // First segment of every {{path}} the fields read, collected on first use
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private volatile String[] readRoots;
+
     public void init(Workflow context) {
     }
 
@@ -53,10 +65,92 @@ public abstract class WorkflowNode {
         this.inputs = inputs;
     }
 
+    /** Fresh, unconfigured node of the same type, used when loading a workflow. */
+    public WorkflowNode newInstance() {
+        try {
+            return getClass().getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new WorkflowError("Can not create new node: " + getClass().getSimpleName(), e);
+        }
+    }
+
     public void execute(WorkflowEmitEvent event) {
         event.next(outputs.get(0).getNextId());
     }
 
+    /**
+     * Whether this node hands its continuation to something that runs later
+     * instead of calling next() synchronously, so cycles through it are bounded.
+     */
+    @JsonIgnore
+    public boolean isAsync() {
+        return false;
+    }
+
+    /**
+     * Whether running this node for event has to happen on the game thread
+     * because its fields read game state: {@code @players}, a class such as
+     * Vars, or a variable holding anything other than a plain value, like a
+     * Player from an event. Runs on a worker hop back to the game thread
+     * before such a node.
+     */
+    public boolean needsMainThread(WorkflowEmitEvent event) {
+        var roots = readRoots;
+
+        if (roots == null) {
+            roots = collectReadRoots();
+            readRoots = roots;
+        }
+
+        var classes = event.getContext().getExpressionParser().CLASSES;
+        var variables = event.getVariables();
+
+        for (var root : roots) {
+            if (root.startsWith("@")) {
+                if (root.equals("@players")) {
+                    return true;
+                }
+            } else if (classes.containsKey(root) || !isPlainValue(variables.get(root))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isPlainValue(Object value) {
+        return value == null
+                || value instanceof Number
+                || value instanceof String
+                || value instanceof Boolean
+                || value instanceof Character
+                || value instanceof Enum;
+    }
+
+    private String[] collectReadRoots() {
+        var roots = new ArrayList<String>();
+
+        for (var field : fields) {
+            if (field.getConsumer() == null || field.getConsumer().getValue() == null) {
+                continue;
+            }
+
+            var matcher = VARIABLE_PATTERN.matcher(field.getConsumer().getValue());
+
+            while (matcher.find()) {
+                var path = matcher.group(1).trim();
+                int dot = path.indexOf('.');
+                var root = dot < 0 ? path : path.substring(0, dot);
+
+                if (!roots.contains(root)) {
+                    roots.add(root);
+                }
+            }
+        }
+
+        return roots.toArray(new String[0]);
+    }
+
     public void defaultOneOutput() {
         new WorkflowOutput("Next", "None");
     }
@@ -136,6 +230,61 @@ public abstract class WorkflowNode {
         private T defaultValue;
         private final List<WorkflowFieldOption> options = new ArrayList<>();
 
+        @JsonIgnore
+        private boolean forceExpression;
+
+        @JsonIgnore
+        private Expression compiledExpression;
+
+        @JsonIgnore
+        private Template compiledTemplate;
+
+        // Set once load-time validation proved the value is present and of the right type
+        @JsonIgnore
+        private boolean verified;
+
+        public FieldConsumer<T> setValue(String value) {
+            this.value = value;
+            this.compiledExpression = null;
+            this.compiledTemplate = null;
+            this.verified = false;
+            return this;
+        }
+
+        public FieldConsumer<T> expression() {
+            this.forceExpression = true;
+            return this;
+        }
+
+        @JsonIgnore
+        public boolean isExpression() {
+            return forceExpression || !(type == String.class || type == Class.class || type.isEnum());
+        }
+
+        public void compile(ExpressionParser parser) {
+            compiledExpression = null;
+            compiledTemplate = null;
+            verified = false;
+
+            if (value == null) {
+                return;
+            }
+
+            if (isExpression()) {
+                compiledExpression = parser.compile(value);
+            } else if (type == String.class) {
+                compiledTemplate = parser.compileTemplate(value);
+            }
+        }
+
+        private Expression compiled(WorkflowEmitEvent event) {
+            if (compiledExpression == null) {
+                compiledExpression = event.getContext().getExpressionParser().compile(value);
+            }
+
+            return compiledExpression;
+        }
+
         public FieldConsumer<T> notRequired() {
             this.required = false;
             return this;
@@ -206,7 +355,12 @@ public abstract class WorkflowNode {
             return this;
         }
 
+        @SuppressWarnings("unchecked")
         public T consume(WorkflowEmitEvent event) {
+            if (verified) {
+                return (T) compiledExpression.evaluate(event.getVariables());
+            }
+
             if (value == null && isRequired()) {
                 throw new WorkflowError("Field is required but not set: " + name);
             }
@@ -215,19 +369,23 @@ public abstract class WorkflowNode {
                 return null;
             }
 
-            return event.getContext().getExpressionParser().evaluate(type, value, event.getVariables());
+            return compiled(event).evaluate(type, event.getVariables());
+        }
+
+        public Boolean asBoolean(WorkflowEmitEvent event) {
+            return compiled(event).evaluateAsBoolean(event.getVariables());
         }
 
-        public Double asDouble(WorkflowEmitEvent event) {
-            return event.getContext().getExpressionParser().evaluateAsDouble(value, event.getVariables());
+        public double asDouble(WorkflowEmitEvent event) {
+            return compiled(event).evaluateAsDouble(event.getVariables());
         }
 
-        public Long asLong(WorkflowEmitEvent event) {
-            return event.getContext().getExpressionParser().evaluateAsDouble(value, event.getVariables()).longValue();
+        public long asLong(WorkflowEmitEvent event) {
+            return (long) compiled(event).evaluateAsDouble(event.getVariables());
         }
 
-        public Float asFloat(WorkflowEmitEvent event) {
-            return event.getContext().getExpressionParser().evaluateAsDouble(value, event.getVariables()).floatValue();
+        public float asFloat(WorkflowEmitEvent event) {
+            return (float) compiled(event).evaluateAsDouble(event.getVariables());
         }
 
         public String asString(WorkflowEmitEvent event) {
@@ -235,33 +393,11 @@ public abstract class WorkflowNode {
                 return null;
             }
 
-            var matcher = VARIABLE_PATTERN.matcher(value);
-
-            if (!matcher.find()) {
-                return value;
-            }
-
-            matcher.reset();
-
-            var result = new StringBuilder();
-            int lastEnd = 0;
-            List<MatchResult> matches = new ArrayList<>();
-            while (matcher.find()) {
-                matches.add(matcher.toMatchResult());
+            if (compiledTemplate == null) {
+                compiledTemplate = event.getContext().getExpressionParser().compileTemplate(value);
             }
 
-            for (MatchResult match : matches) {
-                String path = match.group(1);
-
-                result.append(value, lastEnd, match.start());
-                Object consumed = event.getContext().getExpressionParser().consume(path, event.getVariables());
-                result.append(consumed == null ? "null" : consumed.toString());
-
-                lastEnd = match.end();
-            }            
-
-            result.append(value.substring(lastEnd));
-            return result.toString();
+            return compiledTemplate.render(event.getVariables());
         }
     }
 
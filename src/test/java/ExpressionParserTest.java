@@ -1,4 +1,8 @@
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -6,9 +10,20 @@ import java.util.Map;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import mindustrytool.workflow.errors.WorkflowError;
+import mindustrytool.workflow.expressions.Expression;
 import mindustrytool.workflow.expressions.ExpressionParser;
+import mindustrytool.workflow.expressions.Template;
 
 public class ExpressionParserTest {
+    public static class Position {
+        public double x = 4;
+    }
+
+    public static class NamedPosition extends Position {
+        public String name = "core";
+    }
+
     ExpressionParser parser = new ExpressionParser();
 
     Map<String, Object> variables = new HashMap<>();
@@ -29,4 +44,128 @@ public class ExpressionParserTest {
     void testAdditionWithVariable() {
         assertEquals(parser.evaluate(Object.class, "{{a}} + {{ b}}", variables), 3d);
     }
+
+    @Test
+    void testCompiledExpressionReuse() {
+        Expression expression = parser.compile("{{a}} * 2 + {{b}}");
+
+        assertEquals(expression.evaluate(variables), 4d);
+
+        variables.put("a", 3d);
+        assertEquals(expression.evaluate(variables), 8d);
+    }
+
+    @Test
+    void testDecimalNumber() {
+        assertEquals(parser.evaluate(Object.class, "1.5 * 2", variables), 3d);
+    }
+
+    @Test
+    void testCompileRejectsInvalidExpression() {
+        assertThrows(WorkflowError.class, () -> parser.compile("1 + hello"));
+        assertThrows(WorkflowError.class, () -> parser.compile("( 1 + 2"));
+        assertThrows(WorkflowError.class, () -> parser.compile("1 +"));
+    }
+
+    @Test
+    void testInheritedFieldPath() {
+        variables.put("target", new NamedPosition());
+
+        assertEquals(parser.evaluate(Object.class, "{{target.x}} + {{a}}", variables), 5d);
+        assertEquals(parser.consume("target.name", variables), "core");
+
+        variables.put("target", new Position());
+        assertEquals(parser.evaluate(Object.class, "{{target.x}} + {{a}}", variables), 5d);
+    }
+
+    @Test
+    void testTemplate() {
+        Template template = parser.compileTemplate("a={{a}}, b={{ b }}!");
+
+        assertEquals(template.render(variables), "a=1.0, b=2.0!");
+
+        String constant = "no placeholders";
+        Template constantTemplate = parser.compileTemplate(constant);
+
+        assertTrue(constantTemplate.isConstant());
+        assertSame(constantTemplate.render(variables), constant);
+    }
+
+    @Test
+    void testInferType() {
+        Map<String, Class<?>> types = new HashMap<>();
+        types.put("target", NamedPosition.class);
+
+        assertEquals(parser.compile("{{target.x}} + 1").inferType(types::get), Double.class);
+        assertEquals(parser.compile("{{target.x}} > 1").inferType(types::get), Boolean.class);
+        assertEquals(parser.compile("{{target.name}}").inferType(types::get), String.class);
+        assertEquals(parser.compile("{{unknown.x}}").inferType(name -> Object.class), Object.class);
+
+        assertThrows(WorkflowError.class, () -> parser.compile("{{target.name}} * 2").inferType(types::get));
+    }
+
+    @Test
+    void testCompiledTier() {
+        parser.setCompileThreshold(2);
+        variables.put("target", new NamedPosition());
+
+        Expression expression = parser.compile("{{target.x}} * {{a}} + sqrt ( 16 ) > {{b}}");
+
+        assertEquals(expression.evaluate(variables), true);
+        assertFalse(expression.isCompiled());
+        assertEquals(expression.evaluate(variables), true);
+        assertTrue(expression.isCompiled());
+
+        variables.put("a", -1d);
+        assertEquals(expression.evaluate(variables), false);
+
+        // Not a number, the interpreter reports it as before
+        variables.put("a", "text");
+        assertThrows(WorkflowError.class, () -> expression.evaluate(variables));
+
+        Expression numeric = parser.compile("{{a}} * 2 + {{b}}");
+        variables.put("a", 3d);
+
+        assertEquals(numeric.evaluateAsDouble(variables), 8d);
+        assertEquals(numeric.evaluateAsDouble(variables), 8d);
+        assertTrue(numeric.isCompiled());
+        assertEquals(numeric.evaluate(variables), 8d);
+    }
+
+    @Test
+    void testCompiledTierGivesUpAfterFallbacks() {
+        parser.setCompileThreshold(1);
+        variables.put("a", "text");
+
+        Expression expression = parser.compile("{{a}} * 2");
+
+        assertThrows(WorkflowError.class, () -> expression.evaluate(variables));
+        assertTrue(expression.isCompiled());
+
+        // Every evaluation needs the interpreter, the compiled tier is dropped
+        for (int i = 0; i < 10; i++) {
+            assertThrows(WorkflowError.class, () -> expression.evaluate(variables));
+        }
+
+        assertFalse(expression.isCompiled());
+
+        variables.put("a", 3d);
+
+        assertEquals(expression.evaluate(variables), 6d);
+        assertEquals(expression.evaluateAsDouble(variables), 6d);
+        assertFalse(expression.isCompiled());
+    }
+
+    @Test
+    void testFilter() {
+        NamedPosition position = new NamedPosition();
+
+        assertTrue(parser.compile("{{event.x}} > 3").toFilter("event").test(position));
+        assertFalse(parser.compile("10 < {{event.x}}").toFilter("event").test(position));
+        assertTrue(parser.compile("{{event.x}} == 4").toFilter("event").test(position));
+        assertFalse(parser.compile("{{event.x}} != 4").toFilter("event").test(position));
+        assertTrue(parser.compile("{{event.x}} * 2 >= 8").toFilter("event").test(position));
+
+        assertThrows(WorkflowError.class, () -> parser.compile("{{event.name}} > 3").toFilter("event").test(position));
+    }
 }
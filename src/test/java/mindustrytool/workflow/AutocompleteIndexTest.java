@@ -0,0 +1,77 @@
+package mindustrytool.workflow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class AutocompleteIndexTest {
+    public static class Unit {
+        public String name;
+        public double health;
+        double hidden;
+    }
+
+    public static class Moved {
+        public Unit unit;
+    }
+
+    WorkflowTestGraph graph;
+
+    @BeforeEach
+    void setUp() {
+        graph = new WorkflowTestGraph();
+        graph.node("listener", "EventListener", "get", "class", Moved.class.getName(), "before", "true");
+        graph.node("get", "GetGlobal", "capture", "key", "counter");
+        graph.node("capture", "Capture", null);
+        graph.load();
+    }
+
+    @Test
+    void testVariablesRankByDistance() {
+        var result = graph.workflow.autocomplete("capture", "{{");
+
+        assertEquals(Arrays.asList("{{value", "{{event"), result.subList(0, 2));
+        assertEquals(Arrays.asList("{{event"), graph.workflow.autocomplete("get", "{{ev"));
+        assertEquals(Arrays.asList("{{event"), graph.workflow.autocomplete("capture", "{{EV"));
+    }
+
+    @Test
+    void testVariableFieldsFollowTheListenerClass() {
+        assertEquals(Arrays.asList("{{event.unit"), graph.workflow.autocomplete("capture", "{{event."));
+        assertEquals(Arrays.asList("{{event.unit.name"), graph.workflow.autocomplete("capture", "{{event.unit.n"));
+
+        // Public fields come before the ones only reachable through reflection
+        assertEquals(Arrays.asList("{{event.unit.name", "{{event.unit.health", "{{event.unit.hidden"),
+                graph.workflow.autocomplete("capture", "{{event.unit."));
+    }
+
+    @Test
+    void testBuiltins() {
+        assertEquals(Arrays.asList("{{@day", "{{@datetime"), graph.workflow.autocomplete("capture", "{{@da"));
+    }
+
+    @Test
+    void testClassesCompleteStaticFields() {
+        assertTrue(graph.workflow.autocomplete("capture", "{{Sys").contains("{{System"));
+        assertEquals(Arrays.asList("{{System.out"), graph.workflow.autocomplete("capture", "{{System.ou"));
+    }
+
+    @Test
+    void testPathStartsAfterLastOpenBraceOrSpace() {
+        assertEquals(Arrays.asList("{{a}} > {{value"), graph.workflow.autocomplete("capture", "{{a}} > {{val"));
+        assertEquals(Arrays.asList("say value"), graph.workflow.autocomplete("capture", "say val"));
+    }
+
+    @Test
+    void testUnknownPaths() {
+        assertTrue(graph.workflow.autocomplete("capture", "{{nothing.").isEmpty());
+        // value is produced as Object, its fields are unknown
+        assertTrue(graph.workflow.autocomplete("capture", "{{value.").isEmpty());
+        assertNull(graph.workflow.autocomplete("missing", "{{"));
+    }
+}
@@ -0,0 +1,85 @@
+package mindustrytool.workflow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+public class AutocompleteTrieTest {
+    AutocompleteTrie trie = new AutocompleteTrie();
+
+    List<String> find(String prefix) {
+        return trie.find(prefix).stream().map(entry -> entry.text).sorted().collect(Collectors.toList());
+    }
+
+    @Test
+    void testSplitKeepsBothBranches() {
+        trie.add("abcd", 0, null);
+        trie.add("abef", 0, null);
+
+        assertEquals(Arrays.asList("abcd", "abef"), find("ab"));
+        assertEquals(Arrays.asList("abcd"), find("abc"));
+        assertEquals(Arrays.asList("abef"), find("abef"));
+        assertTrue(find("abx").isEmpty());
+        assertTrue(find("abcde").isEmpty());
+    }
+
+    @Test
+    void testPrefixOfAnExistingEdge() {
+        trie.add("teams", 0, null);
+        trie.add("team", 0, null);
+        trie.add("tea", 0, null);
+        trie.add("ten", 0, null);
+        trie.add("t", 0, null);
+
+        assertEquals(5, trie.size());
+        assertEquals(Arrays.asList("t", "tea", "team", "teams", "ten"), find("t"));
+        assertEquals(Arrays.asList("tea", "team", "teams"), find("tea"));
+        assertEquals(Arrays.asList("team", "teams"), find("team"));
+        assertEquals(Arrays.asList("ten"), find("ten"));
+    }
+
+    @Test
+    void testEmptyPrefixFindsEverything() {
+        trie.add("b", 0, null);
+        trie.add("a", 0, null);
+
+        assertEquals(Arrays.asList("a", "b"), find(""));
+    }
+
+    @Test
+    void testChildrenStaySortedForLookup() {
+        for (char c = 'z'; c >= 'a'; c--) {
+            trie.add(c + "x", 0, null);
+        }
+
+        for (char c = 'a'; c <= 'z'; c++) {
+            assertEquals(Arrays.asList(c + "x"), find(String.valueOf(c)));
+        }
+    }
+
+    @Test
+    void testCaseInsensitiveAndKeepsText() {
+        trie.add("unitType", 3, Integer.class);
+
+        var entries = trie.find("UNITt");
+
+        assertEquals(1, entries.size());
+        assertEquals("unitType", entries.get(0).text);
+        assertEquals(3, entries.get(0).rank);
+        assertSame(Integer.class, entries.get(0).type);
+    }
+
+    @Test
+    void testSameTextAddedTwice() {
+        trie.add("name", 0, String.class);
+        trie.add("name", 1, Object.class);
+
+        assertEquals(2, trie.find("name").size());
+    }
+}
@@ -0,0 +1,80 @@
+package mindustrytool.workflow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest {
+    @Test
+    void testEmpty() {
+        var histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMean());
+        assertEquals(0, histogram.getPercentile(50));
+    }
+
+    @Test
+    void testSmallValuesAreExact() {
+        var histogram = new LatencyHistogram();
+
+        for (int i = 0; i < 8; i++) {
+            histogram.record(i);
+        }
+
+        histogram.record(-5);
+
+        assertEquals(9, histogram.getCount());
+        assertEquals(28, histogram.getTotal());
+        assertEquals(0, histogram.getPercentile(10));
+        assertEquals(3, histogram.getPercentile(50));
+        assertEquals(7, histogram.getPercentile(100));
+    }
+
+    @Test
+    void testPercentilesOfUniformValues() {
+        var histogram = new LatencyHistogram();
+
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(50, histogram.getMean());
+        assertEquals(100, histogram.getMax());
+        // Upper bounds of the buckets 48..51, 88..95 and 96..103, capped at the max
+        assertEquals(51, histogram.getPercentile(50));
+        assertEquals(95, histogram.getPercentile(90));
+        assertEquals(100, histogram.getPercentile(99));
+    }
+
+    @Test
+    void testBucketsStayWithinAnEighth() {
+        var random = new Random(42);
+
+        for (int i = 0; i < 10_000; i++) {
+            long value = 8 + (random.nextLong() >>> (24 + random.nextInt(30)));
+            var histogram = new LatencyHistogram();
+
+            histogram.record(value);
+            histogram.record(Long.MAX_VALUE / 2);
+
+            long bound = histogram.getPercentile(50);
+
+            assertTrue(bound >= value && bound <= value + value / 8, value + " reported as " + bound);
+        }
+    }
+
+    @Test
+    void testValuesPastTheLastBucketReportMax() {
+        var histogram = new LatencyHistogram();
+        long huge = 1L << 50;
+
+        histogram.record(huge);
+
+        assertEquals(huge, histogram.getPercentile(50));
+        assertEquals(huge, histogram.getMax());
+    }
+}
@@ -0,0 +1,123 @@
+package mindustrytool.workflow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import mindustrytool.workflow.nodes.SetWorkflow;
+
+public class WorkflowBudgetTest {
+    List<Runnable> posted = new ArrayList<>();
+    WorkflowBudget budget = new WorkflowBudget(posted::add);
+
+    WorkflowEmitEvent event;
+    WorkflowRun run;
+
+    @BeforeEach
+    void setUp() {
+        var workflow = new Workflow(new WeakReference<>(null), Runnable::run);
+        var node = new SetWorkflow();
+        node.setId("set");
+
+        event = WorkflowEmitEvent.create(node, workflow);
+        run = new WorkflowRun(node, false);
+
+        budget.setRunNanos(0);
+        budget.setRunSteps(0);
+        budget.setTickNanos(0);
+        budget.setTickSteps(0);
+    }
+
+    @Test
+    void testNoLimits() {
+        for (int i = 0; i < 1000; i++) {
+            budget.charge(run, 1_000_000, false);
+        }
+
+        assertNull(budget.check(run, event, false));
+        assertEquals(1000, run.getUsedSteps());
+    }
+
+    @Test
+    void testRunSteps() {
+        budget.setRunSteps(2);
+
+        budget.charge(run, 1, true);
+        assertNull(budget.check(run, event, true));
+
+        budget.charge(run, 1, true);
+        assertEquals(WorkflowBudgetAction.ABORT, budget.check(run, event, true));
+        assertEquals(1, budget.getAborted());
+    }
+
+    @Test
+    void testRunTimeAppliesOnWorkers() {
+        budget.setRunNanos(100);
+
+        budget.charge(run, 150, true);
+
+        assertEquals(WorkflowBudgetAction.ABORT, budget.check(run, event, true));
+        assertEquals(WorkflowBudgetAction.ABORT, budget.check(run, event, false));
+    }
+
+    @Test
+    void testTickStepsSuspendUntilNextTick() {
+        budget.setTickSteps(2);
+
+        var other = new WorkflowRun(run.getEmitter(), false);
+
+        budget.charge(run, 1, false);
+        budget.charge(other, 1, false);
+
+        // The tick budget is shared by every run on the game thread
+        assertEquals(WorkflowBudgetAction.SUSPEND, budget.check(new WorkflowRun(run.getEmitter(), false), event, false));
+        assertEquals(1, budget.getSuspended());
+
+        // One reset is posted for the tick, however many steps were charged
+        assertEquals(1, posted.size());
+        posted.remove(0).run();
+
+        assertNull(budget.check(run, event, false));
+    }
+
+    @Test
+    void testTickTimeWithAbortAction() {
+        budget.setTickNanos(1000);
+        budget.setAction(WorkflowBudgetAction.ABORT);
+
+        budget.charge(run, 2000, false);
+
+        assertEquals(WorkflowBudgetAction.ABORT, budget.check(run, event, false));
+        assertEquals(1, budget.getAborted());
+        assertEquals(0, budget.getSuspended());
+    }
+
+    @Test
+    void testWorkersIgnoreTickBudget() {
+        budget.setTickSteps(1);
+
+        budget.charge(run, 1, true);
+        budget.charge(run, 1, true);
+
+        assertNull(budget.check(run, event, true));
+        assertNull(budget.check(run, event, false));
+        assertEquals(0, posted.size());
+    }
+
+    @Test
+    void testDeferPostsToMainThread() {
+        var resumed = new int[1];
+
+        budget.defer(() -> resumed[0]++);
+
+        assertEquals(0, resumed[0]);
+        posted.remove(0).run();
+        assertEquals(1, resumed[0]);
+    }
+}
@@ -0,0 +1,94 @@
+package mindustrytool.workflow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import arc.func.Cons2;
+
+public class WorkflowDispatchTest {
+    public interface Marker {
+    }
+
+    public static class Base implements Marker {
+    }
+
+    public static class Child extends Base {
+    }
+
+    Workflow workflow;
+    List<String> calls;
+
+    @BeforeEach
+    void setUp() {
+        workflow = new Workflow(new WeakReference<>(null), Runnable::run);
+        calls = new ArrayList<>();
+    }
+
+    <T> Cons2<T, Boolean> on(Class<T> type, String name) {
+        return workflow.on(type, (event, before) -> calls.add(name));
+    }
+
+    @Test
+    void testExactListenersFirstThenSupertypesInRegistrationOrder() {
+        on(Object.class, "object");
+        on(Marker.class, "marker");
+        on(Child.class, "child");
+        on(Base.class, "base");
+        on(Marker.class, "marker2");
+
+        workflow.fire(new Child(), true);
+
+        assertEquals(Arrays.asList("child", "object", "marker", "base", "marker2"), calls);
+    }
+
+    @Test
+    void testTableFollowsRegistrationChanges() {
+        workflow.fire(new Child(), true);
+        assertTrue(calls.isEmpty());
+
+        var base = on(Base.class, "base");
+        workflow.fire(new Child(), true);
+        assertEquals(Arrays.asList("base"), calls);
+
+        workflow.remove(Base.class, base);
+        calls.clear();
+        workflow.fire(new Child(), true);
+        assertTrue(calls.isEmpty());
+    }
+
+    @Test
+    void testHasListeners() {
+        assertFalse(workflow.hasListeners(Child.class));
+
+        var marker = on(Marker.class, "marker");
+
+        assertTrue(workflow.hasListeners(Child.class));
+        assertTrue(workflow.hasListeners(Base.class));
+        assertFalse(workflow.hasListeners(String.class));
+
+        workflow.remove(Marker.class, marker);
+
+        assertFalse(workflow.hasListeners(Child.class));
+    }
+
+    @Test
+    void testReRegisteredListenerMovesToTheEnd() {
+        var first = on(Marker.class, "first");
+        on(Base.class, "second");
+
+        workflow.remove(Marker.class, first);
+        workflow.on(Marker.class, first);
+        workflow.fire(new Child(), true);
+
+        assertEquals(Arrays.asList("second", "first"), calls);
+    }
+}
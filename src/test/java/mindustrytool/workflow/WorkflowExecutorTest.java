@@ -0,0 +1,195 @@
+package mindustrytool.workflow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import mindustrytool.workflow.nodes.WorkflowNode;
+
+public class WorkflowExecutorTest {
+    static volatile CountDownLatch release = new CountDownLatch(1);
+
+    /** Records its thread under its id, events named block* wait for the release. */
+    public static class Block extends WorkflowNode {
+        public Block() {
+            super("Block", WorkflowGroup.FLOW, 1);
+
+            defaultOneOutput();
+        }
+
+        @Override
+        public void execute(WorkflowEmitEvent event) {
+            event.putValue(getId(), Thread.currentThread().getName());
+
+            if (String.valueOf(event.getVariables().get("event")).startsWith("block")) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+
+            event.next();
+        }
+    }
+
+    /** Records its thread under its id, always on the game thread. */
+    public static class Game extends WorkflowNode {
+        public Game() {
+            super("Game", WorkflowGroup.FLOW, 1);
+
+            defaultOneOutput();
+        }
+
+        @Override
+        public boolean needsMainThread(WorkflowEmitEvent event) {
+            return true;
+        }
+
+        @Override
+        public void execute(WorkflowEmitEvent event) {
+            event.putValue(getId(), Thread.currentThread().getName());
+            event.next();
+        }
+    }
+
+    WorkflowTestGraph graph;
+    ExecutorService game;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        graph.workflow.getExecutor().shutdown();
+
+        if (game != null) {
+            game.shutdownNow();
+        }
+    }
+
+    WorkflowExecutor async(WorkflowDropPolicy policy) {
+        release = new CountDownLatch(1);
+        graph = new WorkflowTestGraph();
+        graph.workflow.getNodeTypes().put("Block", new Block());
+
+        graph.listener("block");
+        graph.node("block", "Block", "capture");
+        graph.node("capture", "Capture", null);
+        graph.load();
+
+        var executor = graph.workflow.getExecutor();
+        executor.setMode(WorkflowExecutionMode.ASYNC);
+        executor.setQueueSize(1);
+        executor.setDropPolicy(policy);
+
+        return executor;
+    }
+
+    /** Fires blocking events until every worker is busy and the queue is full, returns how many. */
+    int saturate(WorkflowExecutor executor) {
+        int fired = 0;
+
+        while (executor.getQueued() < 1) {
+            assertTrue(fired < 1000, "worker queue never filled");
+            graph.fire("block" + fired++);
+        }
+
+        return fired;
+    }
+
+    Set<Object> release(int runs) throws InterruptedException {
+        release.countDown();
+
+        var events = new HashSet<Object>();
+
+        for (int i = 0; i < runs; i++) {
+            events.add(graph.next(2000).get("event"));
+        }
+
+        assertNull(graph.poll(300));
+
+        return events;
+    }
+
+    @Test
+    void testDropNewest() throws InterruptedException {
+        var executor = async(WorkflowDropPolicy.DROP_NEWEST);
+        int fired = saturate(executor);
+
+        graph.fire("last");
+
+        assertEquals(1, executor.getDropped());
+
+        var events = release(fired);
+
+        assertFalse(events.contains("last"));
+        assertTrue(events.contains("block" + (fired - 1)));
+    }
+
+    @Test
+    void testDropOldest() throws InterruptedException {
+        var executor = async(WorkflowDropPolicy.DROP_OLDEST);
+        int fired = saturate(executor);
+
+        graph.fire("last");
+
+        assertEquals(1, executor.getDropped());
+
+        // The queued run made room for the new one
+        var events = release(fired);
+
+        assertTrue(events.contains("last"));
+        assertFalse(events.contains("block" + (fired - 1)));
+    }
+
+    @Test
+    void testCallerRuns() throws InterruptedException {
+        var executor = async(WorkflowDropPolicy.CALLER_RUNS);
+        int fired = saturate(executor);
+
+        graph.fire("last");
+
+        // Ran to its end inside fire, before any worker was released
+        var last = graph.next(0);
+
+        assertEquals("last", last.get("event"));
+        assertEquals(Thread.currentThread().getName(), last.get("block"));
+        assertEquals(0, executor.getDropped());
+
+        assertEquals(fired, release(fired).size());
+    }
+
+    @Test
+    void testRunsHopToTheGameThread() throws InterruptedException {
+        game = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "test-game"));
+        graph = new WorkflowTestGraph(game::execute);
+        graph.workflow.getNodeTypes().put("Block", new Block());
+        graph.workflow.getNodeTypes().put("Game", new Game());
+
+        graph.listener("before");
+        graph.node("before", "Block", "game");
+        graph.node("game", "Game", "after");
+        graph.node("after", "Block", "capture");
+        graph.node("capture", "Capture", null);
+        graph.load();
+
+        graph.workflow.getExecutor().setMode(WorkflowExecutionMode.ASYNC);
+        graph.fire("go");
+
+        var result = graph.next(2000);
+
+        assertTrue(((String) result.get("before")).startsWith("workflow-worker-"));
+        assertEquals("test-game", result.get("game"));
+        assertTrue(((String) result.get("after")).startsWith("workflow-worker-"));
+    }
+}
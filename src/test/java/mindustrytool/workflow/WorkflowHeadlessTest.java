@@ -0,0 +1,62 @@
+package mindustrytool.workflow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import mindustrytool.utils.JsonUtils;
+
+public class WorkflowHeadlessTest {
+    @Test
+    void testGlobalsWithoutInit() throws InterruptedException {
+        var graph = new WorkflowTestGraph();
+
+        graph.listener("set");
+        graph.node("set", "SetGlobal", "get", "key", "{{event}}", "value", "5");
+        graph.node("get", "GetGlobal", "capture", "key", "{{event}}");
+        graph.node("capture", "Capture", null);
+        graph.load();
+
+        graph.fire("counter");
+
+        assertEquals(5.0, graph.next(1000).get("value"));
+        assertEquals(5.0, graph.workflow.getStore().snapshot().get("counter"));
+    }
+
+    @Test
+    void testBlankValueRemovesGlobal() throws InterruptedException {
+        var graph = new WorkflowTestGraph();
+
+        graph.listener("set");
+        graph.node("set", "SetGlobal", "capture", "key", "counter", "value", "{{event}}");
+        graph.node("capture", "Capture", null);
+        graph.load();
+
+        graph.fire("kept");
+        graph.next(1000);
+
+        assertEquals("kept", graph.workflow.getStore().get("counter"));
+
+        graph.fire("  ");
+        graph.next(1000);
+
+        assertFalse(graph.workflow.getStore().contains("counter"));
+    }
+
+    @Test
+    void testSavedFilesStayInMemory() {
+        var workflow = new Workflow(new WeakReference<>(null), Runnable::run);
+
+        workflow.writeWorkflowData(JsonUtils.readJson("{\"createdAt\": 1}"));
+        workflow.writeWorkflowData(JsonUtils.readJson("{\"createdAt\": 2}"));
+
+        assertEquals(2, workflow.getWorkflowVersion());
+        assertEquals(Arrays.asList(2L, 1L), workflow.getWorkflowVersions());
+        assertTrue(workflow.getStore().isOpen());
+    }
+}
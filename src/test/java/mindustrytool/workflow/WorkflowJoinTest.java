@@ -0,0 +1,146 @@
+package mindustrytool.workflow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class WorkflowJoinTest {
+    WorkflowTestGraph graph;
+
+    @BeforeEach
+    void setUp() {
+        graph = new WorkflowTestGraph();
+        graph.listener("fork");
+    }
+
+    void fork(String... branches) {
+        var state = graph.node("fork", "Fork", null);
+
+        for (int i = 0; i < branches.length; i++) {
+            state.getOutputs().put("Branch " + (i + 1), branches[i]);
+        }
+    }
+
+    void join(String mode, String timeout) {
+        graph.node("join", "Join", "joined", "mode", mode, "timeout", timeout)
+                .getOutputs().put("Timeout", "timedOut");
+        graph.node("joined", "Capture", null);
+        graph.node("timedOut", "Capture", null);
+    }
+
+    Map<String, Object> run() throws InterruptedException {
+        graph.load();
+        graph.fire("go");
+
+        return graph.next(5000);
+    }
+
+    @Test
+    void testAllMergesBranchVariables() throws InterruptedException {
+        fork("a", "b");
+        graph.node("a", "Set", "join", "name", "a", "value", "1");
+        graph.node("b", "Wait", "b2", "second", "0");
+        graph.node("b2", "Set", "join", "name", "b", "value", "2");
+        join("ALL", "5000");
+
+        var result = run();
+
+        assertEquals("joined", result.get("node"));
+        assertEquals(2, result.get("arrived"));
+        assertEquals(1.0, result.get("a"));
+        assertEquals(2.0, result.get("b"));
+    }
+
+    @Test
+    void testBranchesCountTheirOwnSteps() throws InterruptedException {
+        fork("a", "b");
+        graph.node("a", "Set", "join", "name", "a", "value", "{{@step}}");
+        graph.node("b", "Wait", "b2", "second", "0");
+        graph.node("b2", "Set", "join", "name", "b", "value", "{{@step}}");
+        join("ALL", "5000");
+
+        var result = run();
+
+        // b went through one more node than a
+        assertEquals(((Number) result.get("a")).intValue() + 1, ((Number) result.get("b")).intValue());
+    }
+
+    @Test
+    void testAnyContinuesOnFirstArrival() throws InterruptedException {
+        fork("a", "b");
+        graph.node("a", "Set", "join", "name", "a", "value", "1");
+        graph.node("b", "Wait", "b2", "second", "1");
+        graph.node("b2", "Set", "join", "name", "b", "value", "2");
+        join("ANY", "5000");
+
+        var result = run();
+
+        assertEquals("joined", result.get("node"));
+        assertEquals(1, result.get("arrived"));
+        assertNull(result.get("b"));
+
+        // The late branch must not continue the forking run a second time
+        assertNull(graph.poll(1500));
+    }
+
+    @Test
+    void testTimeoutCountsFromFork() throws InterruptedException {
+        fork("a", "b");
+        graph.node("a", "Set", "join", "name", "a", "value", "1");
+        graph.node("b", "Wait", "join", "second", "2");
+        join("ALL", "100");
+
+        var result = run();
+
+        assertEquals("timedOut", result.get("node"));
+        assertEquals(1, result.get("arrived"));
+        assertEquals(1.0, result.get("a"));
+    }
+
+    @Test
+    void testTimeoutWithoutArrivals() throws InterruptedException {
+        fork("a", "b");
+        graph.node("a", "Wait", "join", "second", "2");
+        graph.node("b", "Wait", "join", "second", "2");
+        join("ALL", "100");
+
+        var result = run();
+
+        assertEquals("timedOut", result.get("node"));
+        assertEquals(0, result.get("arrived"));
+    }
+
+    @Test
+    void testBranchEndingWithoutJoinDoesNotHoldFork() throws InterruptedException {
+        fork("a", "b");
+        graph.node("a", "Set", "join", "name", "a", "value", "1");
+        graph.node("b", "Set", null, "name", "b", "value", "2");
+        join("ALL", "0");
+
+        var result = run();
+
+        assertEquals("joined", result.get("node"));
+        assertEquals(1, result.get("arrived"));
+        assertEquals(1.0, result.get("a"));
+
+        // Only what reached the Join is handed back
+        assertFalse(result.containsKey("b"));
+    }
+
+    @Test
+    void testJoinOutsideForkIsPlainNext() throws InterruptedException {
+        graph.context.getNodes().clear();
+        graph.listener("join");
+        join("ALL", "5000");
+
+        var result = run();
+
+        assertEquals("joined", result.get("node"));
+        assertEquals(1, result.get("arrived"));
+    }
+}
@@ -0,0 +1,61 @@
+package mindustrytool.workflow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.ref.WeakReference;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class WorkflowNodeCatalogTest {
+    Workflow workflow;
+    WorkflowNodeCatalog catalog;
+
+    @BeforeEach
+    void setUp() {
+        workflow = new Workflow(new WeakReference<>(null), Runnable::run);
+        workflow.registerNodes();
+        catalog = workflow.getNodeCatalog();
+    }
+
+    @Test
+    void testETagIsQuotedHash() {
+        var etag = catalog.getETag();
+
+        assertTrue(etag.startsWith("\"") && etag.endsWith("\""), etag);
+        assertEquals(66, etag.length());
+    }
+
+    @Test
+    void testMatches() {
+        var etag = catalog.getETag();
+
+        assertTrue(catalog.matches(etag));
+        assertTrue(catalog.matches("W/" + etag));
+        assertTrue(catalog.matches("\"other\", " + etag));
+        assertTrue(catalog.matches("\"other\",W/" + etag));
+        assertTrue(catalog.matches("*"));
+
+        assertFalse(catalog.matches(null));
+        assertFalse(catalog.matches(""));
+        assertFalse(catalog.matches("\"other\""));
+        // Unquoted tags are not the same tag
+        assertFalse(catalog.matches(etag.substring(1, etag.length() - 1)));
+    }
+
+    @Test
+    void testCachedUntilNodeTypesChange() {
+        assertSame(catalog, workflow.getNodeCatalog());
+
+        workflow.clear();
+        workflow.registerNodes();
+        assertEquals(catalog.getETag(), workflow.getNodeCatalog().getETag());
+
+        workflow.clear();
+        assertNotEquals(catalog.getETag(), workflow.getNodeCatalog().getETag());
+    }
+}
@@ -0,0 +1,133 @@
+package mindustrytool.workflow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class WorkflowPersistenceTest {
+    @TempDir
+    Path dir;
+
+    Path target;
+    WorkflowPersistence persistence;
+    ScheduledExecutorService scheduler;
+
+    @BeforeEach
+    void setUp() {
+        target = dir.resolve("workflow_data.json");
+        persistence = new WorkflowPersistence(dir.resolve("versions"), 2);
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void testWriteAtomicReplacesWithoutTempFile() throws IOException {
+        Files.write(target, "old".getBytes(StandardCharsets.UTF_8));
+
+        WorkflowPersistence.writeAtomic(target, "new".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("new", new String(Files.readAllBytes(target), StandardCharsets.UTF_8));
+        assertFalse(Files.exists(dir.resolve("workflow_data.json.tmp")));
+    }
+
+    @Test
+    void testSavesWithoutSchedulerAreWrittenRightAway() throws IOException {
+        persistence.save(target, "first");
+
+        assertEquals("first", persistence.read(target));
+        assertTrue(Files.exists(target));
+    }
+
+    @Test
+    void testSavesAreCoalesced() throws IOException {
+        persistence.start(scheduler);
+
+        persistence.saveVersioned(target, "one", 1);
+        persistence.saveVersioned(target, "two", 2);
+        persistence.saveVersioned(target, "three", 3);
+
+        assertFalse(Files.exists(target));
+
+        persistence.flush();
+
+        // Only the latest content of the window reaches the disk
+        assertEquals("three", persistence.read(target));
+        assertEquals(Arrays.asList(3L), persistence.getVersions(target));
+    }
+
+    @Test
+    void testScheduledFlushWritesLatest() throws Exception {
+        persistence.start(scheduler);
+
+        persistence.save(target, "one");
+        persistence.save(target, "two");
+
+        for (int i = 0; i < 50 && !Files.exists(target); i++) {
+            Thread.sleep(100);
+        }
+
+        assertEquals("two", persistence.read(target));
+    }
+
+    @Test
+    void testOldSnapshotsArePruned() throws IOException {
+        for (long version = 1; version <= 4; version++) {
+            persistence.saveVersioned(target, "v" + version, version);
+        }
+
+        assertEquals(Arrays.asList(4L, 3L), persistence.getVersions(target));
+        assertEquals("v3", persistence.readVersion(target, 3));
+        assertNull(persistence.readVersion(target, 1));
+
+        try (var files = Files.list(dir.resolve("versions"))) {
+            assertEquals(2, files.count());
+        }
+    }
+
+    @Test
+    void testStrayFilesInVersionsAreIgnored() throws IOException {
+        var versions = Files.createDirectories(dir.resolve("versions"));
+
+        Files.write(versions.resolve("workflow_data-1"), new byte[0]);
+        Files.write(versions.resolve("workflow_data-.json"), new byte[0]);
+        Files.write(versions.resolve("workflow_data-x.json"), new byte[0]);
+
+        for (long version = 1; version <= 3; version++) {
+            persistence.saveVersioned(target, "v" + version, version);
+        }
+
+        assertEquals(Arrays.asList(3L, 2L), persistence.getVersions(target));
+        assertTrue(Files.exists(versions.resolve("workflow_data-1")));
+    }
+
+    @Test
+    void testInMemoryKeepsSameLayout() throws IOException {
+        var memory = new WorkflowPersistence(2);
+
+        for (long version = 1; version <= 3; version++) {
+            memory.saveVersioned(target, "v" + version, version);
+        }
+
+        assertEquals("v3", memory.read(target));
+        assertEquals(Arrays.asList(3L, 2L), memory.getVersions(target));
+        assertFalse(Files.exists(target));
+    }
+}
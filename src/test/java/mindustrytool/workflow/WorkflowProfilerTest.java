@@ -0,0 +1,81 @@
+package mindustrytool.workflow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import mindustrytool.type.WorkflowProfileDto;
+
+public class WorkflowProfilerTest {
+    static long nodeTotal(WorkflowProfileDto profile) {
+        return profile.getNodes().stream().mapToLong(WorkflowProfileDto.Entry::getTotalNanos).sum();
+    }
+
+    static WorkflowProfileDto.Entry emitter(WorkflowProfileDto profile) {
+        return profile.getEmitters().stream().filter(entry -> entry.getId().equals("listener")).findFirst().get();
+    }
+
+    @Test
+    void testEmitterRecordsWholeRuns() throws InterruptedException {
+        var graph = new WorkflowTestGraph();
+
+        graph.listener("a");
+        graph.node("a", "Set", "b", "name", "a", "value", "1");
+        graph.node("b", "Set", "capture", "name", "b", "value", "2");
+        graph.node("capture", "Capture", null);
+        graph.load();
+
+        for (int i = 0; i < 3; i++) {
+            graph.fire("go");
+            graph.next(1000);
+        }
+
+        var profile = graph.workflow.getProfiler().snapshot();
+        var runs = emitter(profile);
+
+        assertEquals(3, runs.getInvocations());
+        assertEquals(9, runs.getSteps());
+        // Each run is one sample holding all of its steps
+        assertEquals(nodeTotal(profile), runs.getTotalNanos());
+        assertEquals(runs.getTotalNanos() / 3, runs.getMeanNanos());
+    }
+
+    @Test
+    void testForkedBranchesCountTowardsTheirRun() throws InterruptedException {
+        var graph = new WorkflowTestGraph();
+
+        graph.listener("fork");
+
+        var fork = graph.node("fork", "Fork", null);
+        fork.getOutputs().put("Branch 1", "a");
+        fork.getOutputs().put("Branch 2", "b");
+
+        graph.node("a", "Set", "join", "name", "a", "value", "1");
+        graph.node("b", "Set", "join", "name", "b", "value", "2");
+        graph.node("join", "Join", "capture", "mode", "ALL", "timeout", "5000");
+        graph.node("capture", "Capture", null);
+        graph.load();
+
+        graph.fire("go");
+        graph.next(5000);
+
+        WorkflowProfileDto profile = null;
+
+        // Branches may still be winding down after the join continued
+        for (int i = 0; i < 50; i++) {
+            profile = graph.workflow.getProfiler().snapshot();
+
+            if (emitter(profile).getMaxNanos() > 0 && emitter(profile).getTotalNanos() == nodeTotal(profile)) {
+                break;
+            }
+
+            Thread.sleep(100);
+        }
+
+        var runs = emitter(profile);
+
+        assertEquals(1, runs.getInvocations());
+        assertEquals(nodeTotal(profile), runs.getTotalNanos());
+        assertEquals(runs.getTotalNanos(), runs.getMaxNanos());
+    }
+}
@@ -0,0 +1,138 @@
+package mindustrytool.workflow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import mindustrytool.workflow.errors.WorkflowError;
+import mindustrytool.workflow.expressions.ExpressionParser;
+
+public class WorkflowRecorderTest {
+    public enum Team {
+        SHARDED, CRUX
+    }
+
+    public static class Unit {
+        public float x;
+        public Team team;
+
+        public Unit(float x, Team team) {
+            this.x = x;
+            this.team = team;
+        }
+    }
+
+    public static class Moved {
+        public Unit unit;
+        public String name;
+        public boolean fast;
+        public String ignored = "not read by the workflow";
+
+        public Moved(Unit unit, String name, boolean fast) {
+            this.unit = unit;
+            this.name = name;
+            this.fast = fast;
+        }
+    }
+
+    @TempDir
+    Path dir;
+
+    Path path;
+    WorkflowTestGraph graph;
+    WorkflowRecorder recorder = new WorkflowRecorder();
+
+    @BeforeEach
+    void setUp() {
+        path = dir.resolve("recordings").resolve("test.wfr");
+
+        graph = new WorkflowTestGraph();
+        graph.node("listener", "EventListener", "set", "class", Moved.class.getName(), "before", "true");
+        graph.node("set", "Set", "chat", "name", "x", "value", "{{event.unit.x}} * 2");
+        graph.node("chat", "SendChat", null, "message", "{{event.name}} {{event.unit.team}} {{event.fast}}");
+    }
+
+    @Test
+    void testPathsOfListenedEvents() {
+        var paths = WorkflowRecorder.pathsOf(graph.context);
+
+        assertEquals(1, paths.size());
+        assertEquals(Arrays.asList("fast", "name", "unit.team", "unit.x"), paths.get(Moved.class));
+    }
+
+    @Test
+    void testRoundTrip() {
+        recorder.start(path, graph.context, 0);
+        assertTrue(recorder.isRecording());
+
+        recorder.record(new Moved(new Unit(1.5f, Team.SHARDED), "alice", true));
+        recorder.record("an event nobody listens to");
+        recorder.record(new Moved(null, "bob", false));
+        recorder.record(new Moved(new Unit(-3, Team.CRUX), "alice", false));
+
+        assertEquals(path, recorder.stop());
+        assertFalse(recorder.isRecording());
+        assertEquals(3, recorder.getRecorded());
+
+        var recording = WorkflowRecording.read(path);
+        var events = recording.getEvents();
+
+        assertTrue(recording.getStartedAt() > 0);
+        assertEquals(3, events.size());
+
+        var first = events.get(0);
+
+        assertEquals(Moved.class, first.getEventClass());
+        assertEquals(1.5, (Double) ExpressionParser.access(first, "unit.x"));
+        assertEquals("SHARDED", ExpressionParser.access(first, "unit.team"));
+        assertEquals("alice", ExpressionParser.access(first, "name"));
+        assertEquals(true, ExpressionParser.access(first, "fast"));
+
+        // A null on the way is kept where it was hit
+        assertNull(ExpressionParser.access(events.get(1), "unit"));
+        assertEquals("bob", ExpressionParser.access(events.get(1), "name"));
+
+        assertEquals(-3.0, (Double) ExpressionParser.access(events.get(2), "unit.x"));
+        assertEquals("alice", ExpressionParser.access(events.get(2), "name"));
+
+        // Fields no node reads are not recorded
+        assertThrows(WorkflowError.class, () -> ExpressionParser.access(first, "ignored"));
+
+        assertTrue(events.get(0).getNanos() <= events.get(2).getNanos());
+    }
+
+    @Test
+    void testStopsAtMaxEvents() {
+        recorder.start(path, graph.context, 2);
+
+        for (int i = 0; i < 5; i++) {
+            recorder.record(new Moved(new Unit(i, Team.CRUX), "player" + i, false));
+        }
+
+        assertFalse(recorder.isRecording());
+
+        recorder.stop();
+
+        var events = WorkflowRecording.read(path).getEvents();
+
+        assertEquals(2, events.size());
+        assertEquals("player1", ExpressionParser.access(events.get(1), "name"));
+    }
+
+    @Test
+    void testNoListenerToRecord() {
+        graph.context.getNodes().clear();
+
+        assertThrows(WorkflowError.class, () -> recorder.start(path, graph.context, 0));
+        assertFalse(recorder.isRecording());
+    }
+}
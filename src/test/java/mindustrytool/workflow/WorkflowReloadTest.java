@@ -0,0 +1,208 @@
+package mindustrytool.workflow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import mindustrytool.workflow.nodes.WorkflowNode;
+
+public class WorkflowReloadTest {
+    static final AtomicInteger UNLOADED = new AtomicInteger();
+
+    public static class Failing extends WorkflowNode {
+        public Failing() {
+            super("Failing", WorkflowGroup.FLOW, 1);
+
+            defaultOneOutput();
+        }
+
+        @Override
+        public void init(Workflow context) {
+            throw new IllegalStateException("init failed");
+        }
+
+        @Override
+        public void unload(Workflow context) {
+            UNLOADED.incrementAndGet();
+        }
+    }
+
+    WorkflowTestGraph graph;
+
+    @BeforeEach
+    void setUp() {
+        graph = new WorkflowTestGraph();
+        graph.workflow.getNodeTypes().put("Failing", new Failing());
+        UNLOADED.set(0);
+    }
+
+    WorkflowNode node(String id) {
+        return graph.workflow.getNodes().get(id);
+    }
+
+    /** Replaces the graph with fresh node data, as the editor sends it. */
+    void reset() {
+        graph.context.getNodes().clear();
+    }
+
+    void simpleGraph(String value) {
+        graph.listener("set");
+        graph.node("set", "Set", "capture", "name", "a", "value", value);
+        graph.node("capture", "Capture", null);
+    }
+
+    @Test
+    void testUnchangedNodesAreKept() throws InterruptedException {
+        simpleGraph("1");
+        graph.load();
+
+        var listener = node("listener");
+        var set = node("set");
+        var capture = node("capture");
+
+        reset();
+        simpleGraph("2");
+        graph.load();
+
+        assertSame(listener, node("listener"));
+        assertSame(capture, node("capture"));
+        assertNotSame(set, node("set"));
+
+        graph.fire("go");
+
+        assertEquals(2.0, graph.next(1000).get("a"));
+        // The kept listener is still registered exactly once
+        assertNull(graph.poll(200));
+    }
+
+    @Test
+    void testKeptNodesAreRewired() throws InterruptedException {
+        simpleGraph("1");
+        graph.load();
+
+        var listener = node("listener");
+
+        reset();
+        graph.listener("other");
+        graph.node("set", "Set", "capture", "name", "a", "value", "1");
+        graph.node("other", "Set", "capture", "name", "a", "value", "3");
+        graph.node("capture", "Capture", null);
+        graph.load();
+
+        assertSame(listener, node("listener"));
+        assertEquals("other", listener.nextId());
+
+        graph.fire("go");
+
+        assertEquals(3.0, graph.next(1000).get("a"));
+    }
+
+    @Test
+    void testRemovedNodesAreUnloaded() throws InterruptedException {
+        simpleGraph("1");
+        graph.load();
+
+        reset();
+        graph.node("capture", "Capture", null);
+        graph.load();
+
+        assertNull(node("listener"));
+        assertFalse(graph.workflow.hasListeners(String.class));
+
+        graph.fire("go");
+
+        assertNull(graph.poll(200));
+    }
+
+    @Test
+    void testKeptIntervalKeepsItsTimer() throws InterruptedException {
+        graph.node("interval", "Interval", "set", "delay", "0", "interval", "1");
+        graph.node("set", "Set", "capture", "name", "a", "value", "1");
+        graph.node("capture", "Capture", null);
+        graph.load();
+
+        var interval = node("interval");
+
+        assertEquals(1.0, graph.next(1000).get("a"));
+
+        reset();
+        graph.node("interval", "Interval", "set", "delay", "0", "interval", "1");
+        graph.node("set", "Set", "capture", "name", "a", "value", "2");
+        graph.node("capture", "Capture", null);
+        graph.load();
+
+        assertSame(interval, node("interval"));
+
+        // A restarted timer would fire again right away, the kept one waits for its period
+        assertNull(graph.poll(500));
+        assertEquals(2.0, graph.next(1500).get("a"));
+    }
+
+    void joinGraph(String afterWait) {
+        graph.listener("fork");
+        graph.node("fork", "Fork", null).getOutputs().put("Branch 1", "wait");
+        graph.node("wait", "Wait", afterWait, "second", "1");
+        graph.node("join", "Join", "joined", "mode", "ALL", "timeout", "5000")
+                .getOutputs().put("Timeout", "timedOut");
+        graph.node("joined", "Capture", null);
+        graph.node("timedOut", "Capture", null);
+    }
+
+    @Test
+    void testRemovedNextNodeEndsWaitingRun() throws InterruptedException {
+        joinGraph("set");
+        graph.node("set", "Set", "join", "name", "a", "value", "1");
+        graph.load();
+
+        graph.fire("go");
+
+        // The pending timer still continues to set, which the reload removes
+        reset();
+        joinGraph("join");
+        graph.load();
+
+        // The branch ends at once instead of leaving the join to time out
+        var result = graph.next(3000);
+
+        assertEquals("joined", result.get("node"));
+        assertNull(result.get("a"));
+    }
+
+    @Test
+    void testFailedInitRollsBack() throws InterruptedException {
+        simpleGraph("1");
+        graph.load();
+
+        var listener = node("listener");
+        var set = node("set");
+
+        reset();
+        graph.listener("set");
+        graph.node("set", "Set", "failing", "name", "a", "value", "2");
+        graph.node("interval", "Interval", "capture", "delay", "1", "interval", "1");
+        graph.node("failing", "Failing", "capture");
+        graph.node("capture", "Capture", null);
+
+        assertThrows(IllegalStateException.class, graph::load);
+
+        assertSame(listener, node("listener"));
+        assertSame(set, node("set"));
+        assertNull(node("interval"));
+        assertNull(node("failing"));
+        assertEquals(1, UNLOADED.get());
+
+        // The previous graph still runs, the interval started before the failure was cancelled
+        graph.fire("go");
+
+        assertEquals(1.0, graph.next(1000).get("a"));
+        assertNull(graph.poll(1500));
+    }
+}
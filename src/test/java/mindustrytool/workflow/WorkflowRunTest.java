@@ -0,0 +1,49 @@
+package mindustrytool.workflow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+import mindustrytool.workflow.nodes.WorkflowNode;
+
+public class WorkflowRunTest {
+    public static class Both extends WorkflowNode {
+        private final WorkflowOutput first = new WorkflowOutput("First", "First");
+        private final WorkflowOutput second = new WorkflowOutput("Second", "Second");
+
+        public Both() {
+            super("Both", WorkflowGroup.FLOW, 1);
+        }
+
+        @Override
+        public void execute(WorkflowEmitEvent event) {
+            event.next(first.getNextId());
+            event.next(second.getNextId());
+        }
+    }
+
+    @Test
+    void testOutputsRunDepthFirst() throws InterruptedException {
+        var graph = new WorkflowTestGraph();
+        graph.workflow.getNodeTypes().put("Both", new Both());
+
+        graph.listener("both");
+
+        var both = graph.node("both", "Both", null);
+        both.getOutputs().put("First", "a");
+        both.getOutputs().put("Second", "b");
+
+        graph.node("a", "Set", "a2", "name", "a", "value", "1");
+        graph.node("a2", "Capture", null);
+        graph.node("b", "Capture", null);
+        graph.load();
+
+        graph.fire("go");
+
+        // The first output runs to its end before the second one starts
+        assertEquals("a2", graph.next(1000).get("node"));
+        assertEquals("b", graph.next(1000).get("node"));
+        assertNull(graph.poll(100));
+    }
+}
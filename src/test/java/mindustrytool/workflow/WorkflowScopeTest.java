@@ -0,0 +1,150 @@
+package mindustrytool.workflow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class WorkflowScopeTest {
+    WorkflowScope scope = new WorkflowScope(new WorkflowRun(null, false));
+
+    @Test
+    void testChildReadsParent() {
+        scope.put("a", 1);
+
+        var child = scope.child();
+        child.put("b", 2);
+
+        assertEquals(1, child.get("a"));
+        assertEquals(2, child.get("b"));
+        assertNull(scope.get("b"));
+        assertFalse(scope.containsKey("b"));
+    }
+
+    @Test
+    void testChildShadowsParent() {
+        scope.put("a", 1);
+
+        var child = scope.child();
+        child.put("a", 2);
+
+        assertEquals(2, child.get("a"));
+        assertEquals(1, scope.get("a"));
+
+        // Removing only affects the child's own value
+        child.remove("a");
+        assertEquals(1, child.get("a"));
+
+        child.remove("a");
+        assertEquals(1, scope.get("a"));
+    }
+
+    @Test
+    void testNullValueShadowsParent() {
+        scope.put("a", 1);
+
+        var child = scope.child();
+        child.put("a", null);
+
+        assertTrue(child.containsKey("a"));
+        assertNull(child.get("a"));
+    }
+
+    @Test
+    void testEntrySetMergesChainWithoutBuiltins() {
+        scope.put("a", 1);
+        scope.put("b", 2);
+
+        var child = scope.child();
+        child.put("b", 3);
+
+        Map<String, Object> expected = new LinkedHashMap<>();
+        expected.put("a", 1);
+        expected.put("b", 3);
+
+        assertEquals(expected, new HashMap<>(child));
+        assertFalse(child.entrySet().stream().anyMatch(entry -> entry.getKey().startsWith("@")));
+    }
+
+    @Test
+    void testCollectSince() {
+        scope.put("a", 1);
+
+        var fork = scope.child();
+        fork.put("b", 2);
+
+        var first = fork.child();
+        first.put("c", 3);
+
+        var second = first.child();
+        second.put("c", 4);
+        second.put("d", 5);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        second.collectSince(fork, result);
+
+        Map<String, Object> expected = new LinkedHashMap<>();
+        expected.put("c", 4);
+        expected.put("d", 5);
+
+        assertEquals(expected, result);
+
+        result.clear();
+        fork.collectSince(fork, result);
+
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    void testBuiltins() {
+        assertTrue(scope.containsKey("@time"));
+        assertTrue(scope.containsKey("@datetime"));
+        assertFalse(scope.containsKey("@unknown"));
+        assertNull(scope.get("@unknown"));
+
+        assertEquals(0, scope.get("@step"));
+        assertEquals(Long.class, WorkflowScope.builtinType("@time"));
+        assertNull(WorkflowScope.builtinType("time"));
+        assertTrue(WorkflowScope.builtinNames().contains("@players"));
+
+        long time = (Long) scope.get("@time");
+        var calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+
+        assertEquals(calendar.get(Calendar.YEAR), scope.get("@year"));
+        assertEquals(calendar.get(Calendar.SECOND), scope.get("@second"));
+        assertEquals(new Date(time).toString(), scope.get("@datetime"));
+    }
+
+    @Test
+    void testBuiltinsStoredValuesWin() {
+        scope.put("@time", "custom");
+
+        assertEquals("custom", scope.get("@time"));
+    }
+
+    @Test
+    void testClockFixedWithinStep() throws InterruptedException {
+        var child = scope.child();
+        Object time = child.get("@time");
+
+        Thread.sleep(5);
+
+        assertEquals(time, child.get("@time"));
+        assertEquals(time, scope.get("@time"));
+
+        child.resetClock();
+
+        assertNotEquals(time, child.get("@time"));
+        assertEquals(child.get("@time"), scope.get("@time"));
+    }
+}
@@ -0,0 +1,233 @@
+package mindustrytool.workflow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import mindustrytool.workflow.errors.WorkflowError;
+
+public class WorkflowStoreTest {
+    @TempDir
+    Path dir;
+
+    Path path;
+    WorkflowStore store;
+
+    @BeforeEach
+    void setUp() {
+        path = dir.resolve("store.bin");
+        store = new WorkflowStore(path);
+        store.open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    @Test
+    void testSetAndGet() {
+        store.set("number", 1.5);
+        store.set("integer", 3);
+        store.set("flag", true);
+        store.set("text", "hello");
+        store.set("other", new StringBuilder("built"));
+
+        assertEquals(1.5, store.get("number"));
+        assertEquals(3d, store.get("integer"));
+        assertEquals(true, store.get("flag"));
+        assertEquals("hello", store.get("text"));
+        assertEquals("built", store.get("other"));
+        assertNull(store.get("missing"));
+        assertEquals(5, store.size());
+    }
+
+    @Test
+    void testOverwriteChangesType() {
+        store.set("key", "text");
+        store.set("key", 2);
+
+        assertEquals(2d, store.get("key"));
+        assertEquals(2, store.getNumber("key", -1), 0);
+
+        store.set("key", "again");
+
+        assertEquals("again", store.get("key"));
+        assertEquals(-1, store.getNumber("key", -1), 0);
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void testAdd() {
+        assertEquals(2, store.add("counter", 2), 0);
+        assertEquals(5, store.add("counter", 3), 0);
+        assertEquals(5d, store.get("counter"));
+    }
+
+    @Test
+    void testRemove() {
+        store.set("a", "value");
+        store.set("b", 1);
+
+        assertTrue(store.remove("a"));
+        assertFalse(store.remove("a"));
+        assertFalse(store.contains("a"));
+        assertNull(store.get("a"));
+
+        // Setting null removes as well
+        store.set("b", null);
+        assertEquals(0, store.size());
+
+        // Freed slots are reused
+        store.set("c", 3);
+        assertEquals(3d, store.get("c"));
+    }
+
+    @Test
+    void testReopen() {
+        store.set("number", 42);
+        store.set("text", "kept");
+        store.set("removed", "gone");
+        store.remove("removed");
+        store.close();
+
+        store = new WorkflowStore(path);
+        store.open();
+
+        assertEquals(42d, store.get("number"));
+        assertEquals("kept", store.get("text"));
+        assertFalse(store.contains("removed"));
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    void testCompactKeepsEntries() throws Exception {
+        store.set("number", 7);
+        store.set("text", "value");
+
+        for (int i = 0; i < 100; i++) {
+            store.set("churn", "value " + i);
+        }
+
+        long before = Files.size(path);
+
+        store.compact(16);
+
+        assertEquals(7d, store.get("number"));
+        assertEquals("value", store.get("text"));
+        assertEquals("value 99", store.get("churn"));
+        assertTrue(Files.size(path) <= before);
+
+        store.close();
+        store = new WorkflowStore(path);
+        store.open();
+
+        assertEquals("value 99", store.get("churn"));
+    }
+
+    @Test
+    void testGrowsBeyondCapacity() {
+        for (int i = 0; i < 3000; i++) {
+            store.set("key" + i, i);
+        }
+
+        assertEquals(3000, store.size());
+        assertEquals(0d, store.get("key0"));
+        assertEquals(2999d, store.get("key2999"));
+    }
+
+    @Test
+    void testLongStringsGrowLog() {
+        var text = new StringBuilder();
+
+        for (int i = 0; i < 100_000; i++) {
+            text.append((char) ('a' + i % 26));
+        }
+
+        store.set("long", text.toString());
+
+        assertEquals(text.toString(), store.get("long"));
+    }
+
+    @Test
+    void testCorruptFileStartsOver() throws Exception {
+        store.set("key", 1);
+        store.close();
+
+        try (var file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.writeInt(0);
+        }
+
+        store = new WorkflowStore(path);
+        store.open();
+
+        assertEquals(0, store.size());
+        assertTrue(Files.exists(path.resolveSibling("store.bin.corrupt")));
+    }
+
+    @Test
+    void testTruncatedFileStartsOver() throws Exception {
+        store.set("key", "value");
+        store.close();
+
+        // Header intact, slot table and log cut off
+        try (var file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(40);
+        }
+
+        store = new WorkflowStore(path);
+        store.open();
+
+        assertEquals(0, store.size());
+        store.set("key", 2);
+        assertEquals(2d, store.get("key"));
+    }
+
+    @Test
+    void testClosedStoreRejectsAccess() {
+        store.close();
+
+        assertThrows(WorkflowError.class, () -> store.get("key"));
+        assertThrows(WorkflowError.class, () -> store.set("key", 1));
+        assertFalse(store.isOpen());
+    }
+
+    @Test
+    void testInMemoryStore() {
+        var memory = new WorkflowStore();
+        memory.open();
+
+        var text = new StringBuilder();
+
+        for (int i = 0; i < 100_000; i++) {
+            text.append((char) ('a' + i % 26));
+        }
+
+        for (int i = 0; i < 3000; i++) {
+            memory.set("key" + i, i);
+        }
+
+        memory.set("long", text.toString());
+        memory.set("flag", true);
+        memory.compact(16);
+
+        assertEquals(3002, memory.size());
+        assertEquals(2999d, memory.get("key2999"));
+        assertEquals(text.toString(), memory.get("long"));
+        assertEquals(true, memory.get("flag"));
+
+        memory.close();
+        assertFalse(memory.isOpen());
+    }
+}
@@ -0,0 +1,113 @@
+package mindustrytool.workflow;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import mindustrytool.type.WorkflowContext;
+import mindustrytool.workflow.nodes.WorkflowNode;
+
+/**
+ * Headless workflow built node by node from the same state the editor saves.
+ * Capture nodes record the variables they see together with their id.
+ */
+public class WorkflowTestGraph {
+    private static final Map<Workflow, BlockingQueue<Map<String, Object>>> CAPTURED = new WeakHashMap<>();
+
+    public static class Capture extends WorkflowNode {
+        public Capture() {
+            super("Capture", WorkflowGroup.FLOW, 1);
+        }
+
+        @Override
+        public void execute(WorkflowEmitEvent event) {
+            var variables = new HashMap<String, Object>();
+
+            for (var entry : event.getVariables().entrySet()) {
+                variables.put(entry.getKey(), entry.getValue());
+            }
+
+            variables.put("node", getId());
+
+            synchronized (CAPTURED) {
+                CAPTURED.get(event.getContext()).add(variables);
+            }
+        }
+    }
+
+    public final Workflow workflow;
+    public final WorkflowContext context = new WorkflowContext();
+
+    private final BlockingQueue<Map<String, Object>> captured = new LinkedBlockingQueue<>();
+
+    public WorkflowTestGraph() {
+        this(Runnable::run);
+    }
+
+    /** Graph handing game thread work to mainThread instead of running it in place. */
+    public WorkflowTestGraph(Consumer<Runnable> mainThread) {
+        workflow = new Workflow(new WeakReference<>(null), mainThread);
+        workflow.registerNodes();
+        workflow.getNodeTypes().put("Capture", new Capture());
+
+        synchronized (CAPTURED) {
+            CAPTURED.put(workflow, captured);
+        }
+    }
+
+    /** Adds a node whose Next output goes to next, fields given as name, value pairs. */
+    public WorkflowNodeState node(String id, String name, String next, String... fields) {
+        var data = new NodeData();
+        var state = new WorkflowNodeState();
+
+        for (int i = 0; i < fields.length; i += 2) {
+            var field = new WorkflowNodeStateField();
+            field.setConsumer(fields[i + 1]);
+            state.getFields().put(fields[i], field);
+        }
+
+        if (next != null) {
+            state.getOutputs().put("Next", next);
+        }
+
+        data.setId(id);
+        data.setName(name);
+        data.setState(state);
+        context.getNodes().add(data);
+
+        return state;
+    }
+
+    /** Adds a listener for String events, fired with {@link #fire}. */
+    public void listener(String next) {
+        node("listener", "EventListener", next, "class", "java.lang.String", "before", "true");
+    }
+
+    public void load() {
+        workflow.load(context);
+    }
+
+    public void fire(String event) {
+        workflow.fire(event, true);
+    }
+
+    /** Next variables a Capture node saw, failing after the timeout. */
+    public Map<String, Object> next(long timeoutMs) throws InterruptedException {
+        var result = captured.poll(timeoutMs, TimeUnit.MILLISECONDS);
+        assertNotNull(result, "no run reached a capture node");
+
+        return result;
+    }
+
+    /** Next variables a Capture node saw, null when none did within the timeout. */
+    public Map<String, Object> poll(long timeoutMs) throws InterruptedException {
+        return captured.poll(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+}
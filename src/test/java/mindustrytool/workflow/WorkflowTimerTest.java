@@ -0,0 +1,193 @@
+package mindustrytool.workflow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class WorkflowTimerTest {
+    AtomicLong clock;
+    List<Runnable> batches;
+    WorkflowTimer timer;
+
+    @BeforeEach
+    void setUp() {
+        clock = new AtomicLong(TimeUnit.SECONDS.toNanos(100));
+        batches = new ArrayList<>();
+        timer = new WorkflowTimer(batches::add, clock::get, true);
+    }
+
+    /** Moves the clock forward one tick at a time and runs what was dispatched. */
+    void advance(long millis) {
+        for (long i = 0; i < millis; i += 10) {
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(10));
+            timer.advance();
+            runBatches();
+        }
+    }
+
+    void runBatches() {
+        var dispatched = new ArrayList<>(batches);
+        batches.clear();
+        dispatched.forEach(Runnable::run);
+    }
+
+    long elapsedMillis(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(clock.get() - start);
+    }
+
+    @Test
+    void testTimeoutLongerThanOneRotation() {
+        var runs = new AtomicInteger();
+
+        // The wheel turns once every 512 ticks of 10ms
+        timer.schedule(runs::incrementAndGet, 6000, TimeUnit.MILLISECONDS);
+        timer.schedule(runs::incrementAndGet, 12000, TimeUnit.MILLISECONDS);
+
+        advance(5990);
+        assertEquals(0, runs.get());
+
+        advance(20);
+        assertEquals(1, runs.get());
+
+        advance(5980);
+        assertEquals(1, runs.get());
+
+        advance(20);
+        assertEquals(2, runs.get());
+        assertEquals(0, timer.getPending());
+    }
+
+    @Test
+    void testCancelBeforeExpiry() {
+        var runs = new AtomicInteger();
+        var cancelled = timer.schedule(runs::incrementAndGet, 100, TimeUnit.MILLISECONDS);
+        timer.schedule(runs::incrementAndGet, 100, TimeUnit.MILLISECONDS);
+
+        advance(50);
+
+        assertTrue(cancelled.cancel());
+        assertTrue(cancelled.isCancelled());
+        assertEquals(1, timer.getPending());
+
+        advance(200);
+
+        assertEquals(1, runs.get());
+        assertEquals(0, timer.getPending());
+    }
+
+    @Test
+    void testFixedRateDoesNotDrift() {
+        long start = clock.get();
+        var rate = new ArrayList<Long>();
+        var delay = new ArrayList<Long>();
+
+        // Both tasks take 30ms, only the fixed delay one waits that on top of its period
+        timer.scheduleAtFixedRate(() -> {
+            rate.add(elapsedMillis(start));
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(30));
+        }, 100, 100, TimeUnit.MILLISECONDS);
+        timer.scheduleWithFixedDelay(() -> {
+            delay.add(elapsedMillis(start));
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(30));
+        }, 100, 100, TimeUnit.MILLISECONDS);
+
+        advance(2000);
+
+        for (int i = 0; i < rate.size(); i++) {
+            long scheduled = (i + 1) * 100L;
+            assertTrue(rate.get(i) >= scheduled && rate.get(i) < scheduled + 100, "run " + i + " at " + rate.get(i));
+        }
+
+        for (int i = 1; i < delay.size(); i++) {
+            assertTrue(delay.get(i) - delay.get(i - 1) >= 130, "run " + i + " at " + delay.get(i));
+        }
+
+        assertTrue(rate.size() > delay.size(), rate.size() + " fixed rate runs, " + delay.size() + " fixed delay");
+    }
+
+    @Test
+    void testCallbackReschedulesItself() {
+        long start = clock.get();
+        var runs = new ArrayList<Long>();
+
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                runs.add(elapsedMillis(start));
+
+                if (runs.size() < 3) {
+                    timer.schedule(this, 50, TimeUnit.MILLISECONDS);
+                }
+            }
+        }, 50, TimeUnit.MILLISECONDS);
+
+        advance(500);
+
+        assertEquals(3, runs.size());
+
+        for (int i = 1; i < runs.size(); i++) {
+            assertTrue(runs.get(i) - runs.get(i - 1) >= 50, "run " + i + " at " + runs.get(i));
+        }
+
+        assertEquals(0, timer.getPending());
+    }
+
+    @Test
+    void testExpiredInOneTickAreOneBatch() {
+        var runs = new AtomicInteger();
+
+        for (int i = 0; i < 5; i++) {
+            timer.schedule(runs::incrementAndGet, 100, TimeUnit.MILLISECONDS);
+        }
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(110));
+        timer.advance();
+
+        assertEquals(1, batches.size());
+        assertEquals(0, runs.get());
+
+        runBatches();
+
+        assertEquals(5, runs.get());
+    }
+
+    @Test
+    void testClearDropsInFlightTimers() {
+        var runs = new AtomicInteger();
+
+        timer.schedule(runs::incrementAndGet, 50, TimeUnit.MILLISECONDS);
+        timer.scheduleAtFixedRate(runs::incrementAndGet, 50, 50, TimeUnit.MILLISECONDS);
+        timer.schedule(runs::incrementAndGet, 6000, TimeUnit.MILLISECONDS);
+
+        // Expired and dispatched, but not run yet
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(60));
+        timer.advance();
+        assertEquals(1, batches.size());
+
+        // Added but not moved into the wheel yet
+        timer.schedule(runs::incrementAndGet, 10, TimeUnit.MILLISECONDS);
+
+        timer.clear();
+
+        assertEquals(0, timer.getPending());
+
+        runBatches();
+        advance(7000);
+
+        assertEquals(0, runs.get());
+
+        // A timer scheduled after the clear runs as usual
+        timer.schedule(runs::incrementAndGet, 50, TimeUnit.MILLISECONDS);
+        advance(100);
+
+        assertEquals(1, runs.get());
+    }
+}
@@ -0,0 +1,103 @@
+package mindustrytool.workflow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+
+import org.junit.jupiter.api.Test;
+
+public class WorkflowTracerTest {
+    static int sampled(WorkflowTracer tracer, int runs) {
+        int sampled = 0;
+
+        for (int i = 0; i < runs; i++) {
+            if (tracer.sample(true)) {
+                sampled++;
+            }
+        }
+
+        return sampled;
+    }
+
+    static void record(WorkflowTracer tracer, String nodeId, int events) {
+        for (int i = 0; i < events; i++) {
+            tracer.record(new WorkflowEvent<HashMap<String, Object>>(nodeId, "EMIT", null));
+        }
+    }
+
+    @Test
+    void testSampledTracesAboutOneRunIn16() {
+        var tracer = new WorkflowTracer();
+        tracer.setMode(WorkflowTraceMode.SAMPLED);
+
+        int sampled = sampled(tracer, 16_000);
+
+        // 1000 expected, the bounds are more than six standard deviations away
+        assertTrue(sampled > 800 && sampled < 1200, sampled + " of 16000 runs sampled");
+    }
+
+    @Test
+    void testFullTracesEveryRun() {
+        var tracer = new WorkflowTracer();
+        tracer.setMode(WorkflowTraceMode.FULL);
+
+        assertEquals(1000, sampled(tracer, 1000));
+    }
+
+    @Test
+    void testNothingIsTracedWithoutClient() {
+        var tracer = new WorkflowTracer();
+
+        for (var mode : WorkflowTraceMode.values()) {
+            tracer.setMode(mode);
+
+            assertFalse(tracer.sample(false));
+            assertFalse(tracer.sample());
+        }
+    }
+
+    @Test
+    void testOffDoesNoTracingWork() throws InterruptedException {
+        var graph = new WorkflowTestGraph();
+        var tracer = graph.workflow.getTracer();
+
+        assertEquals(WorkflowTraceMode.OFF, tracer.getMode());
+        // Even with a client connected no run is traced
+        assertEquals(0, sampled(tracer, 1000));
+
+        graph.listener("set");
+        graph.node("set", "Set", "capture", "name", "a", "value", "1");
+        graph.node("capture", "Capture", null);
+        graph.load();
+
+        for (int i = 0; i < 100; i++) {
+            graph.fire("go");
+            graph.next(1000);
+        }
+
+        assertEquals(0, tracer.getBuffered());
+    }
+
+    @Test
+    void testRingKeepsLatest64PerNode() {
+        var tracer = new WorkflowTracer();
+
+        record(tracer, "a", 100);
+        record(tracer, "b", 10);
+
+        assertEquals(64 + 10, tracer.getBuffered());
+
+        tracer.drain();
+
+        assertEquals(36, tracer.getDropped());
+        assertEquals(0, tracer.getBuffered());
+
+        // A drained ring starts over without losing anything
+        record(tracer, "a", 64);
+        tracer.drain();
+
+        assertEquals(36, tracer.getDropped());
+    }
+}
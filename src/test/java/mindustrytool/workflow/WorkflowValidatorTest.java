@@ -0,0 +1,138 @@
+package mindustrytool.workflow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import mindustrytool.workflow.errors.WorkflowError;
+import mindustrytool.workflow.errors.WorkflowValidationError;
+
+public class WorkflowValidatorTest {
+    WorkflowTestGraph graph;
+
+    @BeforeEach
+    void setUp() {
+        graph = new WorkflowTestGraph();
+    }
+
+    List<WorkflowError> validate() {
+        return graph.workflow.validate(graph.context);
+    }
+
+    @Test
+    void testValidGraph() {
+        graph.listener("set");
+        graph.node("set", "Set", "capture", "name", "a", "value", "1");
+        graph.node("capture", "Capture", null);
+
+        assertTrue(validate().isEmpty());
+    }
+
+    @Test
+    void testUnresolvedNextId() {
+        graph.listener("missing");
+
+        var errors = validate();
+
+        assertEquals(1, errors.size());
+        assertEquals("listener", errors.get(0).getNodeId());
+        assertEquals("Next", errors.get(0).getField());
+        assertEquals("Node not found, id: missing", errors.get(0).getMessage());
+    }
+
+    @Test
+    void testSynchronousCycleIsRejected() {
+        graph.listener("a");
+        graph.node("a", "Set", "b", "name", "a", "value", "1");
+        graph.node("b", "Set", "a", "name", "b", "value", "2");
+
+        var errors = validate();
+
+        assertEquals(1, errors.size());
+        assertEquals("a", errors.get(0).getNodeId());
+        assertEquals("Synchronous cycle without Wait: a -> b", errors.get(0).getMessage());
+    }
+
+    @Test
+    void testSelfLoopIsRejected() {
+        graph.listener("a");
+        graph.node("a", "Set", "a", "name", "a", "value", "1");
+
+        var errors = validate();
+
+        assertEquals(1, errors.size());
+        assertEquals("a", errors.get(0).getNodeId());
+    }
+
+    @Test
+    void testCycleThroughAsyncNodeIsAccepted() {
+        graph.listener("a");
+        graph.node("a", "Set", "wait", "name", "a", "value", "1");
+        graph.node("wait", "Wait", "b", "second", "1");
+        graph.node("b", "Set", "debounce", "name", "b", "value", "2");
+        graph.node("debounce", "Debounce", "a", "delay", "100");
+
+        assertTrue(validate().isEmpty());
+    }
+
+    @Test
+    void testCycleWithExitIsAccepted() {
+        graph.listener("a");
+        graph.node("a", "Set", "if", "name", "a", "value", "1");
+
+        var condition = graph.node("if", "if", null, "condition", "1 < 2");
+        condition.getOutputs().put("True", "a");
+        condition.getOutputs().put("False", "capture");
+
+        graph.node("capture", "Capture", null);
+
+        assertTrue(validate().isEmpty());
+    }
+
+    @Test
+    void testErrorsAreCollectedPerNodeAndField() {
+        graph.listener("unknown");
+        graph.node("unknown", "NoSuchNode", "wait");
+        graph.node("wait", "Wait", "set", "second", "1 > 0");
+        graph.node("set", "Set", null, "name", "a", "value", "1", "missing", "1")
+                .getOutputs().put("Nowhere", "capture");
+        graph.node("capture", "Capture", null);
+
+        var errors = validate();
+
+        assertEquals(4, errors.size());
+
+        assertEquals("unknown", errors.get(0).getNodeId());
+        assertNull(errors.get(0).getField());
+        assertEquals("Node type not found: NoSuchNode", errors.get(0).getMessage());
+
+        assertEquals("wait", errors.get(1).getNodeId());
+        assertEquals("second", errors.get(1).getField());
+        assertTrue(errors.get(1).getMessage().startsWith("Invalid result type of expression: 1 > 0"));
+
+        assertEquals("set", errors.get(2).getNodeId());
+        assertEquals("missing", errors.get(2).getField());
+
+        assertEquals("set", errors.get(3).getNodeId());
+        assertEquals("Nowhere", errors.get(3).getField());
+        assertEquals("Node output not found: Nowhere on node: Set", errors.get(3).getMessage());
+    }
+
+    @Test
+    void testLoadThrowsEveryErrorWithoutLoading() {
+        graph.listener("missing");
+        graph.node("wait", "Wait", null, "second", "1 > 0");
+
+        var error = assertThrows(WorkflowValidationError.class, graph::load);
+
+        assertEquals(2, error.getErrors().size());
+        assertEquals(validate().size(), error.getErrors().size());
+        assertTrue(graph.workflow.getNodes().isEmpty());
+    }
+}
@@ -0,0 +1,189 @@
+package mindustrytool.workflow.nodes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.HashMap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import mindustrytool.workflow.WorkflowTestGraph;
+
+public class AggregateWorkflowTest {
+    // Long enough that the timer never closes a window during a test
+    static final String HOUR = "3600000";
+
+    WorkflowTestGraph graph;
+    AggregateWorkflow aggregate;
+
+    @BeforeEach
+    void setUp() {
+        graph = new WorkflowTestGraph();
+    }
+
+    void aggregate(String function, String type, String size, String slide, String group) {
+        graph.listener("aggregate");
+
+        if (group == null) {
+            graph.node("aggregate", "Aggregate", "capture", "function", function, "type", type, "size", size,
+                    "slide", slide, "value", "2");
+        } else {
+            graph.node("aggregate", "Aggregate", "capture", "function", function, "type", type, "size", size,
+                    "slide", slide, "value", "2", "group", group);
+        }
+
+        graph.node("capture", "Capture", null);
+        graph.load();
+
+        aggregate = (AggregateWorkflow) graph.workflow.getNodes().get("aggregate");
+    }
+
+    Object close() throws InterruptedException {
+        aggregate.close();
+
+        return graph.next(1000).get("result");
+    }
+
+    void fire(int events) {
+        for (int i = 0; i < events; i++) {
+            graph.fire("go");
+        }
+    }
+
+    @Test
+    void testTumblingCountResetsEveryWindow() throws InterruptedException {
+        aggregate("COUNT", "TUMBLING", HOUR, HOUR, null);
+
+        fire(3);
+        assertEquals(3.0, close());
+
+        fire(1);
+        assertEquals(1.0, close());
+    }
+
+    @Test
+    void testEmptyWindowReportsZeroCountAndSum() throws InterruptedException {
+        aggregate("COUNT", "TUMBLING", HOUR, HOUR, null);
+        assertEquals(0.0, close());
+
+        graph = new WorkflowTestGraph();
+        aggregate("SUM", "TUMBLING", HOUR, HOUR, null);
+        assertEquals(0.0, close());
+    }
+
+    @Test
+    void testEmptyWindowSkipsMinMaxAvg() throws InterruptedException {
+        aggregate("AVG", "TUMBLING", HOUR, HOUR, null);
+
+        aggregate.close();
+
+        assertNull(graph.poll(200));
+    }
+
+    @Test
+    void testSumAddsValues() throws InterruptedException {
+        aggregate("SUM", "TUMBLING", HOUR, HOUR, null);
+
+        fire(3);
+        assertEquals(6.0, close());
+    }
+
+    @Test
+    void testSlidingWindowRollsPanesOver() throws InterruptedException {
+        // Three panes, each close moves to the next one and forgets the oldest
+        aggregate("COUNT", "SLIDING", "3000000", "1000000", null);
+
+        fire(2);
+        assertEquals(2.0, close());
+
+        fire(1);
+        assertEquals(3.0, close());
+
+        assertEquals(3.0, close());
+
+        // The first pane slid out
+        assertEquals(1.0, close());
+
+        // And then the second, nothing is left
+        assertEquals(0.0, close());
+    }
+
+    @Test
+    void testSlidingWindowCapsPanes() throws InterruptedException {
+        // A millisecond slide over a long window is widened to 16 panes
+        aggregate("COUNT", "SLIDING", "3000000", "1", null);
+
+        fire(1);
+
+        for (int i = 0; i < 16; i++) {
+            assertEquals(1.0, close());
+        }
+
+        assertEquals(0.0, close());
+    }
+
+    @Test
+    void testEmptiedGroupIsForgotten() throws InterruptedException {
+        aggregate("COUNT", "SLIDING", "2000000", "1000000", "{{event}}");
+
+        graph.fire("a");
+        graph.fire("b");
+        aggregate.close();
+        graph.next(1000);
+        graph.next(1000);
+
+        graph.fire("b");
+        aggregate.close();
+        graph.next(1000);
+        graph.next(1000);
+
+        // a slid out and is no longer reported, b still has the latest pane
+        aggregate.close();
+
+        var result = graph.next(1000);
+
+        assertEquals("b", result.get("group"));
+        assertEquals(1.0, result.get("result"));
+        assertNull(graph.poll(200));
+
+        aggregate.close();
+        assertNull(graph.poll(200));
+    }
+
+    @Test
+    void testGroupsReportSeparately() throws InterruptedException {
+        aggregate("COUNT", "TUMBLING", HOUR, HOUR, "{{event}}");
+
+        graph.fire("a");
+        graph.fire("a");
+        graph.fire("b");
+
+        aggregate.close();
+
+        var results = new HashMap<Object, Object>();
+
+        for (int i = 0; i < 2; i++) {
+            var result = graph.next(1000);
+            results.put(result.get("group"), result.get("result"));
+        }
+
+        assertEquals(2.0, results.get("a"));
+        assertEquals(1.0, results.get("b"));
+
+        // Groups without events in the window are not reported
+        aggregate.close();
+        assertNull(graph.poll(200));
+    }
+
+    @Test
+    void testUnloadDropsState() throws InterruptedException {
+        aggregate("COUNT", "TUMBLING", HOUR, HOUR, null);
+
+        fire(3);
+        aggregate.unload(graph.workflow);
+        aggregate.init(graph.workflow);
+
+        assertEquals(0.0, close());
+    }
+}
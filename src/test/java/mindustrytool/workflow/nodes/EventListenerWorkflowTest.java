@@ -0,0 +1,77 @@
+package mindustrytool.workflow.nodes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import mindustrytool.workflow.WorkflowTestGraph;
+import mindustrytool.workflow.errors.WorkflowValidationError;
+
+public class EventListenerWorkflowTest {
+    public static class Ping {
+        public double x;
+        public Object value;
+
+        public Ping(double x, Object value) {
+            this.x = x;
+            this.value = value;
+        }
+    }
+
+    WorkflowTestGraph graph;
+
+    @BeforeEach
+    void setUp() {
+        graph = new WorkflowTestGraph();
+    }
+
+    void listen(String filter) {
+        graph.node("listener", "EventListener", "capture", "class", Ping.class.getName(), "before", "true",
+                "filter", filter);
+        graph.node("capture", "Capture", null);
+    }
+
+    void fire(double x, Object value) {
+        graph.workflow.fire(new Ping(x, value), true);
+    }
+
+    @Test
+    void testFilterMustBeBoolean() {
+        listen("{{event.x}} + 1");
+
+        var error = assertThrows(WorkflowValidationError.class, graph::load);
+
+        assertEquals(1, error.getErrors().size());
+        assertEquals("filter", error.getErrors().get(0).getField());
+        assertTrue(error.getMessage().contains("expected type: Boolean"), error.getMessage());
+    }
+
+    @Test
+    void testFilterSkipsEvents() throws InterruptedException {
+        listen("{{event.x}} > 3");
+        graph.load();
+
+        fire(1, null);
+        fire(5, null);
+
+        assertEquals(5.0, ((Ping) graph.next(1000).get("event")).x);
+        assertNull(graph.poll(100));
+    }
+
+    @Test
+    void testFailingFilterDropsOnlyThatEvent() throws InterruptedException {
+        listen("{{event.value}} > 3");
+        graph.load();
+
+        fire(1, "text");
+        fire(2, "text");
+        fire(3, 5.0);
+
+        assertEquals(3.0, ((Ping) graph.next(1000).get("event")).x);
+        assertNull(graph.poll(100));
+    }
+}
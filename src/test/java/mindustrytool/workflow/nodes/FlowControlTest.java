@@ -0,0 +1,283 @@
+package mindustrytool.workflow.nodes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import mindustrytool.type.WorkflowProfileDto;
+import mindustrytool.workflow.WorkflowTestGraph;
+
+public class FlowControlTest {
+    WorkflowTestGraph graph;
+
+    @BeforeEach
+    void setUp() {
+        graph = new WorkflowTestGraph();
+    }
+
+    void throttle(String rate, String burst, String key) {
+        graph.listener("throttle");
+
+        var state = key == null
+                ? graph.node("throttle", "Throttle", "allowed", "rate", rate, "burst", burst)
+                : graph.node("throttle", "Throttle", "allowed", "rate", rate, "burst", burst, "key", key);
+
+        state.getOutputs().put("Dropped", "dropped");
+        graph.node("allowed", "Capture", null);
+        graph.node("dropped", "Capture", null);
+        graph.load();
+    }
+
+    /** Listener profile once every run ended, so its latency holds every step executed. */
+    WorkflowProfileDto.Entry settledRuns() throws InterruptedException {
+        WorkflowProfileDto.Entry runs = null;
+        long nodes = 0;
+
+        for (int i = 0; i < 50; i++) {
+            var profile = graph.workflow.getProfiler().snapshot();
+
+            runs = profile.getEmitters().stream()
+                    .filter(entry -> entry.getId().equals("listener"))
+                    .findFirst()
+                    .get();
+            nodes = profile.getNodes().stream().mapToLong(WorkflowProfileDto.Entry::getTotalNanos).sum();
+
+            if (runs.getTotalNanos() == nodes) {
+                break;
+            }
+
+            Thread.sleep(100);
+        }
+
+        assertEquals(nodes, runs.getTotalNanos());
+
+        return runs;
+    }
+
+    int count(String node, int events) throws InterruptedException {
+        int count = 0;
+
+        for (int i = 0; i < events; i++) {
+            if (node.equals(graph.next(1000).get("node"))) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    @Test
+    void testThrottleAllowsBurst() throws InterruptedException {
+        throttle("0.001", "2", null);
+
+        for (int i = 0; i < 5; i++) {
+            graph.fire("go");
+        }
+
+        assertEquals(2, count("allowed", 5));
+    }
+
+    @Test
+    void testThrottleRefills() throws InterruptedException {
+        throttle("20", "1", null);
+
+        graph.fire("go");
+        graph.fire("go");
+        Thread.sleep(150);
+        graph.fire("go");
+
+        assertEquals(2, count("allowed", 3));
+    }
+
+    @Test
+    void testThrottleKeepsBucketPerKey() throws InterruptedException {
+        throttle("0.001", "1", "{{event}}");
+
+        for (var event : new String[] { "a", "a", "b", "b", "c" }) {
+            graph.fire(event);
+        }
+
+        assertEquals(3, count("allowed", 5));
+    }
+
+    @Test
+    void testThrottleRateIsExpression() throws InterruptedException {
+        throttle("0.0005 * 2", "1", null);
+
+        graph.fire("go");
+        graph.fire("go");
+
+        assertEquals(1, count("allowed", 2));
+    }
+
+    @Test
+    void testDebounceContinuesLastEvent() throws InterruptedException {
+        graph.listener("debounce");
+        graph.node("debounce", "Debounce", "capture", "delay", "100");
+        graph.node("capture", "Capture", null);
+        graph.load();
+
+        for (int i = 0; i < 5; i++) {
+            graph.fire("event" + i);
+        }
+
+        assertEquals("event4", graph.next(2000).get("event"));
+        assertNull(graph.poll(300));
+    }
+
+    @Test
+    void testDebounceKeepsBurstPerKey() throws InterruptedException {
+        graph.listener("debounce");
+        graph.node("debounce", "Debounce", "capture", "delay", "100", "key", "{{event}}");
+        graph.node("capture", "Capture", null);
+        graph.load();
+
+        graph.fire("a");
+        graph.fire("b");
+        graph.fire("a");
+
+        var seen = new HashMap<Object, Integer>();
+        seen.merge(graph.next(2000).get("event"), 1, Integer::sum);
+        seen.merge(graph.next(2000).get("event"), 1, Integer::sum);
+
+        assertEquals(1, seen.get("a"));
+        assertEquals(1, seen.get("b"));
+        assertNull(graph.poll(300));
+    }
+
+    @Test
+    void testDebounceEndsReplacedRuns() throws InterruptedException {
+        graph.listener("debounce");
+        graph.node("debounce", "Debounce", "capture", "delay", "100");
+        graph.node("capture", "Capture", null);
+        graph.load();
+
+        for (int i = 0; i < 3; i++) {
+            graph.fire("event" + i);
+        }
+
+        assertEquals("event2", graph.next(2000).get("event"));
+
+        var runs = settledRuns();
+
+        assertEquals(3, runs.getInvocations());
+        // Every run is one sample, including the two that were replaced
+        assertEquals(runs.getTotalNanos() / 3, runs.getMeanNanos());
+    }
+
+    @Test
+    void testDebounceInForkReleasesReplacedBranch() throws InterruptedException {
+        graph.listener("fork");
+
+        var fork = graph.node("fork", "Fork", null);
+        fork.getOutputs().put("Branch 1", "debounce");
+        fork.getOutputs().put("Branch 2", "b");
+
+        graph.node("debounce", "Debounce", "a", "delay", "100");
+        graph.node("a", "Set", "join", "name", "a", "value", "1");
+        graph.node("b", "Set", "join", "name", "b", "value", "2");
+        graph.node("join", "Join", "capture", "mode", "ALL", "timeout", "5000")
+                .getOutputs().put("Timeout", "timedOut");
+        graph.node("capture", "Capture", null);
+        graph.node("timedOut", "Capture", null);
+        graph.load();
+
+        graph.fire("first");
+        graph.fire("second");
+
+        // The replaced branch ends, its join continues without waiting for the timeout
+        var arrived = new HashMap<Object, Map<String, Object>>();
+
+        for (int i = 0; i < 2; i++) {
+            var result = graph.next(2000);
+
+            assertEquals("capture", result.get("node"));
+            arrived.put(result.get("arrived"), result);
+        }
+
+        assertFalse(arrived.get(1).containsKey("a"));
+        assertEquals(1.0, arrived.get(2).get("a"));
+    }
+
+    @Test
+    void testCoalesceClosesWindowAtMax() throws InterruptedException {
+        graph.listener("coalesce");
+        graph.node("coalesce", "Coalesce", "capture", "window", "200", "max", "3", "value", "{{event}}");
+        graph.node("capture", "Capture", null);
+        graph.load();
+
+        for (int i = 0; i < 5; i++) {
+            graph.fire("event" + i);
+        }
+
+        var full = graph.next(1000);
+
+        assertEquals(3, full.get("count"));
+        assertEquals(Arrays.asList("event0", "event1", "event2"), full.get("batch"));
+
+        // The rest is flushed when the next window runs out
+        var rest = graph.next(2000);
+
+        assertEquals(2, rest.get("count"));
+        assertEquals(Arrays.asList("event3", "event4"), rest.get("batch"));
+        assertEquals("event3", rest.get("event"));
+    }
+
+    @Test
+    void testCoalesceRunEndsAfterFlush() throws InterruptedException {
+        graph.listener("coalesce");
+        graph.node("coalesce", "Coalesce", "set", "window", "100", "value", "{{event}}");
+        graph.node("set", "Set", "capture", "name", "a", "value", "1");
+        graph.node("capture", "Capture", null);
+        graph.load();
+
+        for (int i = 0; i < 3; i++) {
+            graph.fire("event" + i);
+        }
+
+        assertEquals(3, graph.next(2000).get("count"));
+
+        var runs = settledRuns();
+
+        assertEquals(3, runs.getInvocations());
+        // The continued run is one sample holding the steps after the flush
+        assertTrue(runs.getMaxNanos() > 0);
+        assertEquals(runs.getTotalNanos() / 3, runs.getMeanNanos());
+    }
+
+    @Test
+    void testCoalesceInForkArrivesAtJoin() throws InterruptedException {
+        graph.listener("fork");
+
+        var fork = graph.node("fork", "Fork", null);
+        fork.getOutputs().put("Branch 1", "coalesce");
+        fork.getOutputs().put("Branch 2", "b");
+
+        graph.node("coalesce", "Coalesce", "a", "window", "100", "value", "{{event}}");
+        graph.node("a", "Set", "join", "name", "a", "value", "1");
+        graph.node("b", "Set", "join", "name", "b", "value", "2");
+        graph.node("join", "Join", "capture", "mode", "ALL", "timeout", "5000")
+                .getOutputs().put("Timeout", "timedOut");
+        graph.node("capture", "Capture", null);
+        graph.node("timedOut", "Capture", null);
+        graph.load();
+
+        graph.fire("go");
+
+        var result = graph.next(5000);
+
+        assertEquals("capture", result.get("node"));
+        assertEquals(2, result.get("arrived"));
+        assertEquals(1.0, result.get("a"));
+        assertEquals(2.0, result.get("b"));
+        assertNull(graph.poll(300));
+    }
+}
@@ -0,0 +1,226 @@
+package mindustrytool.workflow.nodes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class LongStateTableTest {
+    @Test
+    void testSlotAndFind() {
+        var table = new LongStateTable("test", 2, 100);
+
+        assertEquals(-1, table.find(1));
+
+        int index = table.slot(1, i -> true);
+        table.set(index, 10);
+        table.setDouble(index + 1, 2.5);
+
+        assertEquals(index, table.find(1));
+        assertEquals(index, table.slot(1, i -> true));
+        assertEquals(10, table.get(index));
+        assertEquals(2.5, table.getDouble(index + 1));
+        assertEquals(1, table.keyAt(index));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    void testZeroKey() {
+        var table = new LongStateTable("test", 1, 100);
+
+        int index = table.slot(0, i -> true);
+        table.set(index, 7);
+
+        assertEquals(index, table.find(0));
+        assertEquals(7, table.get(table.find(0)));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    void testGrowKeepsValuesAndObjects() {
+        var table = new LongStateTable("test", 2, 10_000);
+
+        for (long key = 1; key <= 1000; key++) {
+            int index = table.slot(LongStateTable.mix(key), i -> false);
+            table.set(index, key);
+            table.setObject(index, "value " + key);
+        }
+
+        assertEquals(1000, table.size());
+
+        for (long key = 1; key <= 1000; key++) {
+            int index = table.find(LongStateTable.mix(key));
+
+            assertEquals(key, table.get(index));
+            assertEquals("value " + key, table.getObject(index));
+        }
+    }
+
+    @Test
+    void testRemoveIf() {
+        var table = new LongStateTable("test", 1, 100);
+
+        for (long key = 1; key <= 50; key++) {
+            int index = table.slot(key, i -> false);
+            table.set(index, key);
+            table.setObject(index, key);
+        }
+
+        table.removeIf(i -> table.get(i) % 2 == 0);
+
+        assertEquals(25, table.size());
+
+        for (long key = 1; key <= 50; key++) {
+            int index = table.find(key);
+
+            if (key % 2 == 0) {
+                assertEquals(-1, index);
+            } else {
+                assertEquals(key, table.get(index));
+                assertEquals(key, table.getObject(index));
+            }
+        }
+    }
+
+    @Test
+    void testFullTableDropsStaleEntries() {
+        var table = new LongStateTable("test", 1, 4);
+
+        for (long key = 1; key <= 4; key++) {
+            table.set(table.slot(key, i -> false), key);
+        }
+
+        // Only key 2 is stale, it makes room for the new key
+        int index = table.slot(5, i -> table.get(i) == 2);
+
+        assertTrue(index >= 0);
+        assertEquals(4, table.size());
+        assertEquals(-1, table.find(2));
+        assertTrue(table.find(1) >= 0);
+    }
+
+    @Test
+    void testFullTableRejectsWhenAllLive() {
+        var table = new LongStateTable("test", 1, 4);
+
+        for (long key = 1; key <= 4; key++) {
+            table.set(table.slot(key, i -> false), key);
+        }
+
+        assertEquals(-1, table.slot(5, i -> false));
+        assertEquals(4, table.size());
+
+        for (long key = 1; key <= 4; key++) {
+            assertEquals(key, table.get(table.find(key)));
+        }
+    }
+
+    @Test
+    void testRemoveShiftsCollidingKeysBack() {
+        var table = new LongStateTable("test", 2, 100);
+
+        // Same home slot, they form one probe run
+        for (long key = 1; key <= 65; key += 16) {
+            int index = table.slot(key, i -> false);
+            table.set(index, key);
+            table.set(index + 1, -key);
+        }
+
+        int last = table.find(65);
+
+        table.removeIf(i -> table.get(i) == 17 || table.get(i) == 33);
+
+        assertEquals(3, table.size());
+        assertEquals(-1, table.find(17));
+        assertEquals(-1, table.find(33));
+        assertTrue(table.find(65) < last);
+
+        for (long key : new long[] { 1, 49, 65 }) {
+            int index = table.find(key);
+
+            assertEquals(key, table.get(index));
+            assertEquals(-key, table.get(index + 1));
+        }
+
+        // The freed slots come back zeroed
+        int index = table.slot(33, i -> false);
+
+        assertEquals(0, table.get(index));
+        assertEquals(0, table.get(index + 1));
+    }
+
+    @Test
+    void testRemoveIfWithoutMatchesMovesNothing() {
+        var table = new LongStateTable("test", 1, 100);
+
+        for (long key = 1; key <= 40; key++) {
+            table.set(table.slot(LongStateTable.mix(key), i -> false), key);
+        }
+
+        int index = table.find(LongStateTable.mix(7));
+
+        table.removeIf(i -> false);
+
+        assertEquals(40, table.size());
+        assertEquals(index, table.find(LongStateTable.mix(7)));
+    }
+
+    @Test
+    void testFullTableIsNotSweptAgainRightAway() {
+        var table = new LongStateTable("test", 1, 4);
+        var tested = new AtomicInteger();
+
+        for (long key = 1; key <= 4; key++) {
+            table.slot(key, i -> false);
+        }
+
+        assertEquals(-1, table.slot(5, i -> tested.incrementAndGet() < 0));
+        assertEquals(4, tested.get());
+
+        // Nothing was stale a moment ago, the next rejected key skips the sweep
+        assertEquals(-1, table.slot(6, i -> tested.incrementAndGet() < 0));
+        assertEquals(4, tested.get());
+    }
+
+    @Test
+    void testClear() {
+        var table = new LongStateTable("test", 1, 100);
+        int index = table.slot(1, i -> false);
+        table.setObject(index, "value");
+
+        table.clear();
+
+        assertEquals(0, table.size());
+        assertEquals(-1, table.find(1));
+        assertNull(table.getObject(table.slot(1, i -> false)));
+    }
+
+    @Test
+    void testForEachVisitsEveryEntry() {
+        var table = new LongStateTable("test", 3, 100);
+        var keys = new HashSet<Long>();
+
+        for (long key = 1; key <= 20; key++) {
+            table.slot(key, i -> false);
+        }
+
+        table.forEach(index -> keys.add(table.keyAt(index)));
+
+        assertEquals(20, keys.size());
+    }
+
+    @Test
+    void testHashSpreadsStrings() {
+        var hashes = new HashSet<Long>();
+
+        for (int i = 0; i < 1000; i++) {
+            hashes.add(LongStateTable.hash("player" + i));
+        }
+
+        assertEquals(1000, hashes.size());
+    }
+}